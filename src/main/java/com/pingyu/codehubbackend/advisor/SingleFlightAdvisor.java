@@ -0,0 +1,76 @@
+package com.pingyu.codehubbackend.advisor;
+
+import cn.hutool.crypto.SecureUtil;
+import com.pingyu.codehubbackend.common.SingleFlight;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.client.advisor.api.AdvisedResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisorChain;
+import org.springframework.ai.model.function.FunctionCallback;
+import org.springframework.core.Ordered;
+
+import java.util.List;
+
+/**
+ * 智码 - 同步调用请求合并 Advisor
+ * 作用：多个用户同一时刻发出完全相同的 prompt (系统词 + 历史消息 + 用户问题 + 工具) 时，
+ *      只向 DashScope 发一次请求，其余调用方共享同一个 ChatResponse。
+ * 注意：
+ * 1. 只拦截 call()，流式 stream() 不受影响；
+ *    模型参数 (chatOptions：模型名、温度……) 和工具集合也算进 Key，参数不同的请求不会被合并；
+ * 2. 排在 Advisor 链的最里层，此时记忆、RAG 都已经把上下文拼好了，
+ *    不同会话的历史不同，Key 自然不同，不会串台。
+ */
+public class SingleFlightAdvisor implements CallAroundAdvisor {
+
+    private final SingleFlight<AdvisedResponse> singleFlight;
+
+    public SingleFlightAdvisor(SingleFlight<AdvisedResponse> singleFlight) {
+        this.singleFlight = singleFlight;
+    }
+
+    @Override
+    public AdvisedResponse aroundCall(AdvisedRequest advisedRequest, CallAroundAdvisorChain chain) {
+        String key = promptKey(advisedRequest);
+        AdvisedResponse shared = singleFlight.execute(key, () -> chain.nextAroundCall(advisedRequest));
+        if (shared == null) {
+            return null;
+        }
+        // 上下文 (adviseContext) 还给各自的调用方，只共享模型响应
+        return new AdvisedResponse(shared.response(), advisedRequest.adviseContext());
+    }
+
+    private String promptKey(AdvisedRequest request) {
+        String raw = String.join("\u0000",
+                String.valueOf(request.systemText()),
+                String.valueOf(request.systemParams()),
+                String.valueOf(request.messages()),
+                String.valueOf(request.userText()),
+                String.valueOf(request.userParams()),
+                String.valueOf(request.functionNames()),
+                String.valueOf(callbackNames(request)),
+                String.valueOf(request.chatOptions()));
+        return SecureUtil.sha256(raw);
+    }
+
+    /** 工具回调按名字排序，注册顺序不同不影响 Key */
+    private static List<String> callbackNames(AdvisedRequest request) {
+        if (request.functionCallbacks() == null) return List.of();
+        return request.functionCallbacks().stream().map(FunctionCallback::getName).sorted().toList();
+    }
+
+    public SingleFlight<AdvisedResponse> getSingleFlight() {
+        return singleFlight;
+    }
+
+    @Override
+    public String getName() {
+        return "SingleFlightAdvisor";
+    }
+
+    @Override
+    public int getOrder() {
+        // 最里层：在记忆、RAG 之后执行
+        return Ordered.LOWEST_PRECEDENCE - 1;
+    }
+}
@@ -0,0 +1,91 @@
+package com.pingyu.codehubbackend.agent;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 智能体执行层 (虚拟线程 + 准入控制)
+ * 职责：
+ * 1. 每个会话跑在一个虚拟线程上，阻塞在 LLM / MCP I/O 时几乎不占内存和平台线程；
+ * 2. 同时"在场"的会话 = 正在跑的 (max-concurrent-runs) + 排队的 (queue-capacity)，超出直接拒绝 (快速失败)；
+ * 3. 所有会话 (Controller、Runner) 都从这里进，admitted 计数才准。
+ * 说明：不给调用方返回排队名次 —— 准入时算出来的名次不会随前面的会话结束而更新，展示出来反而误导；
+ *       要不要提示 "排队中" 由任务开跑时自己看 CodeManusPool 还有没有空闲许可。
+ */
+@Component
+@Slf4j
+public class AgentRunExecutor {
+
+    private final int maxConcurrentRuns;
+    private final int queueCapacity;
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("agent-run-", 0).factory());
+
+    // 已准入的会话数 (运行中 + 排队中)
+    private final AtomicInteger admitted = new AtomicInteger();
+    private final AtomicLong rejectedTotal = new AtomicLong();
+
+    public AgentRunExecutor(CodeManusPool codeManusPool,
+                            @Value("${codehub.agent.queue-capacity:16}") int queueCapacity) {
+        this.maxConcurrentRuns = codeManusPool.getMaxConcurrentRuns();
+        this.queueCapacity = queueCapacity;
+        log.info("🧵 [AgentRunExecutor] 虚拟线程执行层就绪，并发上限: {}，排队上限: {}", maxConcurrentRuns, queueCapacity);
+    }
+
+    /**
+     * 提交一个会话任务
+     *
+     * @param task 会话逻辑 (在虚拟线程上执行)
+     * @throws RejectedExecutionException 运行位和排队位都满了
+     */
+    public void submit(Runnable task) {
+        int admittedNow = admitted.incrementAndGet();
+        if (admittedNow > maxConcurrentRuns + queueCapacity) {
+            admitted.decrementAndGet();
+            rejectedTotal.incrementAndGet();
+            throw new RejectedExecutionException("智能体繁忙：运行中 " + maxConcurrentRuns + " 个，排队已满 " + queueCapacity + " 个");
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    admitted.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 执行器已关闭 (应用停机中)
+            admitted.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /** 当前排队中的会话数 (不含正在运行的) */
+    public int getQueuedRuns() {
+        return Math.max(0, admitted.get() - maxConcurrentRuns);
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public long getRejectedTotal() {
+        return rejectedTotal.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        log.info("🧵 [AgentRunExecutor] 正在关闭执行层，剩余会话: {}", admitted.get());
+        executor.shutdownNow();
+    }
+}
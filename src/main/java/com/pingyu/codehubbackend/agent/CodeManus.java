@@ -1,13 +1,16 @@
 package com.pingyu.codehubbackend.agent;
 
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.tool.ToolCallbackProvider;
-import org.springframework.stereotype.Component;
+import org.springframework.ai.model.function.FunctionCallback;
 
-@Component
+/**
+ * CodeManus 智能体 (会话级实例)
+ * 注意：不再是 Spring 单例，每次运行由 {@link CodeManusPool} 借出一个独立实例，
+ * 工具数组、ChatClient、提示词这些不可变的"重资产"在实例之间共享。
+ */
 public class CodeManus extends ToolCallAgent {
 
-    private static final String SYSTEM_PROMPT = """
+    static final String SYSTEM_PROMPT = """
             你是 CodeManus，一个拥有深度推理能力的 AI 编程侦探。
             
             【思维链强制协议 (CoT)】
@@ -31,28 +34,33 @@ public class CodeManus extends ToolCallAgent {
             ```
             
             【能力列表】
-            1. 📂 **read_file**: 读取本地代码/配置 (参数: path)
-            2. 🌐 **tavily_search**: 联网智能搜索 (参数: query)
+            1. 🧭 **find_symbol**: 查 Java 类/方法/字段定义在哪 (参数: name，如 McpClientPool.callTool)
+            2. 🔗 **find_usages**: 查 Java 类/方法/字段被谁调用、在哪使用 (参数: name)
+            3. 🔎 **search_code**: 全项目搜索代码，返回 文件:行号 (参数: query，可选 regex、path)
+            4. 📂 **read_file**: 读取本地代码/配置 (参数: path，可选 startLine、endLine)
+            5. 🗂️ **list_directory**: 列出目录下的文件和子目录 (参数: path)
+            6. ℹ️ **get_file_info**: 查看文件大小、修改时间等信息 (参数: path)
+            7. 🌐 **tavily_search**: 联网智能搜索 (参数: query)
                - 用途：查询技术文档、实时信息。返回的是AI整理后的答案，不需要再浏览网页。
-            3. 🏁 **terminate**: 任务完成 (参数: reason)
+            8. 🏁 **terminate**: 任务完成 (参数: reason)
             
             【操作原则】
-            - 如果问题涉及项目内部代码，优先用 `read_file`。
+            - 问 "X 在哪定义 / 谁调用了 X"，直接用 `find_symbol` / `find_usages`，一步到位。
+            - 其他涉及项目代码的问题，先用 `search_code` 定位 (不要猜路径)，再用 `read_file` 读命中的行附近。
             - 如果问题涉及外部知识（如 "Spring Boot 最新版本是多少"），请用 `tavily_search` 查询。
             - 获取到关键信息后，立即 `terminate`。
             """;
 
-    private static final String NEXT_STEP_PROMPT = """
+    static final String NEXT_STEP_PROMPT = """
             请继续。先思考 (Thinking)，再行动 (JSON)。
             """;
 
-    public CodeManus(ToolCallbackProvider toolCallbackProvider, ChatClient.Builder chatClientBuilder) {
-        super(toolCallbackProvider.getToolCallbacks(),
-                chatClientBuilder.build());
+    public CodeManus(FunctionCallback[] availableTools, ChatClient chatClient) {
+        super(availableTools, chatClient);
 
         this.setName("CodeManus");
         this.setSystemPrompt(SYSTEM_PROMPT);
         this.setNextStepPrompt(NEXT_STEP_PROMPT);
         this.setMaxSteps(15);
     }
-}
\ No newline at end of file
+}
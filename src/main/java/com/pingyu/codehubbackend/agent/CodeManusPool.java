@@ -0,0 +1,144 @@
+package com.pingyu.codehubbackend.agent;
+
+import com.pingyu.codehubbackend.advisor.SingleFlightAdvisor;
+import com.pingyu.codehubbackend.agent.model.AgentEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.model.function.FunctionCallback;
+import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * CodeManus 会话池 (Session-scoped Agent Runtime)
+ * 职责：
+ * 1. 只构建一次"重资产"：工具数组 (FunctionCallback[]) 和 ChatClient，所有会话共享；
+ * 2. 每次运行借出一个独立的 CodeManus 实例，state / messageList / currentStep / eventListener 互不干扰；
+ * 3. 用信号量限制同时运行的智能体数量 (codehub.agent.max-concurrent-runs)。
+ */
+@Component
+@Slf4j
+public class CodeManusPool {
+
+    private final FunctionCallback[] tools;
+    private final ChatClient chatClient;
+    private final int maxConcurrentRuns;
+    // 每个工具的超时 (codehub.agent.tool-timeout.<工具名>，缺省取 codehub.agent.tool-timeout.default)
+    private final Map<String, Duration> toolTimeouts = new HashMap<>();
+    private final Duration defaultToolTimeout;
+    private final boolean streamingThink;
+    private final ContextCompactor contextCompactor;
+
+    // 并发闸门：拿到许可才能开跑
+    private final Semaphore permits;
+    // 空闲实例回收站：跑完的实例洗干净后放回来复用
+    private final ConcurrentLinkedQueue<CodeManus> idleAgents = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger activeRuns = new AtomicInteger();
+
+    public CodeManusPool(ToolCallbackProvider toolCallbackProvider,
+                         ChatClient.Builder chatClientBuilder,
+                         ContextCompactor contextCompactor,
+                         ObjectProvider<SingleFlightAdvisor> singleFlightAdvisor,
+                         @Value("${codehub.agent.max-concurrent-runs:8}") int maxConcurrentRuns,
+                         @Value("${codehub.agent.streaming-think:true}") boolean streamingThink,
+                         Environment environment) {
+        // ToolCallbackProvider 每次 getToolCallbacks() 都可能重新组装，这里只取一次
+        this.tools = toolCallbackProvider.getToolCallbacks();
+        this.defaultToolTimeout = environment.getProperty("codehub.agent.tool-timeout.default", Duration.class, Duration.ofSeconds(60));
+        for (FunctionCallback tool : tools) {
+            Duration timeout = environment.getProperty("codehub.agent.tool-timeout." + tool.getName(), Duration.class);
+            if (timeout != null) {
+                toolTimeouts.put(tool.getName(), timeout);
+            }
+        }
+        // 非流式 think() 的相同 prompt 会被合并 (流式不受影响)
+        singleFlightAdvisor.ifAvailable(advisor -> chatClientBuilder.defaultAdvisors(advisor));
+        this.chatClient = chatClientBuilder.build();
+        this.maxConcurrentRuns = maxConcurrentRuns;
+        this.streamingThink = streamingThink;
+        this.contextCompactor = contextCompactor;
+        this.permits = new Semaphore(maxConcurrentRuns, true);
+        log.info("🏊 [CodeManusPool] 初始化完成，工具数: {}，最大并发会话: {}", tools.length, maxConcurrentRuns);
+    }
+
+    /**
+     * 启动一次会话 (带监听器版本) - Controller 用这个
+     * 会阻塞等待空闲许可
+     */
+    public void run(String userPrompt, Consumer<AgentEvent> listener) {
+        execute(agent -> {
+            agent.run(userPrompt, listener);
+            return null;
+        });
+    }
+
+    /**
+     * 启动一次会话 (兼容旧版本) - Runner 用这个
+     */
+    public String run(String userPrompt) {
+        return execute(agent -> agent.run(userPrompt));
+    }
+
+    public int getMaxConcurrentRuns() {
+        return maxConcurrentRuns;
+    }
+
+    public int getActiveRuns() {
+        return activeRuns.get();
+    }
+
+    public int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+
+    private <T> T execute(Function<CodeManus, T> task) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("等待智能体许可时被中断", e);
+        }
+
+        CodeManus agent = borrow();
+        activeRuns.incrementAndGet();
+        try {
+            return task.apply(agent);
+        } finally {
+            activeRuns.decrementAndGet();
+            giveBack(agent);
+            permits.release();
+        }
+    }
+
+    private CodeManus borrow() {
+        CodeManus agent = idleAgents.poll();
+        if (agent == null) {
+            agent = new CodeManus(tools, chatClient);
+            agent.setToolTimeouts(toolTimeouts);
+            agent.setDefaultToolTimeout(defaultToolTimeout);
+            agent.setStreamingThink(streamingThink);
+            agent.setContextCompactor(contextCompactor);
+        }
+        return agent;
+    }
+
+    private void giveBack(CodeManus agent) {
+        // 洗干净：断开上一个会话的监听器和上下文，防止串台
+        agent.setEventListener(event -> {});
+        agent.getMessageList().clear();
+        agent.setToolCallChatResponse(null);
+        agent.clearStreamState();
+        idleAgents.offer(agent);
+    }
+}
@@ -0,0 +1,234 @@
+package com.pingyu.codehubbackend.agent;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 上下文压缩器 (Context Compaction)
+ * 问题：15 步下来 messageList 会塞满重复的 NEXT_STEP_PROMPT、整段 AssistantMessage 和整份文件内容，
+ *      每次 think() 全部重发给 DashScope，越跑越慢越贵。
+ * 策略 (按顺序执行，直到落进 Token 预算)：
+ * 1. 去重：只保留最后一条 NEXT_STEP_PROMPT；
+ * 2. 裁剪 (只在超预算时)：最近 N 条消息原样保留，更早的工具输出 / 系统执行报告从最旧的开始只留开头并标注省略量；
+ * 3. 丢弃：仍然超预算时，从最旧的轮次开始整轮丢弃 (助手消息和它的工具响应一起走)，
+ *    第一条用户任务永远保留，并插入一条占位说明。
+ * Token 用本地 JTokkit 估算，不调用远程接口。
+ */
+@Component
+@Slf4j
+public class ContextCompactor {
+
+    static final String SYSTEM_REPORT_PREFIX = "【系统执行报告】";
+    private static final String PLACEHOLDER_PREFIX = "【上下文已压缩】";
+    private static final String TRUNCATED_MARKER = "\n...[已省略约 ";
+
+    private final TokenCountEstimator tokenCountEstimator = new JTokkitTokenCountEstimator();
+
+    private final boolean enabled;
+    private final int tokenBudget;
+    private final int keepRecentMessages;
+    private final int oldToolOutputTokens;
+
+    public ContextCompactor(@Value("${codehub.agent.context.enabled:true}") boolean enabled,
+                            @Value("${codehub.agent.context.token-budget:12000}") int tokenBudget,
+                            @Value("${codehub.agent.context.keep-recent-messages:6}") int keepRecentMessages,
+                            @Value("${codehub.agent.context.old-tool-output-tokens:400}") int oldToolOutputTokens) {
+        this.enabled = enabled;
+        this.tokenBudget = tokenBudget;
+        this.keepRecentMessages = keepRecentMessages;
+        this.oldToolOutputTokens = oldToolOutputTokens;
+    }
+
+    /**
+     * 压缩消息历史
+     * @param messages       原始历史 (第一条是用户任务)
+     * @param systemPrompt   系统提示词 (计入预算但不压缩)
+     * @param nextStepPrompt 每一步追加的引导语，用于去重
+     * @return 压缩后的新列表
+     */
+    public List<Message> compact(List<Message> messages, String systemPrompt, String nextStepPrompt) {
+        if (!enabled || messages.isEmpty()) return messages;
+        int systemTokens = estimate(systemPrompt);
+        int before = countTokens(messages) + systemTokens;
+
+        // --- 1. 去重 NEXT_STEP_PROMPT ---
+        List<Message> result = dedupeNextStepPrompts(messages, nextStepPrompt);
+        // 维护一个累计值，每次裁剪 / 丢弃只算变化的那几条，不重复统计整个列表
+        int total = countTokens(result) + systemTokens;
+
+        // --- 2. 超预算才裁剪旧的工具输出 (从最旧的开始，落进预算就停；裁掉的内容找不回来，没必要不动) ---
+        int recentStart = recentBoundary(result);
+        for (int i = 1; i < recentStart && total > tokenBudget; i++) {
+            Message original = result.get(i);
+            Message trimmed = trimOld(original);
+            if (trimmed != original) {
+                result.set(i, trimmed);
+                total += tokens(trimmed) - tokens(original);
+            }
+        }
+
+        // --- 3. 仍然超预算就整轮丢弃最旧的历史 ---
+        int dropped = previouslyDropped(result);
+        while (total > tokenBudget) {
+            // 下标 0 是用户任务，下标 1 可能是之前留下的占位说明
+            boolean hasPlaceholder = isPlaceholder(result, 1);
+            int dropFrom = hasPlaceholder ? 2 : 1;
+            if (dropFrom >= recentBoundary(result)) break; // 只剩最近几轮了，不能再丢
+            List<Message> removed = dropTurn(result, dropFrom);
+            dropped += removed.size();
+            total -= countTokens(removed);
+            UserMessage placeholder = placeholder(dropped);
+            if (hasPlaceholder) {
+                total -= tokens(result.set(1, placeholder));
+            } else {
+                result.add(1, placeholder);
+            }
+            total += tokens(placeholder);
+        }
+
+        if (total < before) {
+            log.info("🗜️ [ContextCompactor] 上下文压缩: {} -> {} tokens (消息 {} -> {} 条)",
+                    before, total, messages.size(), result.size());
+        }
+        return result;
+    }
+
+    private List<Message> dedupeNextStepPrompts(List<Message> messages, String nextStepPrompt) {
+        List<Message> result = new ArrayList<>(messages.size());
+        int lastPromptIndex = -1;
+        if (nextStepPrompt != null) {
+            for (int i = messages.size() - 1; i >= 0; i--) {
+                if (isNextStepPrompt(messages.get(i), nextStepPrompt)) {
+                    lastPromptIndex = i;
+                    break;
+                }
+            }
+        }
+        for (int i = 0; i < messages.size(); i++) {
+            Message message = messages.get(i);
+            if (i != lastPromptIndex && isNextStepPrompt(message, nextStepPrompt)) continue;
+            result.add(message);
+        }
+        return result;
+    }
+
+    /**
+     * 最近 N 条消息的起点，保证不会把助手消息和紧随其后的工具响应拆开
+     */
+    private int recentBoundary(List<Message> messages) {
+        int boundary = Math.max(1, messages.size() - keepRecentMessages);
+        while (boundary > 1 && messages.get(boundary) instanceof ToolResponseMessage) {
+            boundary--;
+        }
+        return boundary;
+    }
+
+    private Message trimOld(Message message) {
+        if (message instanceof ToolResponseMessage toolResponseMessage) {
+            List<ToolResponseMessage.ToolResponse> trimmed = new ArrayList<>();
+            boolean changed = false;
+            for (ToolResponseMessage.ToolResponse response : toolResponseMessage.getResponses()) {
+                String data = truncate(response.responseData(), oldToolOutputTokens);
+                changed |= data != response.responseData();
+                trimmed.add(new ToolResponseMessage.ToolResponse(response.id(), response.name(), data));
+            }
+            return changed ? new ToolResponseMessage(trimmed, toolResponseMessage.getMetadata()) : message;
+        }
+        if (message instanceof UserMessage && message.getText() != null && message.getText().startsWith(SYSTEM_REPORT_PREFIX)) {
+            String text = truncate(message.getText(), oldToolOutputTokens);
+            return text == message.getText() ? message : new UserMessage(text);
+        }
+        if (message instanceof AssistantMessage assistantMessage) {
+            String text = truncate(assistantMessage.getText(), oldToolOutputTokens);
+            return text == assistantMessage.getText() ? message
+                    : new AssistantMessage(text, assistantMessage.getMetadata(), assistantMessage.getToolCalls());
+        }
+        return message;
+    }
+
+    /**
+     * 丢弃从 index 开始的一整轮
+     * @return 丢弃的消息
+     */
+    private List<Message> dropTurn(List<Message> messages, int index) {
+        List<Message> removed = new ArrayList<>();
+        Message first = messages.remove(index);
+        removed.add(first);
+        if (first instanceof AssistantMessage) {
+            // 助手消息后面紧跟的工具响应 / 系统执行报告属于同一轮
+            while (index < messages.size() && (messages.get(index) instanceof ToolResponseMessage
+                    || (messages.get(index) instanceof UserMessage && messages.get(index).getText() != null
+                    && messages.get(index).getText().startsWith(SYSTEM_REPORT_PREFIX)))) {
+                removed.add(messages.remove(index));
+            }
+        }
+        return removed;
+    }
+
+    private String truncate(String text, int maxTokens) {
+        // 已经裁过的不再重复裁，避免每一步都削掉一点
+        if (text == null || text.contains(TRUNCATED_MARKER)) return text;
+        int tokens = estimate(text);
+        if (tokens <= maxTokens) return text;
+        int keepChars = Math.max(1, (int) ((long) text.length() * maxTokens / tokens));
+        return text.substring(0, keepChars) + TRUNCATED_MARKER + (tokens - maxTokens) + " tokens]";
+    }
+
+    private UserMessage placeholder(int droppedMessages) {
+        return new UserMessage(PLACEHOLDER_PREFIX + "为节省上下文，已省略更早的 " + droppedMessages + " 条历史消息。");
+    }
+
+    private boolean isPlaceholder(List<Message> messages, int index) {
+        return index < messages.size() && messages.get(index) instanceof UserMessage
+                && messages.get(index).getText() != null
+                && messages.get(index).getText().startsWith(PLACEHOLDER_PREFIX);
+    }
+
+    // 从已有占位说明里读出之前累计丢弃的条数，保证数字跨步骤累加
+    private int previouslyDropped(List<Message> messages) {
+        if (!isPlaceholder(messages, 1)) return 0;
+        String digits = messages.get(1).getText().replaceAll("\\D+", "");
+        try {
+            return digits.isEmpty() ? 0 : Integer.parseInt(digits);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private boolean isNextStepPrompt(Message message, String nextStepPrompt) {
+        return nextStepPrompt != null && message instanceof UserMessage && nextStepPrompt.equals(message.getText());
+    }
+
+    private int countTokens(List<Message> messages) {
+        int total = 0;
+        for (Message message : messages) {
+            total += tokens(message);
+        }
+        return total;
+    }
+
+    private int tokens(Message message) {
+        if (message instanceof ToolResponseMessage toolResponseMessage) {
+            int total = 0;
+            for (ToolResponseMessage.ToolResponse response : toolResponseMessage.getResponses()) {
+                total += estimate(response.responseData());
+            }
+            return total;
+        }
+        return estimate(message.getText());
+    }
+
+    private int estimate(String text) {
+        return text == null || text.isEmpty() ? 0 : tokenCountEstimator.estimate(text);
+    }
+}
@@ -0,0 +1,94 @@
+package com.pingyu.codehubbackend.agent;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 流式工具调用探测器 (义肢模式专用)
+ * 作用：边接收 Token 边数括号，一旦顶层 JSON 对象闭合且包含 "name"，立刻吐出一个完整的工具调用，
+ * 不必等整段回复生成完毕。字符串里的括号和转义字符会被正确跳过。
+ */
+@Slf4j
+public class StreamingToolCallDetector {
+
+    /** 探测到的工具调用 (arguments 为 JSON 字符串) */
+    public record DetectedCall(String name, String arguments) {}
+
+    private final ObjectMapper objectMapper;
+
+    private final StringBuilder buffer = new StringBuilder();
+    private int depth = 0;
+    private boolean inString = false;
+    private boolean escaping = false;
+
+    public StreamingToolCallDetector(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 喂入一段增量文本
+     * @return 本次新闭合的工具调用 (通常为空)
+     */
+    public List<DetectedCall> feed(String delta) {
+        List<DetectedCall> detected = new ArrayList<>();
+        if (delta == null) return detected;
+
+        for (int i = 0; i < delta.length(); i++) {
+            char c = delta.charAt(i);
+
+            if (depth == 0) {
+                // 顶层只关心 JSON 起点，其余是思维链文本
+                if (c == '{') {
+                    depth = 1;
+                    buffer.setLength(0);
+                    buffer.append(c);
+                }
+                continue;
+            }
+
+            buffer.append(c);
+            if (inString) {
+                if (escaping) {
+                    escaping = false;
+                } else if (c == '\\') {
+                    escaping = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+
+            if (c == '"') {
+                inString = true;
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                depth--;
+                if (depth == 0) {
+                    DetectedCall call = tryParse(buffer.toString());
+                    if (call != null) detected.add(call);
+                    buffer.setLength(0);
+                }
+            }
+        }
+        return detected;
+    }
+
+    private DetectedCall tryParse(String json) {
+        try {
+            JsonNode node = objectMapper.readTree(json);
+            if (node == null || !node.hasNonNull("name")) return null;
+            String name = node.get("name").asText();
+            String args = node.has("arguments") ? node.get("arguments").toString() : "{}";
+            return new DetectedCall(name, args);
+        } catch (Exception e) {
+            // 思维链里偶尔会出现普通的花括号，不是 JSON 就算了
+            log.debug("跳过无法解析的 JSON 片段: {}", json);
+            return null;
+        }
+    }
+}
@@ -4,30 +4,72 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pingyu.codehubbackend.agent.model.AgentEvent;
 import com.pingyu.codehubbackend.agent.model.AgentState;
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.ToolResponseMessage;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
 import org.springframework.ai.model.function.FunctionCallback;
+import reactor.core.publisher.Flux;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 @EqualsAndHashCode(callSuper = true)
 @Data
 @Slf4j
 public class ToolCallAgent extends ReActAgent {
 
+    private static final String TERMINATE_TOOL = "terminate";
+
+    // 工具执行器：每个工具调用一个虚拟线程，所有会话共享
+    private static final ExecutorService TOOL_EXECUTOR = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("agent-tool-", 0).factory());
+
     private final FunctionCallback[] availableTools;
     private ChatResponse toolCallChatResponse;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    // 单个工具的超时时间 (按工具名配置，未配置的用默认值)
+    private Map<String, Duration> toolTimeouts = Map.of();
+    private Duration defaultToolTimeout = Duration.ofSeconds(60);
+
+    // 上下文压缩器：每次 think() 前把历史压进 Token 预算 (为 null 则不压缩)
+    private ContextCompactor contextCompactor;
+
+    // 流式思考：边生成边推送思维链，工具调用 JSON 一闭合就提前派发
+    private boolean streamingThink = true;
+    // 流式阶段探测到的义肢模式工具调用 (按出现顺序)
+    private final List<AssistantMessage.ToolCall> streamedToolCalls = new ArrayList<>();
+    // 流式阶段已提前派发的工具调用 (key = ToolCall id)，act() 直接收割
+    @Getter(AccessLevel.NONE)
+    private final Map<String, PendingToolCall> prefetchedCalls = new LinkedHashMap<>();
+
+    /** 一个已派发、尚未收割的工具调用 */
+    private record PendingToolCall(AssistantMessage.ToolCall toolCall, FunctionCallback tool,
+                                   Future<String> future, long deadlineNanos) {}
+
     public ToolCallAgent(FunctionCallback[] availableTools, ChatClient chatClient) {
         this.availableTools = availableTools;
         this.setChatClient(chatClient);
@@ -39,13 +81,15 @@ public class ToolCallAgent extends ReActAgent {
         if (getNextStepPrompt() != null) {
             getMessageList().add(new UserMessage(getNextStepPrompt()));
         }
+        compactContext();
 
         try {
             log.info("🧠 CodeManus 正在大脑风暴 (Thinking)...");
             // 📡 广播：正在思考
             notify(AgentEvent.thinking("🧠 正在思考中..."));
 
-            ChatResponse response = getChatClient().prompt()
+            clearStreamState();
+            ChatResponse response = streamingThink ? streamChatResponse() : getChatClient().prompt()
                     .system(getSystemPrompt())
                     .messages(getMessageList())
                     .functions(availableTools)
@@ -58,16 +102,18 @@ public class ToolCallAgent extends ReActAgent {
             String text = output.getText();
             List<AssistantMessage.ToolCall> toolCalls = output.getToolCalls();
 
-            // 📡 广播：思维链内容
+            // 📡 广播：思维链内容 (流式模式下已经逐段推送过了)
             if (text != null && !text.isEmpty()) {
                 log.info("\n=== 💭 [CoT] ===\n{}\n================", text.trim());
-                notify(AgentEvent.thinking(text.trim()));
+                if (!streamingThink) {
+                    notify(AgentEvent.thinking(text.trim()));
+                }
             }
 
             if (toolCalls != null && !toolCalls.isEmpty()) {
                 log.info("🛠️ [决策] 决定调用 {} 个工具", toolCalls.size());
                 return true;
-            } else if (isFakeToolCall(text)) {
+            } else if (!streamedToolCalls.isEmpty() || isFakeToolCall(text)) {
                 log.warn("⚠️ [义肢模式] 检测到文本指令...");
                 return true;
             } else {
@@ -84,6 +130,170 @@ public class ToolCallAgent extends ReActAgent {
         }
     }
 
+    /**
+     * 发送前压缩历史：每一步的 prompt 体积保持平稳，不随步数线性膨胀
+     */
+    private void compactContext() {
+        if (contextCompactor == null) return;
+        List<Message> compacted = contextCompactor.compact(getMessageList(), getSystemPrompt(), getNextStepPrompt());
+        if (compacted != getMessageList()) {
+            getMessageList().clear();
+            getMessageList().addAll(compacted);
+        }
+    }
+
+    /**
+     * 流式思考 (ChatClient.prompt().stream())
+     * 1. 每个文本增量立即作为 THINKING 事件推给前端；
+     * 2. 义肢模式的 JSON 或原生 ToolCall 一旦完整，立刻提前派发，不等生成结束；
+     *    原生 ToolCall 的 name / arguments 可能分散在多个 chunk 里，按 id 缓冲拼接，arguments 闭合成 JSON 才算完整；
+     * 3. 探测到 terminate 就停止接收剩余 Token。
+     * 最后把增量拼回一个完整的 ChatResponse，act() 照常使用。
+     */
+    private ChatResponse streamChatResponse() {
+        StreamingToolCallDetector detector = new StreamingToolCallDetector(objectMapper);
+        StringBuilder fullText = new StringBuilder();
+        Map<String, NativeToolCallBuffer> nativeToolCalls = new LinkedHashMap<>();
+        NativeToolCallBuffer current = null;
+
+        Flux<ChatResponse> flux = getChatClient().prompt()
+                .system(getSystemPrompt())
+                .messages(getMessageList())
+                .functions(availableTools)
+                .stream()
+                .chatResponse();
+
+        // 关闭 Stream 会取消上游订阅，提前 break 时不会继续消耗 Token
+        try (Stream<ChatResponse> chunks = flux.toStream()) {
+            Iterator<ChatResponse> iterator = chunks.iterator();
+            boolean terminateSeen = false;
+            while (iterator.hasNext() && !terminateSeen) {
+                ChatResponse chunk = iterator.next();
+                if (chunk == null || chunk.getResult() == null || chunk.getResult().getOutput() == null) continue;
+                AssistantMessage delta = chunk.getResult().getOutput();
+
+                String text = delta.getText();
+                if (text != null && !text.isEmpty()) {
+                    fullText.append(text);
+                    // 📡 广播：思维链增量
+                    notify(AgentEvent.thinkingDelta(text));
+
+                    for (StreamingToolCallDetector.DetectedCall call : detector.feed(text)) {
+                        AssistantMessage.ToolCall toolCall = toFakeToolCall(call.name(), call.arguments(), streamedToolCalls.size());
+                        streamedToolCalls.add(toolCall);
+                        terminateSeen |= prefetch(toolCall);
+                    }
+                }
+
+                List<AssistantMessage.ToolCall> deltaToolCalls = delta.getToolCalls();
+                if (deltaToolCalls != null) {
+                    for (AssistantMessage.ToolCall fragment : deltaToolCalls) {
+                        // 带 id 的是新调用 (或同一调用的后续片段)，不带 id 的续接上一个调用
+                        if (fragment.id() != null && !fragment.id().isBlank()) {
+                            current = nativeToolCalls.computeIfAbsent(fragment.id(), NativeToolCallBuffer::new);
+                        } else if (current == null) {
+                            current = new NativeToolCallBuffer("native_call_" + nativeToolCalls.size());
+                            nativeToolCalls.put(current.id, current);
+                        }
+                        current.append(fragment);
+                        if (!current.dispatched && current.isReady(this::isCompleteJson)) {
+                            current.dispatched = true;
+                            terminateSeen |= prefetch(current.toToolCall());
+                        }
+                    }
+                }
+            }
+            if (terminateSeen) {
+                log.info("🛑 [流式] 已探测到 terminate，停止接收剩余 Token");
+            }
+        }
+
+        List<AssistantMessage.ToolCall> toolCalls = new ArrayList<>();
+        for (NativeToolCallBuffer buffer : nativeToolCalls.values()) {
+            // 流结束时仍没有 arguments 的 (无参工具) 按 {} 处理
+            if (buffer.dispatched || buffer.isReady(this::isCompleteJson) || (!buffer.name.isBlank() && buffer.arguments.isEmpty())) {
+                toolCalls.add(buffer.toToolCall());
+            } else {
+                log.warn("⚠️ [流式] 丢弃不完整的工具调用: {} {}", buffer.name, buffer.arguments);
+            }
+        }
+        AssistantMessage output = new AssistantMessage(fullText.toString(), Map.of(), toolCalls);
+        return new ChatResponse(List.of(new Generation(output)));
+    }
+
+    /**
+     * 原生 ToolCall 的增量缓冲
+     * 多数模型第一个 chunk 给 id + name，之后的 chunk 只给 arguments 的一小段；
+     * 也有模型每个 chunk 都给到目前为止的完整 arguments，这种情况直接替换而不是追加。
+     */
+    private static final class NativeToolCallBuffer {
+        final String id;
+        String type = "function";
+        String name = "";
+        final StringBuilder arguments = new StringBuilder();
+        boolean dispatched;
+
+        NativeToolCallBuffer(String id) {
+            this.id = id;
+        }
+
+        void append(AssistantMessage.ToolCall fragment) {
+            if (fragment.type() != null && !fragment.type().isBlank()) type = fragment.type();
+            if (fragment.name() != null && !fragment.name().isBlank()) name = fragment.name();
+            String args = fragment.arguments();
+            if (args == null || args.isEmpty()) return;
+            if (!arguments.isEmpty() && args.startsWith(arguments.toString())) {
+                arguments.setLength(0);
+            }
+            arguments.append(args);
+        }
+
+        /** name 已知、arguments 以 } 结尾且能解析成 JSON */
+        boolean isReady(Predicate<String> completeJson) {
+            String args = arguments.toString().strip();
+            return !name.isBlank() && args.endsWith("}") && completeJson.test(args);
+        }
+
+        AssistantMessage.ToolCall toToolCall() {
+            return new AssistantMessage.ToolCall(id, type, name, arguments.isEmpty() ? "{}" : arguments.toString());
+        }
+    }
+
+    /**
+     * 提前派发一个刚闭合的工具调用
+     * @return 是否是 terminate (terminate 不提前执行，留给 act() 统一收尾)
+     */
+    private boolean prefetch(AssistantMessage.ToolCall toolCall) {
+        Optional<FunctionCallback> matched = findTool(toolCall.name());
+        if (matched.isEmpty()) return false;
+        if (TERMINATE_TOOL.equals(matched.get().getName())) return true;
+
+        log.info("🚀 [流式] 提前派发工具: {}", toolCall.name());
+        prefetchedCalls.put(toolCall.id(), dispatch(toolCall));
+        return false;
+    }
+
+    /**
+     * 清理上一轮流式阶段的残留 (没被 act() 收割的提前派发会被取消)
+     */
+    void clearStreamState() {
+        prefetchedCalls.values().forEach(pending -> {
+            if (pending.future() != null) pending.future().cancel(true);
+        });
+        prefetchedCalls.clear();
+        streamedToolCalls.clear();
+    }
+
+    private boolean isCompleteJson(String json) {
+        if (json == null || json.isBlank()) return false;
+        try {
+            objectMapper.readTree(json);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
     @Override
     public String act() {
         if (toolCallChatResponse == null) return "无需执行";
@@ -91,73 +301,45 @@ public class ToolCallAgent extends ReActAgent {
         List<AssistantMessage.ToolCall> toolCalls = output.getToolCalls();
         String textContent = output.getText();
 
-        boolean isProstheticMode = (toolCalls == null || toolCalls.isEmpty()) && isFakeToolCall(textContent);
+        boolean isProstheticMode = (toolCalls == null || toolCalls.isEmpty())
+                && (!streamedToolCalls.isEmpty() || isFakeToolCall(textContent));
         if (isProstheticMode) {
-            toolCalls = parseFakeToolCalls(textContent);
+            // 流式阶段已经逐个解析好了，优先用；否则回退到整段文本解析
+            toolCalls = !streamedToolCalls.isEmpty() ? new ArrayList<>(streamedToolCalls) : parseFakeToolCalls(textContent);
         }
 
         if (toolCalls == null || toolCalls.isEmpty()) {
             return "无需执行工具";
         }
 
-        log.info("⚡ CodeManus 正在行动...");
-        List<String> executionResults = new ArrayList<>();
-        List<ToolResponseMessage.ToolResponse> standardResponses = new ArrayList<>();
-
+        // 🛑 刹车优先：本轮只要出现 terminate，其余工具不再执行，直接短路收工
         for (AssistantMessage.ToolCall toolCall : toolCalls) {
-            try {
-                String targetName = toolCall.name();
-                String args = toolCall.arguments();
-
-                // 📡 广播：准备调用工具
-                notify(AgentEvent.action(targetName, args));
-
-                Optional<FunctionCallback> matchedTool = Arrays.stream(availableTools)
-                        .filter(t -> t.getName().contains(targetName) || targetName.contains(t.getName()))
-                        .findFirst();
-
-                String resultJson;
-                if (matchedTool.isPresent()) {
-                    String realName = matchedTool.get().getName();
-                    log.info("✅ 命中工具: [{}]", realName);
-
-                    // 执行工具
-                    resultJson = matchedTool.get().call(args);
-
-                    // 📡 广播：工具执行结果
-                    // 如果结果太长（比如网页内容），可以在这里截断再发给前端，防止卡顿
-                    notify(AgentEvent.result(resultJson.length() > 500 ? resultJson.substring(0, 500) + "..." : resultJson));
-
-                    // 刹车检测
-                    if ("terminate".equals(realName) || "TERMINATE_SIGNAL".equals(resultJson) || "TERMINATE_NOW".equals(resultJson) || "TERMINATE_AGENT".equals(resultJson)) {
-                        log.info("🛑 [优雅退场] CodeManus 任务完成。");
-                        this.setState(AgentState.FINISHED);
+            Optional<FunctionCallback> matched = findTool(toolCall.name());
+            if (matched.isPresent() && TERMINATE_TOOL.equals(matched.get().getName())) {
+                clearStreamState();
+                finish(toolCall.arguments());
+            }
+        }
 
-                        // 提取最终原因作为 Answer
-                        String finalReason = args;
-                        try {
-                            JsonNode node = objectMapper.readTree(args);
-                            if (node.has("reason")) finalReason = node.get("reason").asText();
-                        } catch (Exception ignored) {}
+        log.info("⚡ CodeManus 正在行动... (并发派发 {} 个工具)", toolCalls.size());
 
-                        notify(AgentEvent.answer(finalReason));
+        // 1. 并发派发：每个工具一个虚拟线程，各自独立计时 (流式阶段已提前派发的直接复用)
+        List<PendingToolCall> pendingCalls = new ArrayList<>();
+        for (AssistantMessage.ToolCall toolCall : toolCalls) {
+            PendingToolCall prefetched = prefetchedCalls.remove(toolCall.id());
+            pendingCalls.add(prefetched != null ? prefetched : dispatch(toolCall));
+        }
 
-                        throw new RuntimeException("TERMINATE_AGENT");
-                    }
-                } else {
-                    resultJson = "Error: Tool '" + targetName + "' not found.";
-                    notify(AgentEvent.error(resultJson));
-                }
+        // 2. 按模型给出的原始顺序收集结果，保证 ToolResponseMessage 顺序确定
+        List<String> executionResults = new ArrayList<>();
+        List<ToolResponseMessage.ToolResponse> standardResponses = new ArrayList<>();
+        for (PendingToolCall pending : pendingCalls) {
+            AssistantMessage.ToolCall toolCall = pending.toolCall();
+            String resultJson = await(pending);
 
-                executionResults.add(String.format("工具 [%s] 结果: %s", targetName, resultJson));
-                if (!isProstheticMode) {
-                    standardResponses.add(new ToolResponseMessage.ToolResponse(toolCall.id(), toolCall.name(), resultJson));
-                }
-            } catch (Exception e) {
-                if (isTerminationException(e)) throw (RuntimeException) e;
-                log.error("❌ 工具执行异常", e);
-                notify(AgentEvent.error("工具执行异常: " + e.getMessage()));
-                executionResults.add("Error: " + e.getMessage());
+            executionResults.add(String.format("工具 [%s] 结果: %s", toolCall.name(), resultJson));
+            if (!isProstheticMode) {
+                standardResponses.add(new ToolResponseMessage.ToolResponse(toolCall.id(), toolCall.name(), resultJson));
             }
         }
 
@@ -173,6 +355,94 @@ public class ToolCallAgent extends ReActAgent {
         return String.join("\n", executionResults);
     }
 
+    /**
+     * 派发单个工具调用 (不阻塞)
+     * 广播 ACTION 事件在调用线程里完成，保证事件顺序和模型给出的顺序一致
+     */
+    private PendingToolCall dispatch(AssistantMessage.ToolCall toolCall) {
+        String targetName = toolCall.name();
+        String args = toolCall.arguments();
+
+        // 📡 广播：准备调用工具
+        notify(AgentEvent.action(targetName, args));
+
+        Optional<FunctionCallback> matchedTool = findTool(targetName);
+        if (matchedTool.isEmpty()) {
+            return new PendingToolCall(toolCall, null, null, 0);
+        }
+
+        FunctionCallback tool = matchedTool.get();
+        log.info("✅ 命中工具: [{}]", tool.getName());
+        Duration timeout = toolTimeouts.getOrDefault(tool.getName(), defaultToolTimeout);
+        Future<String> future = TOOL_EXECUTOR.submit(() -> tool.call(args));
+        return new PendingToolCall(toolCall, tool, future, System.nanoTime() + timeout.toNanos());
+    }
+
+    /**
+     * 等待单个工具结果，超时只影响这一个工具
+     */
+    private String await(PendingToolCall pending) {
+        String targetName = pending.toolCall().name();
+        if (pending.tool() == null) {
+            String resultJson = "Error: Tool '" + targetName + "' not found.";
+            notify(AgentEvent.error(resultJson));
+            return resultJson;
+        }
+
+        try {
+            long remaining = Math.max(0, pending.deadlineNanos() - System.nanoTime());
+            String resultJson = pending.future().get(remaining, TimeUnit.NANOSECONDS);
+            if (resultJson == null) resultJson = "";
+
+            // 📡 广播：工具执行结果
+            // 如果结果太长（比如网页内容），可以在这里截断再发给前端，防止卡顿
+            notify(AgentEvent.result(resultJson.length() > 500 ? resultJson.substring(0, 500) + "..." : resultJson));
+            return resultJson;
+        } catch (TimeoutException e) {
+            pending.future().cancel(true);
+            Duration timeout = toolTimeouts.getOrDefault(pending.tool().getName(), defaultToolTimeout);
+            String msg = "Error: 工具 [" + targetName + "] 执行超时 (" + timeout.toSeconds() + "s)";
+            log.warn("⏰ {}", msg);
+            notify(AgentEvent.error(msg));
+            return msg;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.future().cancel(true);
+            throw new RuntimeException("等待工具结果时被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (isTerminationException(cause)) throw new RuntimeException("TERMINATE_AGENT", cause);
+            log.error("❌ 工具执行异常", cause);
+            notify(AgentEvent.error("工具执行异常: " + cause.getMessage()));
+            return "Error: " + cause.getMessage();
+        }
+    }
+
+    /**
+     * 优雅退场：提取最终原因作为 Answer，然后抛出终止信号
+     */
+    private void finish(String args) {
+        log.info("🛑 [优雅退场] CodeManus 任务完成。");
+        notify(AgentEvent.action(TERMINATE_TOOL, args));
+        this.setState(AgentState.FINISHED);
+
+        String finalReason = args;
+        try {
+            JsonNode node = objectMapper.readTree(args);
+            if (node.has("reason")) finalReason = node.get("reason").asText();
+        } catch (Exception ignored) {}
+
+        notify(AgentEvent.answer(finalReason));
+
+        throw new RuntimeException("TERMINATE_AGENT");
+    }
+
+    private Optional<FunctionCallback> findTool(String targetName) {
+        return Arrays.stream(availableTools)
+                .filter(t -> t.getName().contains(targetName) || targetName.contains(t.getName()))
+                .findFirst();
+    }
+
     private boolean isTerminationException(Throwable e) {
         if (e == null) return false;
         if (e.getMessage() != null && e.getMessage().contains("TERMINATE_AGENT")) return true;
@@ -195,10 +465,7 @@ public class ToolCallAgent extends ReActAgent {
                 if (node.has("name")) {
                     String name = node.get("name").asText();
                     String args = node.has("arguments") ? node.get("arguments").toString() : "{}";
-                    if (name.contains("read_file") && args.contains("file_path")) {
-                        args = args.replace("file_path", "path");
-                    }
-                    fakeCalls.add(new AssistantMessage.ToolCall("manual_id_" + System.currentTimeMillis(), "function", name, args));
+                    fakeCalls.add(toFakeToolCall(name, args, 0));
                 }
             }
         } catch (Exception e) {
@@ -206,4 +473,11 @@ public class ToolCallAgent extends ReActAgent {
         }
         return fakeCalls;
     }
-}
\ No newline at end of file
+
+    private AssistantMessage.ToolCall toFakeToolCall(String name, String args, int index) {
+        if (name.contains("read_file") && args.contains("file_path")) {
+            args = args.replace("file_path", "path");
+        }
+        return new AssistantMessage.ToolCall("manual_id_" + System.currentTimeMillis() + "_" + index, "function", name, args);
+    }
+}
@@ -8,7 +8,8 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @NoArgsConstructor
 public class AgentEvent {
-    // 事件类型: "THINKING"(思考), "ACTION"(行动), "RESULT"(结果/观察), "ANSWER"(最终答案/终止), "ERROR"(错误)
+    // 事件类型: "THINKING"(思考), "ACTION"(行动), "RESULT"(结果/观察), "ANSWER"(最终答案/终止), "ERROR"(错误),
+    //          "QUEUED"(排队中), "BUSY"(满载被拒)
     private String type;
 
     // 事件内容
@@ -21,6 +22,11 @@ public class AgentEvent {
         return new AgentEvent("THINKING", text, null);
     }
 
+    // 流式思考的增量片段，meta 标记为 delta，前端按顺序拼接即可
+    public static AgentEvent thinkingDelta(String delta) {
+        return new AgentEvent("THINKING", delta, "delta");
+    }
+
     public static AgentEvent action(String toolName, String args) {
         return new AgentEvent("ACTION", args, toolName);
     }
@@ -36,4 +42,13 @@ public class AgentEvent {
     public static AgentEvent error(String msg) {
         return new AgentEvent("ERROR", msg, null);
     }
+
+    // 不带排队名次：名次在排队期间会变，只提示 "排队中"，拿到许可后直接开始推送 THINKING
+    public static AgentEvent queued() {
+        return new AgentEvent("QUEUED", "⏳ 智能体繁忙，正在排队...", null);
+    }
+
+    public static AgentEvent busy(String msg) {
+        return new AgentEvent("BUSY", msg, null);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,68 @@
+package com.pingyu.codehubbackend.common;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 请求合并 (Single-Flight)
+ * 作用：同一时刻 Key 相同的请求只真正执行一次，后到的调用方直接等第一个的结果，大家拿到同一个返回值。
+ * 注意：只合并"进行中"的请求，执行完立即移除，不做缓存 (缓存是 ToolResultCache 的事)。
+ */
+public class SingleFlight<V> {
+
+    private final ConcurrentHashMap<String, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    // 真正执行的次数 / 搭便车的次数
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+
+    public V execute(String key, Supplier<V> supplier) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            shared.increment();
+            return await(existing);
+        }
+
+        executions.increment();
+        try {
+            V value = supplier.get();
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private V await(CompletableFuture<V> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("等待合并请求结果时被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) throw runtimeException;
+            if (cause instanceof Error error) throw error;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    public long getExecutions() {
+        return executions.sum();
+    }
+
+    public long getShared() {
+        return shared.sum();
+    }
+
+    public int getInFlight() {
+        return inFlight.size();
+    }
+}
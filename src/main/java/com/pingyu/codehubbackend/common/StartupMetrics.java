@@ -0,0 +1,76 @@
+package com.pingyu.codehubbackend.common;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 智码 - 启动耗时观测
+ * 记录三个时间点 (都相对 JVM 启动时刻)：
+ * 1. readyMillis：Spring 容器就绪，可以开始接 HTTP 请求；
+ * 2. firstRequestMillis：第一个 HTTP 请求到达；
+ * 3. firstRequestDoneMillis：第一个 HTTP 请求处理完 (time-to-first-request)。
+ */
+@Component
+public class StartupMetrics extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupMetrics.class);
+
+    private final long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+    private volatile long readyMillis = -1;
+    private final AtomicLong firstRequestMillis = new AtomicLong(-1);
+    private volatile long firstRequestDoneMillis = -1;
+    private volatile String firstRequestUri;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        readyMillis = sinceJvmStart();
+        log.info("⏱️ [StartupMetrics] 应用已就绪，距 JVM 启动 {}ms", readyMillis);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        // 只有第一个请求需要计时，之后就是一次 CAS 失败的开销
+        boolean first = firstRequestMillis.get() < 0 && firstRequestMillis.compareAndSet(-1, sinceJvmStart());
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (first) {
+                firstRequestUri = request.getRequestURI();
+                firstRequestDoneMillis = sinceJvmStart();
+                log.info("⏱️ [StartupMetrics] 首个请求 {} 完成，距 JVM 启动 {}ms (到达 {}ms)",
+                        firstRequestUri, firstRequestDoneMillis, firstRequestMillis.get());
+            }
+        }
+    }
+
+    private long sinceJvmStart() {
+        return System.currentTimeMillis() - jvmStartMillis;
+    }
+
+    /**
+     * 启动耗时快照 (给运维接口用)，-1 表示还没发生
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("readyMillis", readyMillis);
+        result.put("firstRequestMillis", firstRequestMillis.get());
+        result.put("firstRequestDoneMillis", firstRequestDoneMillis);
+        result.put("firstRequestUri", firstRequestUri);
+        return result;
+    }
+}
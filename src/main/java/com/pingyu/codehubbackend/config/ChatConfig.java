@@ -1,5 +1,14 @@
 package com.pingyu.codehubbackend.config;
 
+import com.pingyu.codehubbackend.advisor.SingleFlightAdvisor;
+import com.pingyu.codehubbackend.common.SingleFlight;
+import com.pingyu.codehubbackend.rag.store.HnswIndex;
+import com.pingyu.codehubbackend.rag.store.HybridVectorStore;
+import com.pingyu.codehubbackend.rag.store.MappedVectorStore;
+import com.pingyu.codehubbackend.rag.store.OffHeapVectorStore;
+import com.pingyu.codehubbackend.rag.store.VectorQuantizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.QuestionAnswerAdvisor;
@@ -9,13 +18,20 @@ import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.SimpleVectorStore;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 
+import java.nio.file.Path;
+
 @Configuration
 public class ChatConfig {
 
+    private static final Logger log = LoggerFactory.getLogger(ChatConfig.class);
+
     // 1. 定义人设 (System Prompt)
     private static final String SYSTEM_PROMPT = """
             你是 '智码 (CodeHub)'，一个严谨的代码审查官。
@@ -44,15 +60,56 @@ public class ChatConfig {
         return new InMemoryChatMemory();
     }
 
+    // 同步调用请求合并：同一时刻完全相同的 prompt 只打一次 DashScope
+    @Bean
+    @ConditionalOnProperty(name = "codehub.single-flight.enabled", havingValue = "true", matchIfMissing = true)
+    public SingleFlightAdvisor singleFlightAdvisor() {
+        return new SingleFlightAdvisor(new SingleFlight<>());
+    }
+
+    // 向量库：memory (SimpleVectorStore，重启即丢) | offheap (堆外 + SIMD 暴力检索) | mapped (offheap + 落盘，重启不用重新 Embedding)
+    // offheap / mapped 可以再叠一层 HNSW 索引 (index: hnsw)；mapped 还可以把暴力检索换成压缩码粗排 + 原始向量精排 (quantization: int8 | pq)
+    // hybrid.enabled 时外面再包一层 BM25 + 向量混合检索 (RRF 融合)，QuestionAnswerAdvisor 拿到的就是混合检索
     @Bean
-    public VectorStore vectorStore(EmbeddingModel embeddingModel) {
-        return SimpleVectorStore.builder(embeddingModel).build();
+    public VectorStore vectorStore(EmbeddingModel embeddingModel,
+                                   @Value("${codehub.rag.vector-store.type:memory}") String type,
+                                   @Value("${codehub.rag.vector-store.path:data/vector-store}") Path path,
+                                   @Value("${codehub.rag.vector-store.simd:true}") boolean simd,
+                                   @Value("${codehub.rag.vector-store.parallel-threshold:20000}") int parallelThreshold,
+                                   @Value("${codehub.rag.vector-store.index:flat}") String index,
+                                   @Value("${codehub.rag.vector-store.hnsw.m:16}") int m,
+                                   @Value("${codehub.rag.vector-store.hnsw.ef-construction:200}") int efConstruction,
+                                   @Value("${codehub.rag.vector-store.hnsw.ef-search:64}") int efSearch,
+                                   @Value("${codehub.rag.vector-store.quantization.type:none}") String quantization,
+                                   @Value("${codehub.rag.vector-store.quantization.pq-sub-dimension:4}") int pqSubDimension,
+                                   @Value("${codehub.rag.vector-store.quantization.rerank:4}") int rerank,
+                                   @Value("${codehub.rag.hybrid.enabled:true}") boolean hybridEnabled,
+                                   @Value("${codehub.rag.hybrid.rrf-k:60}") int rrfK,
+                                   @Value("${codehub.rag.hybrid.candidate-factor:4}") int candidateFactor,
+                                   @Value("${codehub.rag.hybrid.lexical-only-ratio:0.5}") double lexicalOnlyRatio) {
+        HnswIndex.Params hnsw = "hnsw".equalsIgnoreCase(index) ? new HnswIndex.Params(m, efConstruction, efSearch) : null;
+        VectorQuantizer.Params quantizationParams = "none".equalsIgnoreCase(quantization) ? null
+                : new VectorQuantizer.Params(VectorQuantizer.Type.valueOf(quantization.toUpperCase()), pqSubDimension, rerank);
+        // offheap 的原始向量本身就常驻堆外内存，再叠压缩码只会更占内存；量化只在原始向量落在映射文件里的 mapped 下才省内存
+        if (quantizationParams != null && !"mapped".equalsIgnoreCase(type)) {
+            log.warn("⚠️ 向量量化 ({}) 只支持 mapped 向量库，当前类型 {} 下已忽略", quantization, type);
+            quantizationParams = null;
+        }
+        OffHeapVectorStore.Options options = new OffHeapVectorStore.Options(simd, parallelThreshold, hnsw, quantizationParams);
+        VectorStore store = switch (type.toLowerCase()) {
+            case "mapped" -> new MappedVectorStore(embeddingModel, path, options);
+            case "offheap" -> new OffHeapVectorStore(embeddingModel, options);
+            default -> SimpleVectorStore.builder(embeddingModel).build();
+        };
+        return hybridEnabled ? new HybridVectorStore(store, new HybridVectorStore.Options(rrfK, candidateFactor, lexicalOnlyRatio)) : store;
     }
 
     // --- 复杂客户端：带 RAG 和工具能力 (用于高级功能) ---
     @Bean
     @Primary // 默认注入这个
-    public ChatClient chatClient(ChatClient.Builder builder, ChatMemory chatMemory, VectorStore vectorStore) {
+    public ChatClient chatClient(ChatClient.Builder builder, ChatMemory chatMemory, VectorStore vectorStore,
+                                 ObjectProvider<SingleFlightAdvisor> singleFlightAdvisor) {
+        singleFlightAdvisor.ifAvailable(advisor -> builder.defaultAdvisors(advisor));
         return builder
                 .defaultSystem(SYSTEM_PROMPT)
                 .defaultAdvisors(
@@ -67,7 +124,8 @@ public class ChatConfig {
     // --- ⭐ 新增：简单客户端 (用于页面 1：智码助手) ---
     // 不带 RAG，不带工具，只做纯粹的对话
     @Bean("simpleChatClient")
-    public ChatClient simpleChatClient(ChatClient.Builder builder) {
+    public ChatClient simpleChatClient(ChatClient.Builder builder, ObjectProvider<SingleFlightAdvisor> singleFlightAdvisor) {
+        singleFlightAdvisor.ifAvailable(advisor -> builder.defaultAdvisors(advisor));
         return builder
                 .defaultSystem("你是一个友好的 AI 编程助手，名字叫'智码助手'。请用简洁、专业的语言回答用户的编程问题。")
                 .build(); // 没有任何花哨的 Advisor 或 Function
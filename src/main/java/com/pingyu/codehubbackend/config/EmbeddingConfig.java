@@ -0,0 +1,48 @@
+package com.pingyu.codehubbackend.config;
+
+import com.pingyu.codehubbackend.rag.embedding.BatchingEmbeddingModel;
+import com.pingyu.codehubbackend.rag.embedding.CachingEmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Configuration
+public class EmbeddingConfig {
+
+    // 把容器里的 EmbeddingModel (DashScope 自动配置的) 包两层，向量库、各个 ETL runner 不用改代码就都生效：
+    // CachingEmbeddingModel (缓存命中不出进程) → BatchingEmbeddingModel (合批 + 限流) → DashScope
+    // BeanPostProcessor 要用 static 方法声明，避免提前初始化本配置类
+    @Bean
+    public static BeanPostProcessor embeddingModelPostProcessor(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof EmbeddingModel embeddingModel)
+                        || bean instanceof CachingEmbeddingModel || bean instanceof BatchingEmbeddingModel) {
+                    return bean;
+                }
+                if (environment.getProperty("codehub.rag.embedding-batch.enabled", Boolean.class, true)) {
+                    embeddingModel = new BatchingEmbeddingModel(embeddingModel,
+                            environment.getProperty("codehub.rag.embedding-batch.max-batch-size", Integer.class, 25),
+                            environment.getProperty("codehub.rag.embedding-batch.window", Duration.class, Duration.ofMillis(5)),
+                            environment.getProperty("codehub.rag.embedding-batch.max-in-flight", Integer.class, 4),
+                            environment.getProperty("codehub.rag.embedding-batch.max-retries", Integer.class, 3),
+                            environment.getProperty("codehub.rag.embedding-batch.retry-backoff", Duration.class, Duration.ofMillis(500)));
+                }
+                if (environment.getProperty("codehub.rag.embedding-cache.enabled", Boolean.class, true)) {
+                    String model = environment.getProperty("codehub.rag.embedding-cache.model",
+                            environment.getProperty("spring.ai.dashscope.embedding.options.model", "text-embedding-v1"));
+                    Path file = Path.of(environment.getProperty("codehub.rag.embedding-cache.path", "data/embedding-cache/embeddings.bin"));
+                    int memoryEntries = environment.getProperty("codehub.rag.embedding-cache.memory-entries", Integer.class, 10000);
+                    embeddingModel = new CachingEmbeddingModel(embeddingModel, model, file, memoryEntries);
+                }
+                return embeddingModel;
+            }
+        };
+    }
+}
@@ -2,8 +2,17 @@ package com.pingyu.codehubbackend.config;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pingyu.codehubbackend.common.SingleFlight;
+import com.pingyu.codehubbackend.tool.SingleFlightToolCallback;
+import com.pingyu.codehubbackend.tool.ReadFileTool;
+import com.pingyu.codehubbackend.tool.ToolResultCache;
+import com.pingyu.codehubbackend.tool.fs.FileWindowReader;
+import com.pingyu.codehubbackend.tool.fs.FsSandbox;
+import com.pingyu.codehubbackend.tool.fs.LocalFsTools;
+import com.pingyu.codehubbackend.tool.search.CodeSearchTool;
+import com.pingyu.codehubbackend.tool.symbol.SymbolSearchTools;
+import com.pingyu.codehubbackend.tool.mcp.McpClientPool;
 import io.modelcontextprotocol.client.McpClient;
-import io.modelcontextprotocol.client.McpSyncClient;
 import io.modelcontextprotocol.client.transport.ServerParameters;
 import io.modelcontextprotocol.client.transport.StdioClientTransport;
 import io.modelcontextprotocol.spec.McpSchema;
@@ -12,8 +21,13 @@ import org.slf4j.LoggerFactory;
 import org.springframework.ai.tool.ToolCallback;
 import org.springframework.ai.tool.ToolCallbackProvider;
 import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Description;
 import org.springframework.context.annotation.Primary;
 
 import java.time.Duration;
@@ -26,27 +40,57 @@ import java.util.Map;
 public class ToolsConfig {
 
     private static final Logger log = LoggerFactory.getLogger(ToolsConfig.class);
+
+    private static final String FS_PATH_SCHEMA =
+            "{\"type\":\"object\",\"properties\":{\"path\":{\"type\":\"string\",\"description\":\"Relative path\"}},\"required\":[\"path\"]}";
     private final ObjectMapper mapper = new ObjectMapper();
 
+    @Value("${codehub.single-flight.enabled:true}")
+    private boolean singleFlightEnabled;
+
+    // MCP 子进程池的公共配置：健康检查间隔 / 重启退避上限
+    @Value("${codehub.mcp.health-check-interval:30s}")
+    private Duration healthCheckInterval;
+
+    @Value("${codehub.mcp.max-backoff:60s}")
+    private Duration maxBackoff;
+
+    // 启动模式：eager = 启动时同步拉起 (老行为)；background = 后台预热；lazy = 第一次调用工具时才拉起
+    @Value("${codehub.mcp.startup:background}")
+    private String startupMode;
+
+    // 工具调用等待预热完成的最长时间 (npx 首次下载包可能很慢)
+    @Value("${codehub.mcp.startup-timeout:120s}")
+    private Duration startupTimeout;
+
     // ======================================================
-    // 1. Client A: 本地文件系统 (不变)
+    // 1. Client A: 本地文件系统 (N 个子进程组成的池)
+    //    默认改用进程内 NIO 工具 (LocalFsTools)，只有 codehub.tools.fs.provider=mcp 时才拉起 node
     // ======================================================
-    @Bean
-    public McpSyncClient filesystemClient() {
-        log.info("🔌 [ToolsConfig] 正在连接文件系统 MCP...");
-        var parameters = ServerParameters.builder("node")
-                .args("C:\\dev\\nodejs\\node_global\\node_modules\\@modelcontextprotocol\\server-filesystem\\dist\\index.js", ".")
-                .build();
-        return McpClient.sync(new StdioClientTransport(parameters))
-                .requestTimeout(Duration.ofSeconds(10))
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "codehub.tools.fs.provider", havingValue = "mcp")
+    public McpClientPool filesystemClientPool(@Value("${codehub.mcp.filesystem.pool-size:2}") int poolSize,
+                                              @Value("${codehub.mcp.filesystem.command:node}") String command,
+                                              @Value("${codehub.mcp.filesystem.args}") String[] args,
+                                              @Value("${codehub.mcp.filesystem.request-timeout:10s}") Duration requestTimeout) {
+        log.info("🔌 [ToolsConfig] 正在连接文件系统 MCP... (进程数: {}, 超时: {})", poolSize, requestTimeout);
+        var parameters = ServerParameters.builder(command)
+                .args(args)
                 .build();
+        McpClientPool pool = new McpClientPool("filesystem", poolSize,
+                () -> McpClient.sync(new StdioClientTransport(parameters))
+                        .requestTimeout(requestTimeout)
+                        .build(),
+                healthCheckInterval, maxBackoff);
+        return startPool(pool);
     }
 
     // ======================================================
-    // 2. Client B: Tavily 联网搜索 (双重修复版)
+    // 2. Client B: Tavily 联网搜索 (双重修复版，N 个子进程组成的池)
     // ======================================================
-    @Bean
-    public McpSyncClient tavilyClient() {
+    @Bean(destroyMethod = "close")
+    public McpClientPool tavilyClientPool(@Value("${codehub.mcp.tavily.pool-size:2}") int poolSize,
+                                          @Value("${codehub.mcp.tavily.request-timeout:60s}") Duration requestTimeout) {
         log.info("🔌 [ToolsConfig] 正在从环境变量读取 Key 并连接 Tavily...");
 
         // 🚨 修复点 1: 从环境变量读取 Key，不再使用硬编码占位符
@@ -75,32 +119,67 @@ public class ToolsConfig {
                 .env(env) // 注入正确的 Key
                 .build();
 
-        // 增加超时时间，防止网络波动
-        return McpClient.sync(new StdioClientTransport(parameters))
-                .requestTimeout(Duration.ofSeconds(60))
-                .build();
+        // 超时时间从配置读取 (联网搜索默认给足 60s，防止网络波动)
+        McpClientPool pool = new McpClientPool("tavily", poolSize,
+                () -> McpClient.sync(new StdioClientTransport(parameters))
+                        .requestTimeout(requestTimeout)
+                        .build(),
+                healthCheckInterval, maxBackoff);
+        return startPool(pool);
     }
 
     // ======================================================
-    // 3. 工具装配车间 (不变)
+    // 3. Function 版读文件工具 (ChatConfig 里 defaultFunctions("readFileTool") 按 Bean 名挂载)
     // ======================================================
+    @Bean
+    @Description("读取项目内的文件内容。支持按字节 (offset/length)、按行 (startLine/endLine)、前 N 行 (head)、后 N 行 (tail) 分段读取，超大文件会截断并返回文件统计")
+    public ReadFileTool readFileTool(FsSandbox fsSandbox, FileWindowReader fileWindowReader) {
+        return new ReadFileTool(fsSandbox, fileWindowReader);
+    }
+
+    // ======================================================
+    // 4. 工具装配车间 (MCP 工具统一套上: 结果缓存 -> 请求合并 -> MCP 调用)
+    // ======================================================
+    // 进行中的相同工具调用只执行一次 (跨会话共享)
+    @Bean
+    public SingleFlight<String> toolSingleFlight() {
+        return new SingleFlight<>();
+    }
+
     @Bean
     @Primary
-    public ToolCallbackProvider mcpToolCallbackProvider(McpSyncClient filesystemClient, McpSyncClient tavilyClient) {
+    public ToolCallbackProvider mcpToolCallbackProvider(@Qualifier("filesystemClientPool") ObjectProvider<McpClientPool> filesystemClientPool,
+                                                        @Qualifier("tavilyClientPool") McpClientPool tavilyClientPool,
+                                                        LocalFsTools localFsTools, CodeSearchTool codeSearchTool,
+                                                        SymbolSearchTools symbolSearchTools,
+                                                        ToolResultCache toolResultCache, SingleFlight<String> toolSingleFlight) {
         return () -> {
-            log.info("📦 [ToolsConfig] 正在组装全能工具箱 (Filesystem + Tavily + Terminate)...");
+            log.info("📦 [ToolsConfig] 正在组装全能工具箱 (Filesystem + Search + Symbol + Tavily + Terminate)...");
             List<ToolCallback> tools = new ArrayList<>();
 
-            // --- 工具 1: read_file ---
-            tools.add(createMcpTool(filesystemClient, "read_file", "Reads a file from the local filesystem",
-                    "{\"type\":\"object\",\"properties\":{\"path\":{\"type\":\"string\",\"description\":\"Relative path\"}},\"required\":[\"path\"]}"));
+            // --- 工具 1: 文件系统 (read_file / list_directory / get_file_info) ---
+            McpClientPool fsPool = filesystemClientPool.getIfAvailable();
+            List<ToolCallback> fsTools = fsPool == null ? localFsTools.getToolCallbacks() : List.of(
+                    createMcpTool(fsPool, "read_file", "Reads a file from the local filesystem", FS_PATH_SCHEMA),
+                    createMcpTool(fsPool, "list_directory", "Lists files and directories in the given path. Entries are prefixed with [FILE] or [DIR]", FS_PATH_SCHEMA),
+                    createMcpTool(fsPool, "get_file_info", "Retrieves metadata about a file or directory: size, timestamps, type and permissions", FS_PATH_SCHEMA));
+            log.info("📂 [ToolsConfig] 文件工具来源: {}", fsPool == null ? "进程内 NIO" : "MCP 子进程");
+            for (ToolCallback fsTool : fsTools) {
+                tools.add(toolResultCache.wrap(withSingleFlight(toolResultCache, toolSingleFlight, fsTool)));
+            }
+
+            // --- 工具 2: search_code (进程内 trigram 索引，不缓存：索引本身就是毫秒级) ---
+            tools.add(codeSearchTool.getToolCallback());
+
+            // --- 工具 2.1: find_symbol / find_usages (进程内 Java 符号表) ---
+            tools.addAll(symbolSearchTools.getToolCallbacks());
 
-            // --- 工具 2: tavily_search ---
-            tools.add(createMcpTool(tavilyClient, "tavily_search",
+            // --- 工具 3: tavily_search ---
+            tools.add(toolResultCache.wrap(withSingleFlight(toolResultCache, toolSingleFlight, createMcpTool(tavilyClientPool, "tavily_search",
                     "Performs a web search optimized for AI agents. Returns consolidated answers and source links.",
-                    "{\"type\":\"object\",\"properties\":{\"query\":{\"type\":\"string\",\"description\":\"The search query\"}},\"required\":[\"query\"]}"));
+                    "{\"type\":\"object\",\"properties\":{\"query\":{\"type\":\"string\",\"description\":\"The search query\"}},\"required\":[\"query\"]}"))));
 
-            // --- 工具 3: terminate ---
+            // --- 工具 4: terminate ---
             tools.add(new ToolCallback() {
                 @Override
                 public String getName() { return "terminate"; }
@@ -125,8 +204,28 @@ public class ToolsConfig {
         };
     }
 
+    // 按启动模式拉起子进程池；非 eager 模式下 Bean 立即返回，HTTP 服务不用等 node / npx
+    private McpClientPool startPool(McpClientPool pool) {
+        pool.setStartupTimeout(startupTimeout);
+        switch (startupMode.toLowerCase()) {
+            case "eager" -> pool.start();
+            case "lazy" -> log.info("💤 [ToolsConfig] MCP 服务 [{}] 懒启动，首次调用工具时再拉起", pool.getName());
+            default -> {
+                log.info("🔥 [ToolsConfig] MCP 服务 [{}] 转入后台预热", pool.getName());
+                pool.startAsync();
+            }
+        }
+        return pool;
+    }
+
+    // 请求合并外壳：Key 与缓存共用同一套参数规范化规则
+    private ToolCallback withSingleFlight(ToolResultCache toolResultCache, SingleFlight<String> toolSingleFlight, ToolCallback tool) {
+        if (!singleFlightEnabled) return tool;
+        return new SingleFlightToolCallback(tool, toolSingleFlight, args -> toolResultCache.cacheKey(tool.getName(), args));
+    }
+
     // 通用构建器 (保持不变)
-    private ToolCallback createMcpTool(McpSyncClient client, String toolName, String description, String schema) {
+    private ToolCallback createMcpTool(McpClientPool pool, String toolName, String description, String schema) {
         return new ToolCallback() {
             @Override
             public String getName() { return toolName; }
@@ -142,7 +241,7 @@ public class ToolsConfig {
                     log.info("⚡ [ToolsConfig] 调用 MCP 工具: {}({})", toolName, jsonArgs);
                     Map<String, Object> args = mapper.readValue(jsonArgs, new TypeReference<>() {});
                     McpSchema.CallToolRequest request = new McpSchema.CallToolRequest(toolName, args);
-                    McpSchema.CallToolResult result = client.callTool(request);
+                    McpSchema.CallToolResult result = pool.callTool(request);
 
                     StringBuilder contentBuilder = new StringBuilder();
                     for (Object contentItem : result.content()) {
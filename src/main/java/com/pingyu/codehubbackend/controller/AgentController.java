@@ -1,6 +1,7 @@
 package com.pingyu.codehubbackend.controller;
 
-import com.pingyu.codehubbackend.agent.BaseAgent;
+import com.pingyu.codehubbackend.agent.AgentRunExecutor;
+import com.pingyu.codehubbackend.agent.CodeManusPool;
 import com.pingyu.codehubbackend.agent.model.AgentEvent;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
@@ -10,24 +11,25 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import reactor.core.publisher.Flux;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api") // 注意：为了统一管理，建议把前缀改为 /api
 @Slf4j
 public class AgentController {
 
-    private final BaseAgent codeManus;
+    private final CodeManusPool codeManusPool;
     private final ChatClient simpleChatClient;
 
-    // 创建一个线程池来执行耗时的 Agent 任务
-    private final ExecutorService executor = Executors.newCachedThreadPool();
+    // 虚拟线程执行层：有界排队 + 满载快速拒绝 (替代原来的无界 CachedThreadPool)
+    private final AgentRunExecutor agentRunExecutor;
 
     // 构造注入：区分复杂的 Agent 和 简单的 ChatClient
-    public AgentController(BaseAgent codeManus,
+    public AgentController(CodeManusPool codeManusPool,
+                           AgentRunExecutor agentRunExecutor,
                            @Qualifier("simpleChatClient") ChatClient simpleChatClient) {
-        this.codeManus = codeManus;
+        this.codeManusPool = codeManusPool;
+        this.agentRunExecutor = agentRunExecutor;
         this.simpleChatClient = simpleChatClient;
     }
 
@@ -61,29 +63,42 @@ public class AgentController {
         // 设置超时时间为 5 分钟
         SseEmitter emitter = new SseEmitter(300000L);
 
-        executor.execute(() -> {
-            try {
-                // 启动 CodeManus
-                codeManus.run(prompt, event -> {
-                    try {
-                        // 发送自定义事件 (THINKING, ACTION, RESULT, ANSWER)
-                        emitter.send(SseEmitter.event()
-                                .name(event.getType())
-                                .data(event));
-                    } catch (Exception e) {
-                        log.error("SSE 发送失败", e);
-                        emitter.completeWithError(e);
-                    }
-                });
-                emitter.complete();
-            } catch (Exception e) {
-                log.error("Agent 执行异常", e);
+        try {
+            agentRunExecutor.submit(() -> {
                 try {
-                    emitter.send(SseEmitter.event().name("ERROR").data("Server Error: " + e.getMessage()));
-                } catch (Exception ignored) {}
-                emitter.completeWithError(e);
-            }
-        });
+                    if (codeManusPool.getAvailablePermits() == 0) {
+                        // 📡 广播：排队中 (开跑时没有空闲许可，下面的 run 会阻塞到有人跑完)
+                        emitter.send(SseEmitter.event().name("QUEUED").data(AgentEvent.queued()));
+                    }
+                    // 从会话池借一个独立的 CodeManus 启动
+                    codeManusPool.run(prompt, event -> {
+                        try {
+                            // 发送自定义事件 (THINKING, ACTION, RESULT, ANSWER)
+                            emitter.send(SseEmitter.event()
+                                    .name(event.getType())
+                                    .data(event));
+                        } catch (Exception e) {
+                            log.error("SSE 发送失败", e);
+                            emitter.completeWithError(e);
+                        }
+                    });
+                    emitter.complete();
+                } catch (Exception e) {
+                    log.error("Agent 执行异常", e);
+                    try {
+                        emitter.send(SseEmitter.event().name("ERROR").data("Server Error: " + e.getMessage()));
+                    } catch (Exception ignored) {}
+                    emitter.completeWithError(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 满载：立即回一个 BUSY 事件并结束，不占用任何线程
+            log.warn("🚦 [AgentController] 拒绝新会话: {}", e.getMessage());
+            try {
+                emitter.send(SseEmitter.event().name("BUSY").data(AgentEvent.busy(e.getMessage())));
+            } catch (Exception ignored) {}
+            emitter.complete();
+        }
 
         return emitter;
     }
@@ -0,0 +1,214 @@
+package com.pingyu.codehubbackend.controller;
+
+import com.pingyu.codehubbackend.advisor.SingleFlightAdvisor;
+import com.pingyu.codehubbackend.common.SingleFlight;
+import com.pingyu.codehubbackend.common.StartupMetrics;
+import com.pingyu.codehubbackend.rag.KnowledgeBaseIngestionService;
+import com.pingyu.codehubbackend.rag.embedding.BatchingEmbeddingModel;
+import com.pingyu.codehubbackend.rag.embedding.CachingEmbeddingModel;
+import com.pingyu.codehubbackend.rag.store.HybridVectorStore;
+import com.pingyu.codehubbackend.rag.store.OffHeapVectorStore;
+import com.pingyu.codehubbackend.tool.ToolResultCache;
+import com.pingyu.codehubbackend.tool.mcp.McpClientPool;
+import com.pingyu.codehubbackend.tool.search.TrigramIndex;
+import com.pingyu.codehubbackend.tool.symbol.JavaSymbolIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 运维观测接口 (缓存命中率等运行指标)
+ * 请求前缀：/api/ops
+ */
+@RestController
+@RequestMapping("/api/ops")
+@Slf4j
+public class OpsController {
+
+    private final ToolResultCache toolResultCache;
+    private final SingleFlight<String> toolSingleFlight;
+    private final ObjectProvider<SingleFlightAdvisor> singleFlightAdvisor;
+    private final ObjectProvider<McpClientPool> mcpClientPools;
+    private final StartupMetrics startupMetrics;
+    private final TrigramIndex trigramIndex;
+    private final JavaSymbolIndex javaSymbolIndex;
+    private final KnowledgeBaseIngestionService knowledgeBaseIngestionService;
+    private final VectorStore vectorStore;
+    private final ObjectProvider<EmbeddingModel> embeddingModel;
+
+    public OpsController(ToolResultCache toolResultCache,
+                         SingleFlight<String> toolSingleFlight,
+                         ObjectProvider<SingleFlightAdvisor> singleFlightAdvisor,
+                         ObjectProvider<McpClientPool> mcpClientPools,
+                         StartupMetrics startupMetrics,
+                         TrigramIndex trigramIndex,
+                         JavaSymbolIndex javaSymbolIndex,
+                         KnowledgeBaseIngestionService knowledgeBaseIngestionService,
+                         VectorStore vectorStore,
+                         ObjectProvider<EmbeddingModel> embeddingModel) {
+        this.toolResultCache = toolResultCache;
+        this.toolSingleFlight = toolSingleFlight;
+        this.singleFlightAdvisor = singleFlightAdvisor;
+        this.mcpClientPools = mcpClientPools;
+        this.startupMetrics = startupMetrics;
+        this.trigramIndex = trigramIndex;
+        this.javaSymbolIndex = javaSymbolIndex;
+        this.knowledgeBaseIngestionService = knowledgeBaseIngestionService;
+        this.vectorStore = vectorStore;
+        this.embeddingModel = embeddingModel;
+    }
+
+    /**
+     * 工具结果缓存指标
+     * 请求：GET /api/ops/tool-cache
+     */
+    @GetMapping("/tool-cache")
+    public Map<String, Object> toolCacheStats() {
+        return toolResultCache.snapshot();
+    }
+
+    /**
+     * 清空工具结果缓存
+     * 请求：DELETE /api/ops/tool-cache
+     */
+    @DeleteMapping("/tool-cache")
+    public Map<String, Object> clearToolCache() {
+        log.info("🧹 [OpsController] 手动清空工具缓存");
+        toolResultCache.clear();
+        return toolResultCache.snapshot();
+    }
+
+    /**
+     * 请求合并指标 (executions = 真正执行次数，shared = 搭便车次数)
+     * 请求：GET /api/ops/single-flight
+     */
+    @GetMapping("/single-flight")
+    public Map<String, Object> singleFlightStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("tools", describe(toolSingleFlight));
+        SingleFlightAdvisor advisor = singleFlightAdvisor.getIfAvailable();
+        result.put("chat", advisor == null ? "disabled" : describe(advisor.getSingleFlight()));
+        return result;
+    }
+
+    private Map<String, Object> describe(SingleFlight<?> singleFlight) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("executions", singleFlight.getExecutions());
+        result.put("shared", singleFlight.getShared());
+        result.put("inFlight", singleFlight.getInFlight());
+        return result;
+    }
+
+    /**
+     * MCP 子进程池状态 (健康数、并发数、重启次数)
+     * 请求：GET /api/ops/mcp
+     */
+    @GetMapping("/mcp")
+    public List<Map<String, Object>> mcpPools() {
+        return mcpClientPools.orderedStream().map(McpClientPool::snapshot).toList();
+    }
+
+    /**
+     * 代码搜索索引状态 (文件数、trigram 数、压缩后倒排表大小)
+     * 请求：GET /api/ops/search-index
+     */
+    @GetMapping("/search-index")
+    public Map<String, Object> searchIndex() {
+        return trigramIndex.snapshotStats();
+    }
+
+    /**
+     * 手动重建代码搜索索引
+     * 请求：POST /api/ops/search-index/rebuild
+     */
+    @PostMapping("/search-index/rebuild")
+    public Map<String, Object> rebuildSearchIndex() throws IOException {
+        log.info("🔎 [OpsController] 手动重建代码搜索索引");
+        trigramIndex.rebuild();
+        return trigramIndex.snapshotStats();
+    }
+
+    /**
+     * Java 符号索引状态 (文件数、定义数、引用数)
+     * 请求：GET /api/ops/symbol-index
+     */
+    @GetMapping("/symbol-index")
+    public Map<String, Object> symbolIndex() {
+        return javaSymbolIndex.snapshotStats();
+    }
+
+    /**
+     * 知识库增量入库状态 (每个文件的切片数、最后入库时间)
+     * 请求：GET /api/ops/knowledge-base
+     */
+    @GetMapping("/knowledge-base")
+    public Map<String, Object> knowledgeBase() {
+        return knowledgeBaseIngestionService.snapshot();
+    }
+
+    /**
+     * 向量库状态 (类型、文档数、映射大小、加载耗时；混合检索时外加 BM25 索引和两种检索路径的次数)
+     * 请求：GET /api/ops/vector-store
+     */
+    @GetMapping("/vector-store")
+    public Map<String, Object> vectorStore() {
+        if (vectorStore instanceof HybridVectorStore hybrid) {
+            return hybrid.snapshot();
+        }
+        if (vectorStore instanceof OffHeapVectorStore offHeap) {
+            return offHeap.snapshot();
+        }
+        return Map.of("type", vectorStore.getClass().getSimpleName());
+    }
+
+    /**
+     * Embedding 缓存命中情况 (内存 / 磁盘命中、远程调用次数)
+     * 请求：GET /api/ops/embedding-cache
+     */
+    @GetMapping("/embedding-cache")
+    public Map<String, Object> embeddingCache() {
+        if (embeddingModel.getIfAvailable() instanceof CachingEmbeddingModel caching) {
+            return caching.snapshot();
+        }
+        return Map.of("enabled", false);
+    }
+
+    /**
+     * Embedding 合批情况 (合并的请求数、远程调用次数、平均批大小、限流重试)
+     * 请求：GET /api/ops/embedding-batch
+     */
+    @GetMapping("/embedding-batch")
+    public Map<String, Object> embeddingBatch() {
+        EmbeddingModel model = embeddingModel.getIfAvailable();
+        if (model instanceof CachingEmbeddingModel caching) {
+            model = caching.getDelegate();
+        }
+        if (model instanceof BatchingEmbeddingModel batching) {
+            return batching.snapshot();
+        }
+        return Map.of("enabled", false);
+    }
+
+    /**
+     * 就绪检查：MCP 工具是否预热完成 + 启动耗时
+     * 请求：GET /api/ops/readiness
+     */
+    @GetMapping("/readiness")
+    public Map<String, Object> readiness() {
+        Map<String, Object> mcp = new LinkedHashMap<>();
+        mcpClientPools.orderedStream().forEach(pool -> mcp.put(pool.getName(), pool.getState()));
+        Map<String, Object> result = new LinkedHashMap<>();
+        // 懒启动 (NOT_STARTED) 也算就绪：第一次调用时会自己拉起
+        result.put("toolsReady", mcp.values().stream().noneMatch("STARTING"::equals));
+        result.put("mcp", mcp);
+        result.put("startup", startupMetrics.snapshot());
+        return result;
+    }
+}
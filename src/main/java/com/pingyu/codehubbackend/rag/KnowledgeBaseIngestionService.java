@@ -0,0 +1,317 @@
+package com.pingyu.codehubbackend.rag;
+
+import cn.hutool.crypto.SecureUtil;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pingyu.codehubbackend.rag.splitter.MarkdownSectionSplitter;
+import com.pingyu.codehubbackend.rag.store.HybridVectorStore;
+import com.pingyu.codehubbackend.rag.store.PersistentVectorStore;
+import com.pingyu.codehubbackend.tool.fs.RecursiveWatcher;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.reader.TextReader;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * 智码 - 知识库增量入库服务
+ * 问题：每个 RAG Runner 启动都要重新读 codehub-manual.md、重新切片、重新向量化全部内容。
+ * 做法：
+ * 1. 启动后把配置的文档目录 (codehub.rag.ingestion.dirs) 全部入库一次；
+ * 2. 用 WatchService 监听这些目录，哪个文件变了就只重新切片这一个文件；
+ * 3. 每个文件记住自己的切片 ID，更新时先写入新切片再删除旧切片 (检索不会出现 "空窗期")，
+ *    内容哈希没变 (只是被 touch 了) 直接跳过，不浪费 Embedding 调用。
+ * 文档更新在防抖窗口 + 一次 Embedding 之后就能被 QuestionAnswerAdvisor 检索到。
+ * 向量库落盘时 ({@link PersistentVectorStore})，入库清单也存一份在向量库目录里，重启后没变的文件直接跳过。
+ * 默认关闭 (codehub.rag.ingestion.enabled)，开启时 dirs 指向挂载进来的文档目录。
+ */
+@Component
+public class KnowledgeBaseIngestionService {
+
+    private static final Logger log = LoggerFactory.getLogger(KnowledgeBaseIngestionService.class);
+    private static final String MANIFEST_FILE = "ingestion-manifest.json";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final VectorStore vectorStore;
+    /** 落盘的向量库 (混合检索时是包在里面的那一层)，null 表示不落盘 */
+    private final PersistentVectorStore persistentStore;
+    private final boolean enabled;
+    private final List<Path> dirs;
+    private final List<PathMatcher> includes;
+    private final Duration debounce;
+    /** Markdown 按标题结构切片 (null = 全部走 TokenTextSplitter) */
+    private final MarkdownSectionSplitter markdownSplitter;
+
+    /** 已入库文件：绝对路径 -> (内容哈希, 切片 ID 列表) */
+    private final Map<String, IngestedFile> ingested = new ConcurrentHashMap<>();
+    private final CompletableFuture<Void> initialIngestion = new CompletableFuture<>();
+    private final AtomicBoolean started = new AtomicBoolean();
+    /** 入库清单文件 (向量库不落盘时为 null，清单也只在内存里) */
+    private final Path manifestFile;
+    private RecursiveWatcher watcher;
+
+    record IngestedFile(String hash, List<String> chunkIds, long ingestedAt) {}
+
+    public KnowledgeBaseIngestionService(VectorStore vectorStore,
+                                         @Value("${codehub.rag.ingestion.enabled:false}") boolean enabled,
+                                         @Value("${codehub.rag.ingestion.dirs:docs}") String[] dirs,
+                                         @Value("${codehub.rag.ingestion.include:*.md,*.txt}") String[] includes,
+                                         @Value("${codehub.rag.ingestion.debounce:500ms}") Duration debounce,
+                                         @Value("${codehub.rag.splitter.markdown:true}") boolean markdownSplitter,
+                                         @Value("${codehub.rag.splitter.chunk-tokens:800}") int chunkTokens) {
+        this.vectorStore = vectorStore;
+        this.enabled = enabled;
+        this.dirs = Arrays.stream(dirs).map(dir -> Paths.get(dir.trim()).toAbsolutePath().normalize()).toList();
+        this.includes = Arrays.stream(includes)
+                .map(glob -> FileSystems.getDefault().getPathMatcher("glob:" + glob.trim()))
+                .toList();
+        this.debounce = debounce;
+        this.markdownSplitter = markdownSplitter ? new MarkdownSectionSplitter(chunkTokens) : null;
+        VectorStore backing = vectorStore instanceof HybridVectorStore hybrid ? hybrid.getDelegate() : vectorStore;
+        this.persistentStore = backing instanceof PersistentVectorStore persistent ? persistent : null;
+        this.manifestFile = persistentStore != null ? persistentStore.getDirectory().resolve(MANIFEST_FILE) : null;
+        loadManifest();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        // CommandLineRunner 比 ApplicationReadyEvent 先执行，Runner 里 await 时可能已经提前启动过
+        if (!enabled || !started.compareAndSet(false, true)) return;
+        // 先开始监听再全量扫描，扫描期间发生的修改也不会漏掉 (重复的会被哈希挡掉)
+        watcher = new RecursiveWatcher("knowledge-base", dirs, Set.of(), debounce, this::onFilesChanged, this::onOverflow);
+        watcher.start();
+        Thread.ofVirtual().name("kb-ingestion").start(() -> {
+            try {
+                ingestAll();
+                initialIngestion.complete(null);
+            } catch (Exception e) {
+                log.error("❌ [KnowledgeBase] 首次入库失败", e);
+                initialIngestion.completeExceptionally(e);
+            }
+        });
+    }
+
+    /**
+     * 全量扫描所有文档目录 (哈希没变的文件会被跳过)
+     */
+    public void ingestAll() throws IOException {
+        long start = System.currentTimeMillis();
+        int files = 0;
+        Set<String> seen = new HashSet<>();
+        for (Path dir : dirs) {
+            if (!Files.isDirectory(dir)) {
+                log.warn("⚠️ [KnowledgeBase] 文档目录不存在: {}", dir);
+                continue;
+            }
+            try (Stream<Path> stream = Files.walk(dir)) {
+                for (Path file : stream.filter(Files::isRegularFile).filter(this::isIncluded).toList()) {
+                    ingest(file);
+                    seen.add(file.toAbsolutePath().normalize().toString());
+                    files++;
+                }
+            }
+        }
+        // 停机期间被删掉的文件 (清单里有，磁盘上没了)
+        for (String key : List.copyOf(ingested.keySet())) {
+            if (!seen.contains(key)) {
+                ingest(Paths.get(key));
+            }
+        }
+        log.info("📚 [KnowledgeBase] 全量扫描完成: {} 个文件, {} 个切片, 耗时 {}ms",
+                files, chunkCount(), System.currentTimeMillis() - start);
+    }
+
+    private void onFilesChanged(Set<Path> changed) {
+        for (Path file : changed) {
+            if (isIncluded(file)) {
+                ingest(file);
+            } else if (!Files.exists(file)) {
+                // 可能是被删掉 / 移走的目录：清单里这个目录下的文件全部按删除处理
+                String prefix = file.toAbsolutePath().normalize() + File.separator;
+                for (String key : List.copyOf(ingested.keySet())) {
+                    if (key.startsWith(prefix)) {
+                        ingest(Paths.get(key));
+                    }
+                }
+            }
+        }
+    }
+
+    /** 事件溢出：全量扫描一遍 (没变的文件会被哈希挡掉，消失的文件会被删除) */
+    private void onOverflow() {
+        try {
+            ingestAll();
+        } catch (IOException e) {
+            log.warn("⚠️ [KnowledgeBase] 全量重新扫描失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 单文件增量入库：只切这个文件，只替换这个文件的切片；文件被删则只删除它的切片
+     */
+    public synchronized void ingest(Path file) {
+        String key = file.toAbsolutePath().normalize().toString();
+        IngestedFile previous = ingested.get(key);
+        try {
+            if (!Files.isRegularFile(file)) {
+                if (previous != null) {
+                    vectorStore.delete(previous.chunkIds());
+                    ingested.remove(key);
+                    saveManifest();
+                    log.info("🗑️ [KnowledgeBase] 文件已删除，移除 {} 个切片: {}", previous.chunkIds().size(), file.getFileName());
+                }
+                return;
+            }
+
+            String hash = SecureUtil.sha256(file.toFile());
+            if (previous != null && previous.hash().equals(hash)) {
+                return;
+            }
+
+            long start = System.currentTimeMillis();
+            List<Document> chunks = split(file, read(file));
+            // 先写新切片，再删旧切片
+            vectorStore.add(chunks);
+            if (previous != null) {
+                vectorStore.delete(previous.chunkIds());
+            }
+            List<String> chunkIds = new ArrayList<>(chunks.size());
+            chunks.forEach(chunk -> chunkIds.add(chunk.getId()));
+            ingested.put(key, new IngestedFile(hash, List.copyOf(chunkIds), System.currentTimeMillis()));
+            saveManifest();
+            log.info("📥 [KnowledgeBase] {} 入库 {} 个切片 (替换旧切片 {} 个), 耗时 {}ms",
+                    file.getFileName(), chunks.size(), previous == null ? 0 : previous.chunkIds().size(),
+                    System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("❌ [KnowledgeBase] 入库失败: {}", file, e);
+        }
+    }
+
+    // 读取：和 Runner 里一样打上 filename 标签，额外记录来源路径，方便过滤和引用
+    private List<Document> read(Path file) {
+        TextReader textReader = new TextReader(new FileSystemResource(file));
+        textReader.getCustomMetadata().put("charset", "UTF-8");
+        textReader.getCustomMetadata().put("filename", file.getFileName().toString());
+        textReader.getCustomMetadata().put("source", file.toAbsolutePath().normalize().toString());
+        return textReader.read();
+    }
+
+    // 切片：Markdown 按标题结构切，其他文件照旧按 Token 切
+    private List<Document> split(Path file, List<Document> documents) {
+        if (markdownSplitter != null && MarkdownSectionSplitter.isMarkdown(file.getFileName().toString())) {
+            return markdownSplitter.apply(documents);
+        }
+        return new TokenTextSplitter().apply(documents);
+    }
+
+    // ======================================================
+    // 入库清单 (文件 -> 哈希 + 切片 ID)，只在向量库落盘时持久化
+    // ======================================================
+    private void loadManifest() {
+        if (manifestFile == null || !Files.exists(manifestFile)) return;
+        try {
+            Map<String, IngestedFile> saved = MAPPER.readValue(manifestFile.toFile(), new TypeReference<Map<String, IngestedFile>>() {});
+            // 只信任切片还都在库里的条目，否则当作没入过库
+            saved.forEach((path, file) -> {
+                if (file.chunkIds().stream().allMatch(persistentStore::contains)) {
+                    ingested.put(path, file);
+                }
+            });
+            log.info("📚 [KnowledgeBase] 加载入库清单: {} 个文件 ({} 个已失效)", ingested.size(), saved.size() - ingested.size());
+        } catch (IOException e) {
+            log.warn("⚠️ [KnowledgeBase] 入库清单读取失败，将全部重新入库: {}", e.getMessage());
+        }
+    }
+
+    private void saveManifest() {
+        if (manifestFile == null) return;
+        try {
+            Path tmp = manifestFile.resolveSibling(MANIFEST_FILE + ".tmp");
+            MAPPER.writeValue(tmp.toFile(), ingested);
+            Files.move(tmp, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("⚠️ [KnowledgeBase] 入库清单保存失败: {}", e.getMessage());
+        }
+    }
+
+    private boolean isIncluded(Path file) {
+        Path name = file.getFileName();
+        return name != null && includes.stream().anyMatch(matcher -> matcher.matches(name));
+    }
+
+    /**
+     * 等待首次入库完成 (Runner 测试前调用；还没启动的话先启动，未开启入库时直接返回 false)
+     */
+    public boolean awaitInitialIngestion(Duration timeout) {
+        if (!enabled) {
+            log.warn("⚠️ [KnowledgeBase] 知识库入库未开启 (codehub.rag.ingestion.enabled=false)");
+            return false;
+        }
+        start();
+        try {
+            initialIngestion.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private int chunkCount() {
+        return ingested.values().stream().mapToInt(file -> file.chunkIds().size()).sum();
+    }
+
+    /**
+     * 入库状态 (给运维接口用)
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("dirs", dirs.stream().map(Path::toString).toList());
+        result.put("initialIngestionDone", initialIngestion.isDone());
+        result.put("files", ingested.size());
+        result.put("chunks", chunkCount());
+        Map<String, Object> files = new LinkedHashMap<>();
+        ingested.forEach((path, file) -> files.put(path, Map.of("chunks", file.chunkIds().size(), "ingestedAt", file.ingestedAt())));
+        result.put("detail", files);
+        return result;
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.pingyu.codehubbackend.rag.embedding;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.MetadataMode;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingOptionsBuilder;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 智码 - Embedding 合批 + 限流
+ * 问题：QuestionAnswerAdvisor 每个问题单独调一次远程 Embedding，聊天并发一上来就是一串只有 1 条文本的请求，
+ *       既浪费往返，又容易撞上 DashScope 的限流；入库时调用方传多少条就发多少条，超过单次上限直接报错。
+ * 做法：
+ * 1. 合批：小请求 (条数 < max-batch-size、不带任何选项) 先进队列，调度线程等 window 这么久，
+ *    把这段时间里到达的请求拼成一批 (不超过 max-batch-size) 发一次，结果按位置拆回给各个调用方；
+ * 2. 拆批：超过 max-batch-size 的请求自动拆成多批并发发送，结果按原顺序拼回；
+ * 3. 限流：同时在途的远程调用最多 max-in-flight 个 (合批调度拿不到名额时继续攒批，下一批自然更大)；
+ *    被限流 (429 / Throttling) 的调用占着名额按指数退避重试，让所有请求一起慢下来，而不是一起报错。
+ * 在容器里的位置：CachingEmbeddingModel → BatchingEmbeddingModel → DashScope，缓存命中的文本不会进来。
+ */
+public class BatchingEmbeddingModel implements EmbeddingModel, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchingEmbeddingModel.class);
+
+    private static final Class<?> DEFAULT_OPTIONS_CLASS = EmbeddingOptionsBuilder.builder().build().getClass();
+
+    private final EmbeddingModel delegate;
+    private final int maxBatchSize;
+    private final Duration window;
+    private final int maxInFlight;
+    private final int maxRetries;
+    private final Duration retryBackoff;
+
+    private final Semaphore inFlight;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("embedding-batch-", 0).factory());
+    private final Thread dispatcher;
+    private volatile boolean closed;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder coalescedRequests = new LongAdder();
+    private final LongAdder remoteCalls = new LongAdder();
+    private final LongAdder remoteTexts = new LongAdder();
+    private final LongAdder throttledRetries = new LongAdder();
+    private final LongAdder failedCalls = new LongAdder();
+
+    /** 一个等待合批的小请求 */
+    private record Pending(List<String> texts, EmbeddingOptions options, CompletableFuture<List<float[]>> result) {}
+
+    public BatchingEmbeddingModel(EmbeddingModel delegate, int maxBatchSize, Duration window, int maxInFlight,
+                                  int maxRetries, Duration retryBackoff) {
+        this.delegate = delegate;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.window = window;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.retryBackoff = retryBackoff;
+        this.inFlight = new Semaphore(this.maxInFlight, true);
+        this.dispatcher = Thread.ofVirtual().name("embedding-batch-dispatcher").start(this::dispatchLoop);
+        log.info("📦 [EmbeddingBatch] 合批窗口 {}ms, 单批上限 {} 条, 在途上限 {} 个",
+                window.toMillis(), this.maxBatchSize, this.maxInFlight);
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> texts = request.getInstructions();
+        requests.increment();
+        if (texts.isEmpty()) {
+            return new EmbeddingResponse(List.of());
+        }
+        List<float[]> vectors;
+        if (texts.size() < maxBatchSize && isCoalescable(request.getOptions()) && !closed) {
+            Pending pending = new Pending(texts, request.getOptions(), new CompletableFuture<>());
+            queue.add(pending);
+            if (closed && queue.remove(pending)) {
+                // 和 close() 撞上了：调度线程已经停了，没人会处理这个请求
+                pending.result().completeExceptionally(new IllegalStateException("Embedding 合批器已关闭"));
+            }
+            vectors = await(pending.result());
+        } else {
+            vectors = callSplit(texts, request.getOptions());
+        }
+        List<Embedding> embeddings = new ArrayList<>(vectors.size());
+        for (int i = 0; i < vectors.size(); i++) {
+            embeddings.add(new Embedding(vectors.get(i), i));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getFormattedContent(MetadataMode.EMBED));
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    /**
+     * 只有不带任何选项的请求才拼在一起 (embed(String) / embed(List) 默认带的是 EmbeddingOptionsBuilder 造的空选项)：
+     * 一批只能用一份选项发出去，厂商自己的选项类 (例如 DashScope 区分 query / document 的 textType) 字段各不相同，
+     * 混在一起会把别人的选项丢掉，这类请求一律单独发
+     */
+    private static boolean isCoalescable(EmbeddingOptions options) {
+        return options == null || options.getClass() == DEFAULT_OPTIONS_CLASS
+                && options.getModel() == null && options.getDimensions() == null;
+    }
+
+    // ======================================================
+    // 1. 合批调度：攒一个窗口 (或攒满一批)，拿到在途名额就发
+    // ======================================================
+    private void dispatchLoop() {
+        Pending carry = null;
+        List<Pending> group = new ArrayList<>();
+        try {
+            while (!closed) {
+                Pending first = carry != null ? carry : queue.take();
+                carry = null;
+                group = new ArrayList<>();
+                group.add(first);
+                int size = first.texts().size();
+                long deadline = System.nanoTime() + window.toNanos();
+                boolean acquired = false;
+                while (size < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        // 窗口到了：有名额就发；没名额反正也发不出去，边等名额边继续攒
+                        if (inFlight.tryAcquire()) {
+                            acquired = true;
+                            break;
+                        }
+                        remaining = TimeUnit.MILLISECONDS.toNanos(1);
+                    }
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) continue;
+                    if (size + next.texts().size() > maxBatchSize) {
+                        carry = next;
+                        break;
+                    }
+                    group.add(next);
+                    size += next.texts().size();
+                }
+                if (!acquired) {
+                    inFlight.acquire();
+                }
+                if (group.size() > 1) {
+                    coalescedRequests.add(group.size());
+                }
+                List<Pending> batch = group;
+                group = new ArrayList<>();
+                executor.execute(() -> {
+                    try {
+                        send(batch);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        } catch (InterruptedException | RejectedExecutionException e) {
+            // close() 停机：手上攒了一半的请求直接失败
+            if (carry != null) {
+                group.add(carry);
+            }
+            group.forEach(pending -> pending.result().completeExceptionally(new IllegalStateException("Embedding 合批器已关闭")));
+        }
+    }
+
+    private void send(List<Pending> group) {
+        List<String> texts = new ArrayList<>();
+        group.forEach(pending -> texts.addAll(pending.texts()));
+        try {
+            List<float[]> vectors = remote(texts, group.get(0).options());
+            int offset = 0;
+            for (Pending pending : group) {
+                int size = pending.texts().size();
+                pending.result().complete(vectors.subList(offset, offset + size));
+                offset += size;
+            }
+        } catch (Throwable e) {
+            group.forEach(pending -> pending.result().completeExceptionally(e));
+        }
+    }
+
+    // ======================================================
+    // 2. 拆批：大请求按 maxBatchSize 切开并发发送 (每批各自排队拿在途名额)
+    // ======================================================
+    private List<float[]> callSplit(List<String> texts, EmbeddingOptions options) {
+        if (texts.size() <= maxBatchSize) {
+            return withPermit(texts, options);
+        }
+        List<CompletableFuture<List<float[]>>> parts = new ArrayList<>();
+        for (int from = 0; from < texts.size(); from += maxBatchSize) {
+            List<String> part = texts.subList(from, Math.min(texts.size(), from + maxBatchSize));
+            parts.add(CompletableFuture.supplyAsync(() -> withPermit(part, options), executor));
+        }
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        for (CompletableFuture<List<float[]>> part : parts) {
+            vectors.addAll(await(part));
+        }
+        return vectors;
+    }
+
+    private List<float[]> withPermit(List<String> texts, EmbeddingOptions options) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待 Embedding 在途名额时被中断", e);
+        }
+        try {
+            return remote(texts, options);
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    // ======================================================
+    // 3. 远程调用 (调用方已持有在途名额)，被限流时指数退避重试
+    // ======================================================
+    private List<float[]> remote(List<String> texts, EmbeddingOptions options) {
+        for (int attempt = 0; ; attempt++) {
+            remoteCalls.increment();
+            try {
+                List<Embedding> results = new ArrayList<>(delegate.call(new EmbeddingRequest(texts, options)).getResults());
+                results.sort(Comparator.comparing(Embedding::getIndex));
+                remoteTexts.add(texts.size());
+                return results.stream().map(Embedding::getOutput).toList();
+            } catch (RuntimeException e) {
+                if (attempt >= maxRetries || !isThrottled(e)) {
+                    failedCalls.increment();
+                    throw e;
+                }
+                throttledRetries.increment();
+                long backoff = retryBackoff.toMillis() << attempt;
+                log.warn("⚠️ [EmbeddingBatch] 被限流，{}ms 后重试 ({}/{}): {}", backoff, attempt + 1, maxRetries, e.getMessage());
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /** DashScope 限流报 Throttling.* / 429，其他异常 (参数错误、鉴权失败) 重试也没用 */
+    private static boolean isThrottled(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            String message = cause.getMessage();
+            if (message != null && (message.contains("429") || message.contains("Throttling")
+                    || message.contains("Too Many Requests") || message.toLowerCase().contains("rate limit"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<float[]> await(CompletableFuture<List<float[]>> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            if (e.getCause() instanceof Error error) throw error;
+            throw e;
+        }
+    }
+
+    /**
+     * 合批指标 (给运维接口用)
+     */
+    public Map<String, Object> snapshot() {
+        long calls = remoteCalls.sum() - throttledRetries.sum() - failedCalls.sum();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("maxBatchSize", maxBatchSize);
+        result.put("windowMillis", window.toMillis());
+        result.put("maxInFlight", maxInFlight);
+        result.put("inFlight", maxInFlight - inFlight.availablePermits());
+        result.put("queued", queue.size());
+        result.put("requests", requests.sum());
+        result.put("coalescedRequests", coalescedRequests.sum());
+        result.put("remoteCalls", remoteCalls.sum());
+        result.put("throttledRetries", throttledRetries.sum());
+        result.put("failedCalls", failedCalls.sum());
+        result.put("avgBatchSize", calls <= 0 ? 0 : (double) remoteTexts.sum() / calls);
+        return result;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.interrupt();
+        executor.shutdown();
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result().completeExceptionally(new IllegalStateException("Embedding 合批器已关闭"));
+        }
+    }
+}
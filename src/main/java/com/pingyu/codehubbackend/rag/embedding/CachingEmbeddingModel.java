@@ -0,0 +1,181 @@
+package com.pingyu.codehubbackend.rag.embedding;
+
+import cn.hutool.cache.Cache;
+import cn.hutool.cache.CacheUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.MetadataMode;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 智码 - Embedding 缓存 (按内容哈希)
+ * 问题：每次入库 (runner 里的 vectorStore.add、知识库重新入库) 都把所有切片发给 DashScope，哪怕文本一个字都没变。
+ * 做法：
+ * 1. Key = 模型名 + 文本的 SHA-256，命中就不走远程；
+ * 2. 两级：内存里一个 LRU 放热数据，全部向量落在只追加的缓存文件里 ({@link EmbeddingCacheFile})，重启后照样命中；
+ * 3. 一批请求里只把没命中的 (且去重后的) 文本发给远程，结果按原顺序拼回去。
+ */
+public class CachingEmbeddingModel implements EmbeddingModel, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(CachingEmbeddingModel.class);
+
+    private final EmbeddingModel delegate;
+    private final String modelName;
+    private final EmbeddingCacheFile cacheFile;
+    private final Cache<EmbeddingCacheFile.Key, float[]> hot;
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder remoteCalls = new LongAdder();
+
+    public CachingEmbeddingModel(EmbeddingModel delegate, String modelName, Path file, int memoryEntries) {
+        this.delegate = delegate;
+        this.modelName = modelName;
+        try {
+            this.cacheFile = new EmbeddingCacheFile(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("打开 Embedding 缓存失败: " + file, e);
+        }
+        this.hot = CacheUtil.newLRUCache(memoryEntries);
+        log.info("🧊 [EmbeddingCache] 已加载 {} 条缓存向量 ({} MB), 模型: {}, 内存 LRU: {} 条: {}",
+                cacheFile.size(), cacheFile.fileBytes() / (1024 * 1024), modelName, memoryEntries, file);
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> texts = request.getInstructions();
+        String model = modelOf(request);
+        float[][] vectors = new float[texts.size()][];
+        // 没命中的文本去重：同一段文本在一批里出现多次只算一次
+        Map<EmbeddingCacheFile.Key, List<Integer>> missing = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            EmbeddingCacheFile.Key key = EmbeddingCacheFile.Key.of(model, texts.get(i));
+            float[] cached = lookup(key);
+            if (cached != null) {
+                vectors[i] = cached;
+            } else {
+                missing.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            misses.add(missing.size());
+            remoteCalls.increment();
+            List<String> missingTexts = missing.values().stream().map(indexes -> texts.get(indexes.get(0))).toList();
+            List<Embedding> results = new ArrayList<>(delegate.call(new EmbeddingRequest(missingTexts, request.getOptions())).getResults());
+            results.sort(Comparator.comparing(Embedding::getIndex));
+            int j = 0;
+            for (Map.Entry<EmbeddingCacheFile.Key, List<Integer>> entry : missing.entrySet()) {
+                float[] vector = results.get(j++).getOutput();
+                store(entry.getKey(), vector);
+                for (int index : entry.getValue()) {
+                    vectors[index] = vector;
+                }
+            }
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(texts.size());
+        for (int i = 0; i < vectors.length; i++) {
+            // 缓存里的数组是共享的，给调用方一份拷贝
+            embeddings.add(new Embedding(vectors[i].clone(), i));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getFormattedContent(MetadataMode.EMBED));
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    /** 缓存 Key 里的模型部分：请求里指定了模型 / 维度就以请求为准 */
+    private String modelOf(EmbeddingRequest request) {
+        EmbeddingOptions options = request.getOptions();
+        if (options == null) return modelName;
+        String model = options.getModel() != null ? options.getModel() : modelName;
+        return options.getDimensions() != null ? model + "/" + options.getDimensions() : model;
+    }
+
+    private float[] lookup(EmbeddingCacheFile.Key key) {
+        float[] vector = hot.get(key);
+        if (vector != null) {
+            memoryHits.increment();
+            return vector;
+        }
+        try {
+            vector = cacheFile.get(key);
+        } catch (IOException e) {
+            log.warn("⚠️ [EmbeddingCache] 读取缓存失败，按未命中处理: {}", e.toString());
+            return null;
+        }
+        if (vector != null) {
+            diskHits.increment();
+            hot.put(key, vector);
+        }
+        return vector;
+    }
+
+    private void store(EmbeddingCacheFile.Key key, float[] vector) {
+        hot.put(key, vector);
+        try {
+            cacheFile.put(key, vector);
+        } catch (IOException e) {
+            // 写缓存失败不影响这次 Embedding
+            log.warn("⚠️ [EmbeddingCache] 写入缓存失败: {}", e.toString());
+        }
+    }
+
+    /** 被包装的模型 (开了合批时是 {@link BatchingEmbeddingModel}) */
+    public EmbeddingModel getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * 缓存指标 (给运维接口用)
+     */
+    public Map<String, Object> snapshot() {
+        long hits = memoryHits.sum() + diskHits.sum();
+        long total = hits + misses.sum();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("model", modelName);
+        result.put("file", cacheFile.file().toString());
+        result.put("entries", cacheFile.size());
+        result.put("fileBytes", cacheFile.fileBytes());
+        result.put("memoryEntries", hot.size());
+        result.put("memoryHits", memoryHits.sum());
+        result.put("diskHits", diskHits.sum());
+        result.put("misses", misses.sum());
+        result.put("remoteCalls", remoteCalls.sum());
+        result.put("hitRate", total == 0 ? 0 : (double) hits / total);
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        cacheFile.close();
+        if (delegate instanceof Closeable closeable) {
+            closeable.close();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.pingyu.codehubbackend.rag.embedding;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Embedding 缓存文件 (只追加)
+ * 格式：头部 magic "CHEC" + version，之后每条记录
+ * <pre>
+ * key(16 字节) | dimension(int) | dimension 个 float
+ * </pre>
+ * 1. key = SHA-256(模型名 + 文本) 的前 128 位，同一段文本换了模型不会串；
+ * 2. 启动时只扫一遍记录头，内存里只放 key -> 文件偏移，向量按需定位读取 (热数据由上层 LRU 缓存)；
+ * 3. 同一个 key 只写一次，末尾写了一半的记录 (进程被杀) 会被截掉。
+ */
+final class EmbeddingCacheFile implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingCacheFile.class);
+
+    private static final int MAGIC = 0x43484543; // "CHEC"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 20;
+
+    /** 128 位内容哈希 */
+    record Key(long high, long low) {
+
+        static Key of(String model, String text) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                digest.update(model.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                ByteBuffer hash = ByteBuffer.wrap(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+                return new Key(hash.getLong(), hash.getLong());
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private final Path file;
+    private final FileChannel channel;
+    private final Map<Key, Long> offsets = new HashMap<>();
+    private long end;
+
+    EmbeddingCacheFile(Path file) throws IOException {
+        this.file = file;
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            load();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void load() throws IOException {
+        if (channel.size() < HEADER_BYTES) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip();
+            channel.truncate(0);
+            channel.write(header, 0);
+            end = HEADER_BYTES;
+            return;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(0)), 64 * 1024));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("不是 Embedding 缓存文件或版本不匹配: " + file);
+        }
+        long position = HEADER_BYTES;
+        long size = channel.size();
+        try {
+            while (position + RECORD_HEADER_BYTES <= size) {
+                Key key = new Key(in.readLong(), in.readLong());
+                int dimension = in.readInt();
+                long recordBytes = RECORD_HEADER_BYTES + (long) dimension * Float.BYTES;
+                if (dimension <= 0 || position + recordBytes > size) break;
+                in.skipNBytes((long) dimension * Float.BYTES);
+                offsets.put(key, position);
+                position += recordBytes;
+            }
+        } catch (EOFException e) {
+            // 截断的尾巴，下面统一处理
+        }
+        if (position < size) {
+            log.warn("⚠️ [EmbeddingCache] 缓存文件末尾有 {} 字节不完整的记录，已截掉: {}", size - position, file);
+            channel.truncate(position);
+        }
+        end = position;
+    }
+
+    synchronized float[] get(Key key) throws IOException {
+        Long offset = offsets.get(key);
+        if (offset == null) return null;
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+        channel.read(header, offset + 16);
+        int dimension = header.flip().getInt();
+        ByteBuffer body = ByteBuffer.allocate(dimension * Float.BYTES);
+        while (body.hasRemaining()) {
+            if (channel.read(body, offset + RECORD_HEADER_BYTES + body.position()) < 0) {
+                throw new EOFException("Embedding 缓存记录不完整: " + file);
+            }
+        }
+        float[] vector = new float[dimension];
+        body.flip().asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    synchronized void put(Key key, float[] vector) throws IOException {
+        if (offsets.containsKey(key)) return;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + vector.length * Float.BYTES);
+        record.putLong(key.high()).putLong(key.low()).putInt(vector.length);
+        record.asFloatBuffer().put(vector);
+        record.rewind();
+        long position = end;
+        while (record.hasRemaining()) {
+            position += channel.write(record, position);
+        }
+        offsets.put(key, end);
+        end = position;
+    }
+
+    synchronized int size() {
+        return offsets.size();
+    }
+
+    synchronized long fileBytes() {
+        return end;
+    }
+
+    Path file() {
+        return file;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.force(false);
+        channel.close();
+    }
+}
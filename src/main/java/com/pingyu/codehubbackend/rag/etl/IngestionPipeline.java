@@ -0,0 +1,513 @@
+package com.pingyu.codehubbackend.rag.etl;
+
+import com.pingyu.codehubbackend.rag.splitter.JavaCodeSplitter;
+import com.pingyu.codehubbackend.rag.splitter.MarkdownSectionSplitter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.DocumentTransformer;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 智码 - 批量入库流水线 (整个目录 / zip、jar 压缩包)
+ * 问题：EtlTestRunner 那套 read() → apply() → add() 是单线程一把梭，所有切片都攒在内存里，最后一次性 add，
+ *       中途任何一步抛异常，前面做的全白费。
+ * 做法：拆成四段，段与段之间是有界队列 (下游慢了上游自动阻塞 = 背压，内存里最多只压着几个队列的量)：
+ * <pre>
+ * 遍历文件 ──▶ 读取 (N 个) ──▶ 切片 + 打标签 (CPU 核数个) ──▶ 攒批 ──▶ Embedding + 写库 (M 个)
+ * </pre>
+ * 1. 攒批：切片凑够 batch-size 或者等了 batch-max-wait 就发一批，一批 = 一次 Embedding 调用，写完就能被检索到；
+ * 2. 出错只丢出错的那部分：某个文件读 / 切失败只记下这个文件，某一批写库失败重试一次再失败只记下这批，
+ *    其余照常入库，已经写进向量库的批次不受影响 (mapped 向量库写入即落盘)；
+ * 3. 每隔 progress-interval 打一行进度 (文件数、切片数、切片/秒、各队列积压)，结束时返回 {@link Report}；
+ * 4. 切片 ID 由 来源 + 切片序号 算出 (同一个文件重新入库会覆盖原来的切片而不是再存一份)，
+ *    文件变短后多出来的旧切片不会自动删除，需要时按 source 过滤删除。
+ */
+@Component
+public class IngestionPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestionPipeline.class);
+    private static final Set<String> ARCHIVE_SUFFIXES = Set.of(".zip", ".jar");
+    /** 报告里最多列出多少条失败明细 */
+    private static final int MAX_REPORTED_FAILURES = 50;
+
+    private final VectorStore vectorStore;
+    private final List<PathMatcher> includes;
+    private final int readWorkers;
+    private final int splitWorkers;
+    private final int storeWorkers;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final Duration batchMaxWait;
+    private final Duration progressInterval;
+    /** Markdown 按标题结构切片 (无状态，切片 worker 共用；null = 全部走 TokenTextSplitter) */
+    private final MarkdownSectionSplitter markdownSplitter;
+    /** .java 按类型 / 方法切片 (null = 走 TokenTextSplitter) */
+    private final JavaCodeSplitter javaSplitter;
+
+    /** 一个待读取的文件 (压缩包里的文件 path 属于压缩包的 FileSystem，source 形如 docs.zip!/guide/a.md) */
+    private record SourceFile(Path path, String source, String archive) {}
+
+    /**
+     * 一次入库的结果
+     *
+     * @param failures 失败明细 (最多 50 条)
+     */
+    public record Report(int files, int failedFiles, long chunks, long failedChunks, int batches,
+                         long millis, List<String> failures) {
+
+        public double chunksPerSecond() {
+            return millis == 0 ? chunks : chunks * 1000.0 / millis;
+        }
+    }
+
+    public IngestionPipeline(VectorStore vectorStore,
+                             @Value("${codehub.rag.etl.include:*.md,*.txt}") String[] includes,
+                             @Value("${codehub.rag.etl.read-workers:4}") int readWorkers,
+                             @Value("${codehub.rag.etl.split-workers:0}") int splitWorkers,
+                             @Value("${codehub.rag.etl.store-workers:2}") int storeWorkers,
+                             @Value("${codehub.rag.etl.queue-capacity:64}") int queueCapacity,
+                             @Value("${codehub.rag.etl.batch-size:25}") int batchSize,
+                             @Value("${codehub.rag.etl.batch-max-wait:200ms}") Duration batchMaxWait,
+                             @Value("${codehub.rag.etl.progress-interval:5s}") Duration progressInterval,
+                             @Value("${codehub.rag.splitter.markdown:true}") boolean markdownSplitter,
+                             @Value("${codehub.rag.splitter.java:true}") boolean javaSplitter,
+                             @Value("${codehub.rag.splitter.chunk-tokens:800}") int chunkTokens) {
+        this.vectorStore = vectorStore;
+        this.includes = Arrays.stream(includes)
+                .map(glob -> FileSystems.getDefault().getPathMatcher("glob:" + glob.trim()))
+                .toList();
+        this.readWorkers = Math.max(1, readWorkers);
+        this.splitWorkers = splitWorkers > 0 ? splitWorkers : Runtime.getRuntime().availableProcessors();
+        this.storeWorkers = Math.max(1, storeWorkers);
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.batchMaxWait = batchMaxWait;
+        this.progressInterval = progressInterval;
+        this.markdownSplitter = markdownSplitter ? new MarkdownSectionSplitter(chunkTokens) : null;
+        this.javaSplitter = javaSplitter ? new JavaCodeSplitter(chunkTokens) : null;
+    }
+
+    /**
+     * 把若干目录 / 压缩包 / 单个文件整体入库 (阻塞到全部完成)
+     */
+    public Report ingest(List<Path> sources) throws InterruptedException {
+        return new Run().execute(sources);
+    }
+
+    /**
+     * 一次运行的状态 (队列、计数器)，流水线对象本身可以被多次、并发地使用
+     */
+    private final class Run {
+
+        private final Channel<SourceFile> files = new Channel<>(queueCapacity, 1);
+        private final Channel<Document> documents = new Channel<>(Math.max(1, queueCapacity / 4), readWorkers);
+        private final Channel<Document> chunks = new Channel<>(batchSize * storeWorkers * 2, splitWorkers);
+        private final Channel<List<Document>> batches = new Channel<>(storeWorkers, 1);
+
+        private final AtomicInteger discovered = new AtomicInteger();
+        private final AtomicInteger read = new AtomicInteger();
+        private final AtomicInteger failedFiles = new AtomicInteger();
+        private final AtomicLong split = new AtomicLong();
+        private final AtomicLong stored = new AtomicLong();
+        private final AtomicLong failedChunks = new AtomicLong();
+        private final AtomicInteger storedBatches = new AtomicInteger();
+        private final Queue<String> failures = new ConcurrentLinkedQueue<>();
+        private final List<FileSystem> archives = new ArrayList<>();
+        private final long start = System.currentTimeMillis();
+
+        Report execute(List<Path> sources) throws InterruptedException {
+            log.info("🚚 [ETL] 开始批量入库: {} (读取 {} / 切片 {} / 写库 {} 个并发, 每批 {} 个切片)",
+                    sources, readWorkers, splitWorkers, storeWorkers, batchSize);
+            List<Thread> threads = new ArrayList<>();
+            threads.add(Thread.ofVirtual().name("etl-walk").start(() -> stage(files, () -> walk(sources))));
+            Thread.Builder readers = Thread.ofVirtual().name("etl-read-", 0);
+            for (int i = 0; i < readWorkers; i++) {
+                threads.add(readers.start(() -> stage(documents, this::readLoop)));
+            }
+            Thread.Builder splitters = Thread.ofVirtual().name("etl-split-", 0);
+            for (int i = 0; i < splitWorkers; i++) {
+                threads.add(splitters.start(() -> stage(chunks, this::splitLoop)));
+            }
+            threads.add(Thread.ofVirtual().name("etl-batch").start(() -> stage(batches, this::batchLoop)));
+            Thread.Builder writers = Thread.ofVirtual().name("etl-store-", 0);
+            for (int i = 0; i < storeWorkers; i++) {
+                threads.add(writers.start(this::storeLoop));
+            }
+            Thread progress = Thread.ofVirtual().name("etl-progress").start(this::progressLoop);
+
+            try {
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+            } catch (InterruptedException e) {
+                // 调用方取消：停掉所有阶段，已写入的批次保留
+                threads.forEach(Thread::interrupt);
+                List.of(files, documents, chunks, batches).forEach(Channel::cancel);
+                throw e;
+            } finally {
+                progress.interrupt();
+                closeArchives();
+            }
+
+            List<String> details = failures.stream().limit(MAX_REPORTED_FAILURES).toList();
+            Report report = new Report(read.get(), failedFiles.get(), stored.get(), failedChunks.get(),
+                    storedBatches.get(), System.currentTimeMillis() - start, details);
+            log.info("✅ [ETL] 批量入库完成: {} 个文件 (失败 {}), {} 个切片 / {} 批 (失败 {} 个切片), 耗时 {}ms, {} 切片/s",
+                    report.files(), report.failedFiles(), report.chunks(), report.batches(), report.failedChunks(),
+                    report.millis(), String.format("%.1f", report.chunksPerSecond()));
+            return report;
+        }
+
+        /** 跑完一个阶段 (不管正常结束还是被中断) 都要关掉它的下游，否则下游永远等不到结束标记 */
+        private void stage(Channel<?> downstream, InterruptibleTask task) {
+            try {
+                task.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                downstream.close();
+            }
+        }
+
+        // ======================================================
+        // 1. 遍历：目录递归、压缩包按 zip 文件系统打开 (不解压到磁盘)
+        // ======================================================
+        private void walk(List<Path> sources) throws InterruptedException {
+            for (Path source : sources) {
+                Path root = source.toAbsolutePath().normalize();
+                try {
+                    if (Files.isDirectory(root)) {
+                        walkDirectory(root, null);
+                    } else if (isArchive(root)) {
+                        walkArchive(root);
+                    } else if (Files.isRegularFile(root)) {
+                        offer(new SourceFile(root, root.toString(), null));
+                    } else {
+                        log.warn("⚠️ [ETL] 路径不存在，跳过: {}", root);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    fail(root.toString(), e);
+                }
+            }
+        }
+
+        private void walkDirectory(Path dir, String archive) throws IOException, InterruptedException {
+            List<Path> found;
+            try (Stream<Path> stream = Files.walk(dir)) {
+                found = stream.filter(Files::isRegularFile).toList();
+            }
+            for (Path file : found) {
+                if (archive == null && isArchive(file)) {
+                    walkArchive(file);
+                } else if (isIncluded(file)) {
+                    String source = archive == null ? file.toString() : archive + "!" + file;
+                    offer(new SourceFile(file, source, archive));
+                }
+            }
+        }
+
+        private void walkArchive(Path file) throws IOException, InterruptedException {
+            FileSystem zip;
+            try {
+                zip = FileSystems.newFileSystem(file);
+            } catch (IOException | RuntimeException e) {
+                fail(file.toString(), e);
+                return;
+            }
+            synchronized (archives) {
+                archives.add(zip);
+            }
+            // 压缩包里不再展开嵌套的压缩包
+            for (Path root : zip.getRootDirectories()) {
+                walkDirectory(root, file.toString());
+            }
+        }
+
+        private void offer(SourceFile file) throws InterruptedException {
+            discovered.incrementAndGet();
+            files.put(file);
+        }
+
+        // ======================================================
+        // 2. 读取 (I/O 为主，虚拟线程多开几个)
+        // ======================================================
+        private void readLoop() throws InterruptedException {
+            SourceFile file;
+            while ((file = files.take()) != null) {
+                try {
+                    String content = new String(Files.readAllBytes(file.path()), StandardCharsets.UTF_8);
+                    read.incrementAndGet();
+                    if (content.isBlank()) continue;
+                    // 和 KnowledgeBaseIngestionService 一样的标签，压缩包里的文件额外记一下来自哪个包
+                    Map<String, Object> metadata = new HashMap<>();
+                    metadata.put("charset", "UTF-8");
+                    metadata.put("filename", file.path().getFileName().toString());
+                    metadata.put("source", file.source());
+                    if (file.archive() != null) {
+                        metadata.put("archive", file.archive());
+                    }
+                    documents.put(new Document(content, metadata));
+                } catch (IOException | RuntimeException e) {
+                    fail(file.source(), e);
+                }
+            }
+        }
+
+        // ======================================================
+        // 3. 切片 + 打标签 (CPU 为主，每个 worker 一个 splitter)
+        // ======================================================
+        private void splitLoop() throws InterruptedException {
+            TokenTextSplitter splitter = new TokenTextSplitter();
+            Document document;
+            while ((document = documents.take()) != null) {
+                List<Document> parts;
+                try {
+                    parts = splitterFor((String) document.getMetadata().get("filename"), splitter).apply(List.of(document));
+                } catch (RuntimeException e) {
+                    fail(String.valueOf(document.getMetadata().get("source")), e);
+                    continue;
+                }
+                String source = String.valueOf(document.getMetadata().get("source"));
+                for (int i = 0; i < parts.size(); i++) {
+                    Document part = parts.get(i);
+                    part.getMetadata().put("chunk_index", i);
+                    part.getMetadata().put("chunk_count", parts.size());
+                    chunks.put(Document.builder().id(chunkId(source, i)).text(part.getText()).metadata(part.getMetadata()).build());
+                }
+                split.addAndGet(parts.size());
+            }
+        }
+
+        // ======================================================
+        // 4. 攒批：凑够 batchSize 或者第一条等了 batchMaxWait 就发
+        // ======================================================
+        private void batchLoop() throws InterruptedException {
+            List<Document> batch = new ArrayList<>(batchSize);
+            long deadline = 0;
+            while (true) {
+                Document chunk = batch.isEmpty() ? chunks.take() : chunks.poll(deadline - System.nanoTime());
+                if (chunk != null) {
+                    if (batch.isEmpty()) {
+                        deadline = System.nanoTime() + batchMaxWait.toNanos();
+                    }
+                    batch.add(chunk);
+                    if (batch.size() < batchSize) continue;
+                }
+                if (!batch.isEmpty()) {
+                    batches.put(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+                if (chunk == null && chunks.isDrained()) return;
+            }
+        }
+
+        // ======================================================
+        // 5. Embedding + 写库 (一批一次 add，失败重试一次)
+        // ======================================================
+        private void storeLoop() {
+            try {
+                List<Document> batch;
+                while ((batch = batches.take()) != null) {
+                    store(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void store(List<Document> batch) throws InterruptedException {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    vectorStore.add(batch);
+                    stored.addAndGet(batch.size());
+                    storedBatches.incrementAndGet();
+                    return;
+                } catch (RuntimeException e) {
+                    if (attempt < 2) {
+                        log.warn("⚠️ [ETL] 写入一批 {} 个切片失败，1 秒后重试: {}", batch.size(), e.toString());
+                        Thread.sleep(1000);
+                        continue;
+                    }
+                    failedChunks.addAndGet(batch.size());
+                    Set<Object> sources = new LinkedHashSet<>();
+                    batch.forEach(chunk -> sources.add(chunk.getMetadata().get("source")));
+                    log.error("❌ [ETL] 写入一批 {} 个切片失败 (来自 {})，跳过这批继续", batch.size(), sources, e);
+                    failures.add("写库失败 " + batch.size() + " 个切片 " + sources + ": " + e);
+                    return;
+                }
+            }
+        }
+
+        // ======================================================
+        // 进度 / 失败记录
+        // ======================================================
+        private void progressLoop() {
+            try {
+                while (true) {
+                    Thread.sleep(progressInterval.toMillis());
+                    long elapsed = Math.max(1, System.currentTimeMillis() - start);
+                    log.info("📈 [ETL] 文件 {}/{} (失败 {}) | 切片 已切 {} / 已入库 {} | {} 切片/s | 积压 读 {} 切 {} 写 {}",
+                            read.get(), discovered.get(), failedFiles.get(), split.get(), stored.get(),
+                            String.format("%.1f", stored.get() * 1000.0 / elapsed),
+                            files.size(), documents.size() + chunks.size(), batches.size());
+                }
+            } catch (InterruptedException e) {
+                // 入库结束
+            }
+        }
+
+        private void fail(String source, Exception e) {
+            failedFiles.incrementAndGet();
+            log.warn("⚠️ [ETL] 处理失败，跳过: {} ({})", source, e.toString());
+            failures.add(source + ": " + e);
+        }
+
+        private void closeArchives() {
+            synchronized (archives) {
+                for (FileSystem zip : archives) {
+                    try {
+                        zip.close();
+                    } catch (IOException e) {
+                        log.debug("关闭压缩包失败: {}", e.toString());
+                    }
+                }
+            }
+        }
+    }
+
+    /** 切片 ID：同一来源、同一序号永远得到同一个 ID (向量库按 ID 覆盖) */
+    private static String chunkId(String source, int chunkIndex) {
+        return UUID.nameUUIDFromBytes((source + "#" + chunkIndex).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /** 按文件类型挑切片器：Markdown 按标题结构、Java 按类型 / 方法，其他按 Token */
+    private DocumentTransformer splitterFor(String filename, TokenTextSplitter tokenSplitter) {
+        if (markdownSplitter != null && MarkdownSectionSplitter.isMarkdown(filename)) return markdownSplitter;
+        if (javaSplitter != null && JavaCodeSplitter.isJava(filename)) return javaSplitter;
+        return tokenSplitter;
+    }
+
+    private boolean isIncluded(Path file) {
+        Path name = file.getFileName();
+        return name != null && includes.stream().anyMatch(matcher -> matcher.matches(Paths.get(name.toString())));
+    }
+
+    private static boolean isArchive(Path file) {
+        Path name = file.getFileName();
+        if (name == null) return false;
+        String lower = name.toString().toLowerCase(Locale.ROOT);
+        return ARCHIVE_SUFFIXES.stream().anyMatch(lower::endsWith);
+    }
+
+    @FunctionalInterface
+    private interface InterruptibleTask {
+        void run() throws InterruptedException;
+    }
+
+    /**
+     * 有界队列 + 结束标记：所有生产者都 close() 之后，消费者 take() / poll() 拿到 null 并且 isDrained() 为 true
+     * 取消时 cancel()：清空队列，等着放结束标记的线程也随之退出 (消费者已经停了，队列不会再空出位置)
+     */
+    private static final class Channel<T> {
+
+        private static final Object END = new Object();
+
+        private final BlockingQueue<Object> queue;
+        private final AtomicInteger producers;
+        private volatile boolean drained;
+        private volatile boolean cancelled;
+
+        Channel(int capacity, int producers) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.producers = new AtomicInteger(producers);
+        }
+
+        void put(T item) throws InterruptedException {
+            queue.put(item);
+        }
+
+        /** 生产者结束 (最后一个结束的生产者放入结束标记) */
+        void close() {
+            if (producers.decrementAndGet() == 0) {
+                putEnd();
+            }
+        }
+
+        T take() throws InterruptedException {
+            return unwrap(queue.take());
+        }
+
+        /** 超时返回 null 且 isDrained() 为 false */
+        T poll(long timeoutNanos) throws InterruptedException {
+            return unwrap(queue.poll(Math.max(0, timeoutNanos), TimeUnit.NANOSECONDS));
+        }
+
+        void cancel() {
+            cancelled = true;
+            queue.clear();
+            queue.offer(END);
+        }
+
+        boolean isDrained() {
+            return drained;
+        }
+
+        int size() {
+            return queue.size();
+        }
+
+        @SuppressWarnings("unchecked")
+        private T unwrap(Object item) {
+            if (item != END) return (T) item;
+            // 结束标记放回去，让同一阶段的其他消费者也能看到
+            drained = true;
+            putEnd();
+            return null;
+        }
+
+        private void putEnd() {
+            if (cancelled || queue.offer(END)) return;
+            // 队列满了 (消费者还没取完)：另起一个线程等位置，取消后不再等
+            Thread.ofVirtual().name("etl-channel-end").start(() -> {
+                try {
+                    while (!cancelled && !queue.offer(END, 100, TimeUnit.MILLISECONDS)) {
+                        // 继续等消费者腾出位置
+                    }
+                } catch (InterruptedException ignored) {
+                    // 不会有人中断这个线程
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.pingyu.codehubbackend.rag.etl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.DocumentReader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * 智码 - Java 源码读取器
+ * 把一个源码目录下的 .java 文件读成 Document (一个文件一个)，交给 JavaCodeSplitter 按类型 / 方法切片。
+ * 元数据：filename、source (相对根目录的路径，切片开头和引用都用它)、language=java。
+ */
+public class JavaSourceReader implements DocumentReader {
+
+    private static final Logger log = LoggerFactory.getLogger(JavaSourceReader.class);
+
+    private final Path root;
+    private final Set<String> excludeDirs;
+
+    public JavaSourceReader(Path root) {
+        this(root, Set.of(".git", "target", "build", "node_modules", ".idea", ".mvn", ".gradle"));
+    }
+
+    public JavaSourceReader(Path root, Set<String> excludeDirs) {
+        this.root = root.toAbsolutePath().normalize();
+        this.excludeDirs = excludeDirs;
+    }
+
+    @Override
+    public List<Document> get() {
+        List<Path> sources;
+        try (Stream<Path> stream = Files.walk(root)) {
+            sources = stream
+                    .filter(path -> path.toString().endsWith(".java") && Files.isRegularFile(path) && !isExcluded(path))
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("遍历源码目录失败: " + root, e);
+        }
+        List<Document> documents = new ArrayList<>(sources.size());
+        for (Path path : sources) {
+            try {
+                String relative = root.relativize(path).toString().replace('\\', '/');
+                documents.add(new Document(Files.readString(path, StandardCharsets.UTF_8), Map.of(
+                        "filename", path.getFileName().toString(),
+                        "source", relative,
+                        "language", "java")));
+            } catch (IOException e) {
+                // 单个文件读不了 (编码不对、被删了) 不影响其他文件
+                log.warn("⚠️ [JavaSourceReader] 跳过无法读取的文件 {}: {}", path, e.toString());
+            }
+        }
+        return documents;
+    }
+
+    private boolean isExcluded(Path path) {
+        for (Path part : root.relativize(path)) {
+            if (excludeDirs.contains(part.toString())) return true;
+        }
+        return false;
+    }
+}
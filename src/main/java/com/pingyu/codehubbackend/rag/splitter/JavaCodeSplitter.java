@@ -0,0 +1,285 @@
+package com.pingyu.codehubbackend.rag.splitter;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.AnnotationDeclaration;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.CallableDeclaration;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.EnumDeclaration;
+import com.github.javaparser.ast.body.RecordDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.DocumentTransformer;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 智码 - Java 源码切片 (按类型 / 方法)
+ * 问题：TokenTextSplitter 按 Token 数硬切 .java 文件，方法经常被从中间切开，
+ *       检索回来的是半个方法，智能体还得再调好几次 read_file 才能看全。
+ * 做法 (JavaParser 解析，不做类型推断)：
+ * 1. 一个类型 (连同注释、内部类) 放得下 chunkTokens 就整个作为一个切片；
+ * 2. 放不下的大类拆成：
+ *    - 一个类型概要切片：类声明、字段、短方法原文，长方法只留签名，内部类只留一行声明；
+ *    - 每个长方法 / 构造器一个切片 (连同 Javadoc 和注解)；
+ *    - 内部类型按同样规则递归处理；
+ * 3. 每个切片开头带上文件、行号、package 和所在类的声明，单独拿出来也看得懂；
+ *    单个方法本身都超长时按行切成几段，每段都带同样的开头；
+ * 4. 元数据：language、package、class (全限定名)、kind (type / type-summary / method / constructor)、
+ *    method、signature、start_line、end_line；解析失败的文件退回 TokenTextSplitter。
+ */
+public class JavaCodeSplitter implements DocumentTransformer {
+
+    private static final Logger log = LoggerFactory.getLogger(JavaCodeSplitter.class);
+
+    /** 短于这个 Token 数的方法直接放进类型概要，不单独成片 (getter / setter 之类) */
+    private static final int SMALL_MEMBER_TOKENS = 60;
+
+    private final int chunkTokens;
+    private final TokenTextSplitter fallback;
+
+    public JavaCodeSplitter() {
+        this(MarkdownSectionSplitter.DEFAULT_CHUNK_TOKENS);
+    }
+
+    public JavaCodeSplitter(int chunkTokens) {
+        this.chunkTokens = chunkTokens;
+        this.fallback = new TokenTextSplitter(chunkTokens, 350, 5, 10000, true);
+    }
+
+    public static boolean isJava(String filename) {
+        return filename != null && filename.endsWith(".java");
+    }
+
+    @Override
+    public List<Document> apply(List<Document> documents) {
+        // JavaParser 实例不保证线程安全，每次 apply 各用各的
+        JavaParser parser = new JavaParser(new ParserConfiguration()
+                .setLanguageLevel(ParserConfiguration.LanguageLevel.JAVA_21));
+        List<Document> chunks = new ArrayList<>();
+        for (Document document : documents) {
+            ParseResult<CompilationUnit> result = parser.parse(document.getText());
+            if (!result.isSuccessful() || result.getResult().get().getTypes().isEmpty()) {
+                // 有语法错误时 JavaParser 也会给出一棵残缺的树，照着它切会丢代码，直接按 Token 切
+                log.debug("Java 解析失败，按 Token 切片: {}", document.getMetadata().get("source"));
+                chunks.addAll(fallback.apply(List.of(document)));
+                continue;
+            }
+            new FileSplit(document, result.getResult().get(), chunks).run();
+        }
+        return chunks;
+    }
+
+    /**
+     * 一个文件的切分过程 (源码行、package、输出列表)
+     */
+    private final class FileSplit {
+
+        private final Document source;
+        private final CompilationUnit unit;
+        private final List<Document> chunks;
+        private final String[] lines;
+        private final String packageName;
+        private final String location;
+
+        FileSplit(Document source, CompilationUnit unit, List<Document> chunks) {
+            this.source = source;
+            this.unit = unit;
+            this.chunks = chunks;
+            this.lines = source.getText().split("\\r?\\n", -1);
+            this.packageName = unit.getPackageDeclaration().map(p -> p.getNameAsString()).orElse("");
+            Object path = source.getMetadata().getOrDefault("source", source.getMetadata().get("filename"));
+            this.location = path == null ? "" : path.toString();
+        }
+
+        void run() {
+            for (TypeDeclaration<?> type : unit.getTypes()) {
+                splitType(type);
+            }
+        }
+
+        // ======================================================
+        // 1. 类型：放得下整个放，放不下拆成概要 + 长方法 + 内部类型
+        // ======================================================
+        private void splitType(TypeDeclaration<?> type) {
+            int begin = beginLine(type);
+            int end = endLine(type);
+            String text = text(begin, end);
+            if (MarkdownSectionSplitter.estimateTokens(text) <= chunkTokens) {
+                emit(header(begin, end, null) + text, type, "type", null, begin, end);
+                return;
+            }
+
+            StringBuilder summary = new StringBuilder();
+            List<BodyDeclaration<?>> members = type.getMembers();
+            int headerEnd = members.isEmpty() ? end : beginLine(members.get(0)) - 1;
+            summary.append(text(begin, headerEnd).stripTrailing()).append('\n');
+            List<CallableDeclaration<?>> longMembers = new ArrayList<>();
+            for (BodyDeclaration<?> member : members) {
+                if (member instanceof TypeDeclaration<?> nested) {
+                    summary.append("    // ").append(keyword(nested)).append(' ').append(nested.getNameAsString())
+                            .append(" (见单独切片)\n");
+                    continue;
+                }
+                String memberText = text(beginLine(member), endLine(member));
+                if (member instanceof CallableDeclaration<?> callable
+                        && MarkdownSectionSplitter.estimateTokens(memberText) > SMALL_MEMBER_TOKENS) {
+                    summary.append("    ").append(callable.getDeclarationAsString(true, true, true)).append(";\n");
+                    longMembers.add(callable);
+                } else {
+                    summary.append(memberText);
+                }
+            }
+            summary.append("}\n");
+            emitWindows(header(begin, end, null), summary.toString(), type, "type-summary", null, begin, end);
+
+            String declaration = declaration(type);
+            for (CallableDeclaration<?> callable : longMembers) {
+                int memberBegin = beginLine(callable);
+                int memberEnd = endLine(callable);
+                emitWindows(header(memberBegin, memberEnd, declaration), text(memberBegin, memberEnd) + "}\n", type,
+                        callable instanceof ConstructorDeclaration ? "constructor" : "method", callable, memberBegin, memberEnd);
+            }
+            for (BodyDeclaration<?> member : members) {
+                if (member instanceof TypeDeclaration<?> nested) {
+                    splitType(nested);
+                }
+            }
+        }
+
+        /** 超长就按行切成几段，每段都带同样的开头 */
+        private void emitWindows(String header, String body, TypeDeclaration<?> type, String kind,
+                                 CallableDeclaration<?> callable, int begin, int end) {
+            int budget = Math.max(1, chunkTokens - MarkdownSectionSplitter.estimateTokens(header));
+            if (MarkdownSectionSplitter.estimateTokens(body) <= budget) {
+                emit(header + body, type, kind, callable, begin, end);
+                return;
+            }
+            List<String> windows = new ArrayList<>();
+            StringBuilder window = new StringBuilder();
+            int tokens = 0;
+            for (String line : body.split("\n", -1)) {
+                int lineTokens = MarkdownSectionSplitter.estimateTokens(line) + 1;
+                if (tokens > 0 && tokens + lineTokens > budget) {
+                    windows.add(window.toString());
+                    window.setLength(0);
+                    tokens = 0;
+                }
+                window.append(line).append('\n');
+                tokens += lineTokens;
+            }
+            if (!window.toString().isBlank()) {
+                windows.add(window.toString());
+            }
+            for (int i = 0; i < windows.size(); i++) {
+                emit(header + "// (第 " + (i + 1) + "/" + windows.size() + " 段)\n" + windows.get(i), type, kind, callable, begin, end);
+            }
+        }
+
+        private void emit(String text, TypeDeclaration<?> type, String kind, CallableDeclaration<?> callable, int begin, int end) {
+            Map<String, Object> metadata = new HashMap<>(source.getMetadata());
+            metadata.put("language", "java");
+            metadata.put("package", packageName);
+            metadata.put("class", type.getFullyQualifiedName().orElse(type.getNameAsString()));
+            metadata.put("kind", kind);
+            if (callable != null) {
+                metadata.put("method", callable.getNameAsString());
+                metadata.put("signature", callable.getDeclarationAsString(false, false, true));
+            }
+            metadata.put("start_line", begin);
+            metadata.put("end_line", end);
+            chunks.add(new Document(text, metadata));
+        }
+
+        // ======================================================
+        // 2. 切片开头：文件 + 行号 + package (+ 所在类的声明)
+        // ======================================================
+        private String header(int begin, int end, String declaration) {
+            StringBuilder header = new StringBuilder();
+            header.append("// ").append(location).append(" 第 ").append(begin).append('-').append(end).append(" 行\n");
+            if (!packageName.isEmpty()) {
+                header.append("package ").append(packageName).append(";\n\n");
+            }
+            if (declaration != null) {
+                header.append(declaration).append(" {\n");
+            }
+            return header.toString();
+        }
+
+        /** 所在类的一行声明，例如 public class Foo<T> extends Bar implements Baz (内部类带上外层类名) */
+        private String declaration(TypeDeclaration<?> type) {
+            StringBuilder declaration = new StringBuilder();
+            type.getModifiers().forEach(modifier -> declaration.append(modifier.getKeyword().asString()).append(' '));
+            declaration.append(keyword(type)).append(' ');
+            String qualified = type.getFullyQualifiedName().orElse(type.getNameAsString());
+            declaration.append(packageName.isEmpty() ? qualified : qualified.substring(packageName.length() + 1));
+            if (type instanceof ClassOrInterfaceDeclaration declared) {
+                if (declared.getTypeParameters().isNonEmpty()) {
+                    declaration.append(declared.getTypeParameters().stream().map(Node::toString)
+                            .collect(Collectors.joining(", ", "<", ">")));
+                }
+                appendTypes(declaration, " extends ", declared.getExtendedTypes());
+                appendTypes(declaration, " implements ", declared.getImplementedTypes());
+            } else if (type instanceof RecordDeclaration record) {
+                declaration.append(record.getParameters().stream().map(Node::toString)
+                        .collect(Collectors.joining(", ", "(", ")")));
+                appendTypes(declaration, " implements ", record.getImplementedTypes());
+            } else if (type instanceof EnumDeclaration declared) {
+                appendTypes(declaration, " implements ", declared.getImplementedTypes());
+            }
+            return declaration.toString();
+        }
+
+        // ======================================================
+        // 3. 行号 / 原文 (从 Javadoc、注解开始算)
+        // ======================================================
+        private int beginLine(Node node) {
+            int line = node.getBegin().map(position -> position.line).orElse(1);
+            return node.getComment()
+                    .flatMap(Node::getBegin)
+                    .map(position -> Math.min(position.line, line))
+                    .orElse(line);
+        }
+
+        private int endLine(Node node) {
+            return node.getEnd().map(position -> position.line).orElse(lines.length);
+        }
+
+        private String text(int begin, int end) {
+            StringBuilder text = new StringBuilder();
+            for (int line = Math.max(1, begin); line <= Math.min(end, lines.length); line++) {
+                text.append(lines[line - 1]).append('\n');
+            }
+            return text.toString();
+        }
+    }
+
+    private static void appendTypes(StringBuilder declaration, String keyword, List<ClassOrInterfaceType> types) {
+        if (!types.isEmpty()) {
+            declaration.append(keyword).append(types.stream().map(Node::toString).collect(Collectors.joining(", ")));
+        }
+    }
+
+    private static String keyword(TypeDeclaration<?> type) {
+        if (type instanceof ClassOrInterfaceDeclaration declaration) {
+            return declaration.isInterface() ? "interface" : "class";
+        }
+        if (type instanceof EnumDeclaration) return "enum";
+        if (type instanceof RecordDeclaration) return "record";
+        if (type instanceof AnnotationDeclaration) return "@interface";
+        return "class";
+    }
+}
@@ -0,0 +1,237 @@
+package com.pingyu.codehubbackend.rag.splitter;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.DocumentTransformer;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 智码 - 按 Markdown 标题结构切片
+ * 问题：TokenTextSplitter 先把整篇文档编码成 Token，再按固定 Token 数硬切，
+ *       "## 3. 时间格式" 这种一条完整的规范经常被切成两半，检索回来的切片缺头少尾。
+ * 做法：
+ * 1. 按 ATX 标题 (# ~ ######) 切成小节，代码块 (``` / ~~~) 里的 # 不算标题；
+ * 2. 一个小节连同它的子小节能放进 chunkTokens 就整体作为一个切片，放不下再往下一级拆；
+ * 3. 大小用字符数粗估 (非 ASCII 字符按 1 Token、ASCII 按 4 字符 1 Token)，不做真正的分词；
+ *    只有单个小节超长时才按段落拆，单个段落还超长才退回 TokenTextSplitter；
+ *    拆开的后续切片开头补上小节标题，保证每个切片都知道自己在讲什么；
+ * 4. 每个切片的元数据带上 section (标题路径，如 "规范 > 3. 时间格式")、heading、section_level。
+ */
+public class MarkdownSectionSplitter implements DocumentTransformer {
+
+    public static final int DEFAULT_CHUNK_TOKENS = 800;
+
+    private static final Pattern HEADING = Pattern.compile("^(#{1,6})\\s+(.+?)\\s*#*\\s*$");
+
+    private final int chunkTokens;
+    /** 单个段落都超长时的兜底 (参数和 TokenTextSplitter 默认值一致，只是切片大小跟随 chunkTokens) */
+    private final TokenTextSplitter fallback;
+
+    /** 一个小节：标题路径、级别 (0 = 第一个标题之前的内容)、原文 (含标题行) */
+    record Section(List<String> path, int level, String text, int tokens) {
+
+        String headingLine() {
+            int newline = text.indexOf('\n');
+            return level == 0 ? "" : newline < 0 ? text : text.substring(0, newline);
+        }
+    }
+
+    public MarkdownSectionSplitter() {
+        this(DEFAULT_CHUNK_TOKENS);
+    }
+
+    public MarkdownSectionSplitter(int chunkTokens) {
+        this.chunkTokens = chunkTokens;
+        this.fallback = new TokenTextSplitter(chunkTokens, 350, 5, 10000, true);
+    }
+
+    public static boolean isMarkdown(String filename) {
+        if (filename == null) return false;
+        String lower = filename.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".md") || lower.endsWith(".markdown");
+    }
+
+    @Override
+    public List<Document> apply(List<Document> documents) {
+        List<Document> chunks = new ArrayList<>();
+        for (Document document : documents) {
+            chunks.addAll(split(document));
+        }
+        return chunks;
+    }
+
+    public List<Document> split(Document document) {
+        List<Section> sections = parse(document.getText());
+        List<Document> chunks = new ArrayList<>();
+        int i = 0;
+        while (i < sections.size()) {
+            Section section = sections.get(i);
+            if (section.tokens() > chunkTokens) {
+                for (String part : splitOversized(section)) {
+                    chunks.add(chunk(document, section, part));
+                }
+                i++;
+                continue;
+            }
+            // 把后面紧跟着的子小节 (级别更深) 并进来，直到放不下
+            StringBuilder text = new StringBuilder(section.text());
+            int tokens = section.tokens();
+            int j = i + 1;
+            while (j < sections.size() && sections.get(j).level() > section.level()
+                    && tokens + sections.get(j).tokens() <= chunkTokens) {
+                text.append("\n\n").append(sections.get(j).text());
+                tokens += sections.get(j).tokens();
+                j++;
+            }
+            // 只有一行标题、子小节又一个都并不进来：单独一个标题当切片没有意义 (标题路径已经在子小节的元数据里)
+            boolean headingOnly = j == i + 1 && section.text().equals(section.headingLine())
+                    && j < sections.size() && sections.get(j).level() > section.level();
+            if (!headingOnly) {
+                chunks.add(chunk(document, section, text.toString()));
+            }
+            i = j;
+        }
+        return chunks;
+    }
+
+    // ======================================================
+    // 1. 解析：按标题切成小节，记录标题路径
+    // ======================================================
+    List<Section> parse(String markdown) {
+        List<Section> sections = new ArrayList<>();
+        String[] titles = new String[7];
+        int level = 0;
+        StringBuilder current = new StringBuilder();
+        boolean fenced = false;
+        for (String line : markdown.split("\\r?\\n", -1)) {
+            String trimmed = line.stripLeading();
+            if (trimmed.startsWith("```") || trimmed.startsWith("~~~")) {
+                fenced = !fenced;
+            }
+            Matcher heading = fenced ? null : HEADING.matcher(line);
+            if (heading != null && heading.matches()) {
+                addSection(sections, titles, level, current);
+                level = heading.group(1).length();
+                titles[level] = heading.group(2);
+                for (int deeper = level + 1; deeper < titles.length; deeper++) {
+                    titles[deeper] = null;
+                }
+                current.setLength(0);
+            }
+            current.append(line).append('\n');
+        }
+        addSection(sections, titles, level, current);
+        return sections;
+    }
+
+    private static void addSection(List<Section> sections, String[] titles, int level, StringBuilder text) {
+        String content = text.toString().strip();
+        if (content.isEmpty()) return;
+        List<String> path = new ArrayList<>();
+        for (int l = 1; l <= level; l++) {
+            if (titles[l] != null) {
+                path.add(titles[l]);
+            }
+        }
+        sections.add(new Section(List.copyOf(path), level, content, estimateTokens(content)));
+    }
+
+    // ======================================================
+    // 2. 超长小节：按段落装箱，单段超长再退回真正的分词
+    // ======================================================
+    private List<String> splitOversized(Section section) {
+        String heading = section.headingLine();
+        String prefix = heading.isEmpty() ? "" : heading + "\n\n";
+        List<String> parts = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int currentTokens = 0;
+        for (String paragraph : paragraphs(section.text())) {
+            int tokens = estimateTokens(paragraph);
+            if (currentTokens > 0 && currentTokens + tokens > chunkTokens && !current.toString().equals(prefix)) {
+                parts.add(current.toString().strip());
+                current.setLength(0);
+                currentTokens = 0;
+            }
+            if (current.isEmpty() && !parts.isEmpty()) {
+                // 续写的切片补上小节标题
+                current.append(prefix);
+                currentTokens = estimateTokens(prefix);
+            }
+            if (currentTokens + tokens > chunkTokens) {
+                // 单个段落 (大代码块、长表格) 自己就放不下，只能真正分词硬切
+                for (Document piece : fallback.apply(List.of(new Document(paragraph)))) {
+                    String text = piece.getText();
+                    parts.add(text.startsWith(heading) ? text : prefix + text);
+                }
+                current.setLength(0);
+                currentTokens = 0;
+                continue;
+            }
+            if (!current.isEmpty() && !current.toString().equals(prefix)) {
+                current.append("\n\n");
+            }
+            current.append(paragraph);
+            currentTokens += tokens;
+        }
+        if (!current.isEmpty() && !current.toString().equals(prefix)) {
+            parts.add(current.toString().strip());
+        }
+        return parts;
+    }
+
+    /** 按空行分段，代码块内部的空行不算 */
+    private static List<String> paragraphs(String text) {
+        List<String> paragraphs = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean fenced = false;
+        for (String line : text.split("\\n", -1)) {
+            String trimmed = line.stripLeading();
+            if (trimmed.startsWith("```") || trimmed.startsWith("~~~")) {
+                fenced = !fenced;
+            }
+            if (!fenced && line.isBlank()) {
+                if (!current.isEmpty()) {
+                    paragraphs.add(current.toString().strip());
+                    current.setLength(0);
+                }
+                continue;
+            }
+            current.append(line).append('\n');
+        }
+        if (!current.toString().isBlank()) {
+            paragraphs.add(current.toString().strip());
+        }
+        return paragraphs;
+    }
+
+    private static Document chunk(Document source, Section section, String text) {
+        Map<String, Object> metadata = new HashMap<>(source.getMetadata());
+        metadata.put("section", String.join(" > ", section.path()));
+        metadata.put("heading", section.path().isEmpty() ? "" : section.path().get(section.path().size() - 1));
+        metadata.put("section_level", section.level());
+        return new Document(text, metadata);
+    }
+
+    /**
+     * Token 粗估：非 ASCII (中文等) 一个字符算 1 个，ASCII 4 个字符算 1 个
+     */
+    static int estimateTokens(CharSequence text) {
+        int ascii = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) < 0x80) {
+                ascii++;
+            } else {
+                other++;
+            }
+        }
+        return other + (ascii + 3) / 4;
+    }
+}
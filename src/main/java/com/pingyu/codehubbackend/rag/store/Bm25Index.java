@@ -0,0 +1,320 @@
+package com.pingyu.codehubbackend.rag.store;
+
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 进程内 BM25 倒排索引 (给 {@link HybridVectorStore} 做关键词召回)
+ * 分词 (不引第三方分词器)：
+ * 1. 英文 / 代码：连续的 [@ 字母 数字 _ $ . &lt; &gt; #] 算一个原始词，整体小写后作为一个检索词，
+ *    这样 "@CodeHubSecured"、"Result&lt;T&gt;"、"Result.ok" 能按原样精确命中；
+ *    复合词 (带符号或驼峰) 再拆出各个部分 ("LocalDateTime" -> local / date / time)，部分匹配也能召回；
+ * 2. 中文：连续汉字按二元组 (bigram) 切，单个汉字单独成词。
+ * 存储：每个文档一个内部编号，倒排表用 int[] 按编号追加 (词频一起存)；删除只打墓碑，
+ * 墓碑比活文档还多时整体重建一次。文档原文也留一份，删除时要重新分词扣减文档频率。
+ */
+final class Bm25Index {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    /** 墓碑超过这个数、且比活文档还多时重建 */
+    private static final int COMPACT_MIN_TOMBSTONES = 1024;
+
+    private static final Pattern RAW_TOKEN = Pattern.compile("[@A-Za-z0-9_$][A-Za-z0-9_$.<>#@]*|[\\u4e00-\\u9fff]+");
+    private static final Pattern CAMEL = Pattern.compile("(?<=[a-z0-9])(?=[A-Z])|(?<=[A-Z])(?=[A-Z][a-z])");
+    private static final Pattern NON_ALNUM = Pattern.compile("[^A-Za-z0-9]+");
+
+    private record Entry(String id, String text, Map<String, Object> metadata, int length) {}
+
+    /** 一个词的倒排表：文档编号 + 词频 (按编号递增追加)，live = 还活着的文档数 (即文档频率) */
+    private static final class Postings {
+        int[] docs = new int[2];
+        int[] tfs = new int[2];
+        int size;
+        int live;
+
+        void add(int doc, int tf) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                tfs = Arrays.copyOf(tfs, size * 2);
+            }
+            docs[size] = doc;
+            tfs[size] = tf;
+            size++;
+            live++;
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Entry> docs = new ArrayList<>();
+    private final Map<String, Integer> docById = new HashMap<>();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private long totalLength;
+    private int tombstones;
+
+    // ======================================================
+    // 1. 写入 / 删除 (同 id 再次写入视为覆盖)
+    // ======================================================
+    void add(List<Document> documents) {
+        List<Map<String, Integer>> frequencies = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            frequencies.add(document.getText() == null ? Map.of() : termFrequencies(document.getText()));
+        }
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < documents.size(); i++) {
+                Document document = documents.get(i);
+                // 先删旧的：同 id 改成空文本也要把旧内容从索引里拿掉
+                remove(document.getId());
+                if (document.getText() == null || document.getText().isBlank()) continue;
+                index(new Entry(document.getId(), document.getText(), new LinkedHashMap<>(document.getMetadata()),
+                        frequencies.get(i).values().stream().mapToInt(Integer::intValue).sum()), frequencies.get(i));
+            }
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void delete(List<String> ids) {
+        lock.writeLock().lock();
+        try {
+            ids.forEach(this::remove);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void delete(Predicate<Map<String, Object>> filter) {
+        lock.writeLock().lock();
+        try {
+            List<String> matched = new ArrayList<>();
+            for (Entry entry : docs) {
+                if (entry != null && filter.test(entry.metadata())) {
+                    matched.add(entry.id());
+                }
+            }
+            matched.forEach(this::remove);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void index(Entry entry, Map<String, Integer> frequencies) {
+        int doc = docs.size();
+        docs.add(entry);
+        docById.put(entry.id(), doc);
+        frequencies.forEach((term, tf) -> postings.computeIfAbsent(term, key -> new Postings()).add(doc, tf));
+        totalLength += entry.length();
+    }
+
+    private void remove(String id) {
+        Integer doc = docById.remove(id);
+        if (doc == null) return;
+        Entry entry = docs.set(doc, null);
+        for (String term : termFrequencies(entry.text()).keySet()) {
+            Postings list = postings.get(term);
+            if (list != null && --list.live == 0) {
+                postings.remove(term);
+            }
+        }
+        totalLength -= entry.length();
+        tombstones++;
+    }
+
+    /** 倒排表里指向墓碑的编号只在检索时跳过，攒多了整体重建 */
+    private void compactIfNeeded() {
+        if (tombstones < COMPACT_MIN_TOMBSTONES || tombstones < docById.size()) return;
+        List<Entry> live = docs.stream().filter(entry -> entry != null).toList();
+        docs.clear();
+        docById.clear();
+        postings.clear();
+        totalLength = 0;
+        tombstones = 0;
+        for (Entry entry : live) {
+            index(entry, termFrequencies(entry.text()));
+        }
+    }
+
+    // ======================================================
+    // 2. 检索：BM25 打分 + 元数据过滤 + Top-K
+    // ======================================================
+    List<Document> search(String query, int topK, Predicate<Map<String, Object>> filter) {
+        Set<String> terms = termFrequencies(query).keySet();
+        lock.readLock().lock();
+        try {
+            int documents = docById.size();
+            if (documents == 0 || terms.isEmpty()) return List.of();
+            float avgLength = Math.max(1f, (float) totalLength / documents);
+            float[] scores = new float[docs.size()];
+            BitSet touched = new BitSet(docs.size());
+            for (String term : terms) {
+                Postings list = postings.get(term);
+                if (list == null) continue;
+                float idf = (float) Math.log(1 + (documents - list.live + 0.5) / (list.live + 0.5));
+                for (int i = 0; i < list.size; i++) {
+                    Entry entry = docs.get(list.docs[i]);
+                    if (entry == null) continue;
+                    int tf = list.tfs[i];
+                    scores[list.docs[i]] += idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * entry.length() / avgLength));
+                    touched.set(list.docs[i]);
+                }
+            }
+            TopK top = new TopK(topK);
+            for (int doc = touched.nextSetBit(0); doc >= 0; doc = touched.nextSetBit(doc + 1)) {
+                if (scores[doc] > top.threshold() && filter.test(docs.get(doc).metadata())) {
+                    top.offer(doc, scores[doc]);
+                }
+            }
+            float[] ranked = new float[top.size()];
+            int[] hits = top.drainDescending(ranked);
+            List<Document> results = new ArrayList<>(hits.length);
+            for (int i = 0; i < hits.length; i++) {
+                Entry entry = docs.get(hits[i]);
+                Map<String, Object> metadata = new LinkedHashMap<>(entry.metadata());
+                metadata.put("bm25_score", ranked[i]);
+                results.add(Document.builder().id(entry.id()).text(entry.text()).metadata(metadata).score((double) ranked[i]).build());
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** 含有这个检索词的文档数 */
+    int documentFrequency(String term) {
+        lock.readLock().lock();
+        try {
+            Postings list = postings.get(term);
+            return list == null ? 0 : list.live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return docById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    Map<String, Object> snapshot() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("documents", docById.size());
+            result.put("terms", postings.size());
+            result.put("tombstones", tombstones);
+            result.put("avgLength", docById.isEmpty() ? 0 : totalLength / docById.size());
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ======================================================
+    // 3. 分词
+    // ======================================================
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        Matcher matcher = RAW_TOKEN.matcher(text);
+        while (matcher.find()) {
+            String raw = matcher.group();
+            if (raw.charAt(0) >= 0x4e00) {
+                if (raw.length() == 1) {
+                    terms.add(raw);
+                }
+                for (int i = 0; i + 1 < raw.length(); i++) {
+                    terms.add(raw.substring(i, i + 2));
+                }
+                continue;
+            }
+            raw = trim(raw);
+            if (raw.isEmpty()) continue;
+            boolean compound = isIdentifier(raw);
+            String whole = raw.toLowerCase(Locale.ROOT);
+            if (whole.length() > 1 || compound) {
+                terms.add(whole);
+            }
+            if (!compound) continue;
+            for (String part : NON_ALNUM.split(raw)) {
+                if (part.isEmpty()) continue;
+                String lowerPart = part.toLowerCase(Locale.ROOT);
+                if (!lowerPart.equals(whole) && lowerPart.length() > 1) {
+                    terms.add(lowerPart);
+                }
+                String[] words = CAMEL.split(part);
+                if (words.length > 1) {
+                    for (String word : words) {
+                        if (word.length() > 1) {
+                            terms.add(word.toLowerCase(Locale.ROOT));
+                        }
+                    }
+                }
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * 查询里的精确标识符 (带符号或驼峰的原始词，小写后就是索引里的整词)，例如 @codehubsecured、result&lt;t&gt;、localdatetime
+     */
+    static List<String> identifiers(String text) {
+        Set<String> identifiers = new LinkedHashSet<>();
+        Matcher matcher = RAW_TOKEN.matcher(text);
+        while (matcher.find()) {
+            String raw = trim(matcher.group());
+            if (!raw.isEmpty() && raw.charAt(0) < 0x4e00 && isIdentifier(raw)) {
+                identifiers.add(raw.toLowerCase(Locale.ROOT));
+            }
+        }
+        return new ArrayList<>(identifiers);
+    }
+
+    /** 带符号 (@ _ $ . &lt; &gt; #) 或者驼峰 (小写后面跟大写) 的词才算标识符，"Token"、"API" 这种普通词不算 */
+    private static boolean isIdentifier(String raw) {
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (!Character.isLetterOrDigit(c)) return true;
+            if (i > 0 && Character.isUpperCase(c) && Character.isLowerCase(raw.charAt(i - 1))) return true;
+        }
+        return false;
+    }
+
+    /** 去掉句末的点、孤立的尖括号等 (例如 "返回 Result." 里的 ".") */
+    private static String trim(String raw) {
+        int end = raw.length();
+        while (end > 0 && (raw.charAt(end - 1) == '.' || raw.charAt(end - 1) == '#'
+                || (raw.charAt(end - 1) == '>' && raw.indexOf('<') < 0))) {
+            end--;
+        }
+        return raw.substring(0, end);
+    }
+
+    private static Map<String, Integer> termFrequencies(String text) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String term : tokenize(text)) {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+        return frequencies;
+    }
+}
@@ -0,0 +1,199 @@
+package com.pingyu.codehubbackend.rag.store;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 文档追加日志 (向量之外的部分：ID、正文、元数据、所在槽位)
+ * 格式：头部 magic "CHDL" + version，之后每条记录
+ * <pre>
+ * ADD    : 1 | slot(int) | id | text | metadataJson
+ * DELETE : 2 | id
+ * </pre>
+ * 字符串 = 长度(int) + UTF-8 字节。只追加不修改，重启时顺序回放；
+ * 末尾写了一半的记录 (进程被杀) 会被截掉，之前的记录不受影响。
+ */
+public class DocumentLog implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(DocumentLog.class);
+
+    private static final int MAGIC = 0x4348444C; // "CHDL"
+    private static final int VERSION = 1;
+    private static final byte OP_ADD = 1;
+    private static final byte OP_DELETE = 2;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {};
+
+    /** 回放时的回调 */
+    public interface Replay {
+        void add(int slot, String id, String text, Map<String, Object> metadata);
+
+        void delete(String id);
+    }
+
+    /** 日志里的一条存活文档 (压缩时用) */
+    public record Entry(int slot, String id, String text, Map<String, Object> metadata) {}
+
+    private final Path file;
+    private FileOutputStream fileOut;
+    private DataOutputStream out;
+    private long records;
+
+    public DocumentLog(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * 回放整个日志并打开追加流；返回回放的记录数
+     */
+    public long open(Replay replay) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        long validBytes = 0;
+        if (Files.exists(file) && Files.size(file) > 0) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+                throw new IOException("不是文档日志 (magic 不匹配): " + file);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("不支持的文档日志版本 " + version + ": " + file);
+            }
+            validBytes = buffer.position();
+            while (buffer.hasRemaining()) {
+                try {
+                    byte op = buffer.get();
+                    if (op == OP_ADD) {
+                        int slot = buffer.getInt();
+                        String id = readString(buffer);
+                        String text = readString(buffer);
+                        Map<String, Object> metadata = MAPPER.readValue(readString(buffer), METADATA_TYPE);
+                        replay.add(slot, id, text, metadata);
+                    } else if (op == OP_DELETE) {
+                        replay.delete(readString(buffer));
+                    } else {
+                        throw new IOException("未知的日志操作码 " + op);
+                    }
+                    validBytes = buffer.position();
+                    records++;
+                } catch (BufferUnderflowException | IOException e) {
+                    log.warn("⚠️ [DocumentLog] 日志在 {} 字节处不完整，丢弃之后的内容: {}", validBytes, e.getMessage());
+                    break;
+                }
+            }
+        }
+
+        if (validBytes == 0) {
+            writeHeader(file);
+        } else if (validBytes < Files.size(file)) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(validBytes);
+            }
+        }
+        openAppender();
+        return records;
+    }
+
+    private void openAppender() throws IOException {
+        fileOut = new FileOutputStream(file.toFile(), true);
+        out = new DataOutputStream(new BufferedOutputStream(fileOut, 64 * 1024));
+    }
+
+    private static void writeHeader(Path target) throws IOException {
+        try (DataOutputStream header = new DataOutputStream(Files.newOutputStream(target))) {
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+        }
+    }
+
+    public void appendAdd(int slot, String id, String text, Map<String, Object> metadata) throws IOException {
+        out.writeByte(OP_ADD);
+        out.writeInt(slot);
+        writeString(out, id);
+        writeString(out, text);
+        writeString(out, MAPPER.writeValueAsString(metadata));
+        records++;
+    }
+
+    public void appendDelete(String id) throws IOException {
+        out.writeByte(OP_DELETE);
+        writeString(out, id);
+        records++;
+    }
+
+    /**
+     * 一批写完后调用：刷缓冲区并落盘
+     */
+    public void flush() throws IOException {
+        out.flush();
+        fileOut.getChannel().force(false);
+    }
+
+    /** 日志里的记录总数 (含已被覆盖/删除的) */
+    public long records() {
+        return records;
+    }
+
+    /**
+     * 压缩：只保留存活文档，写临时文件后原子替换
+     */
+    public void compact(Collection<Entry> live) throws IOException {
+        out.close();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        writeHeader(tmp);
+        try (DataOutputStream compacted = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(tmp, StandardOpenOption.APPEND), 64 * 1024))) {
+            for (Entry entry : live) {
+                compacted.writeByte(OP_ADD);
+                compacted.writeInt(entry.slot());
+                writeString(compacted, entry.id());
+                writeString(compacted, entry.text());
+                writeString(compacted, MAPPER.writeValueAsString(entry.metadata()));
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        records = live.size();
+        openAppender();
+    }
+
+    private static void writeString(DataOutputStream target, String value) throws IOException {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        target.writeInt(bytes.length);
+        target.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out != null) {
+            flush();
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package com.pingyu.codehubbackend.rag.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntPredicate;
+
+/**
+ * HNSW 近似最近邻索引 (Malkov &amp; Yashunin)
+ * 1. 节点编号就是向量库的槽位号，向量本身不在这里存，通过 {@link VectorReader} 读 (堆外/映射区)；
+ * 2. 相似度是点积 (向量库里都是归一化向量，等价于余弦)；
+ * 3. 并发：插入互斥 (一把锁)，检索完全无锁 —— 邻居表按层放在 AtomicReferenceArray 里，
+ *    更新时整体替换 (copy-on-write)，检索线程看到的永远是某个完整版本；
+ * 4. 删除由上层打墓碑 (检索时 accept 过滤掉)，节点仍参与图的连通，墓碑多了由上层整体重建。
+ */
+public final class HnswIndex {
+
+    private static final int MAGIC = 0x43484847; // "CHHG"
+    private static final int VERSION = 1;
+    private static final int MAX_LEVEL = 16;
+    private static final int[] EMPTY = new int[0];
+
+    /**
+     * @param m              每个节点每层的邻居数 (第 0 层为 2M)
+     * @param efConstruction 建图时的候选集大小，越大图质量越好、插入越慢
+     * @param efSearch       检索时的候选集大小，越大召回越高、查询越慢
+     */
+    public record Params(int m, int efConstruction, int efSearch) {}
+
+    /** 检索结果：节点号 + 分数，按分数从高到低 */
+    public record Hits(int[] nodes, float[] scores) {}
+
+    /** 按节点号读向量 (归一化后的) */
+    @FunctionalInterface
+    public interface VectorReader {
+        void read(int node, float[] dst);
+    }
+
+    private static final class Node {
+        final int level;
+        final AtomicReferenceArray<int[]> neighbors;
+
+        Node(int level) {
+            this.level = level;
+            this.neighbors = new AtomicReferenceArray<>(level + 1);
+            for (int i = 0; i <= level; i++) {
+                neighbors.set(i, EMPTY);
+            }
+        }
+    }
+
+    private record EntryPoint(int node, int level) {}
+
+    private final Params params;
+    private final int dimension;
+    private final VectorReader reader;
+    private final boolean simd;
+    private final double levelMultiplier;
+
+    private volatile Node[] nodes = new Node[1024];
+    private final AtomicReference<EntryPoint> entry = new AtomicReference<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final ReentrantLock insertLock = new ReentrantLock();
+
+    public HnswIndex(Params params, int dimension, VectorReader reader, boolean simd) {
+        this.params = params;
+        this.dimension = dimension;
+        this.reader = reader;
+        this.simd = simd;
+        this.levelMultiplier = 1.0 / Math.log(Math.max(2, params.m()));
+    }
+
+    public Params params() {
+        return params;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public boolean contains(int node) {
+        return nodeAt(node) != null;
+    }
+
+    /** 每次都重新读 volatile 的 nodes：插入线程可能刚把数组扩容 */
+    private Node nodeAt(int node) {
+        Node[] current = nodes;
+        return node >= 0 && node < current.length ? current[node] : null;
+    }
+
+    // ======================================================
+    // 1. 插入
+    // ======================================================
+    public void insert(int node, float[] vector) {
+        insertLock.lock();
+        try {
+            if (contains(node)) return;
+            int level = randomLevel();
+            ensureCapacity(node);
+            Node created = new Node(level);
+            nodes[node] = created;
+            size.incrementAndGet();
+
+            EntryPoint ep = entry.get();
+            if (ep == null) {
+                entry.set(new EntryPoint(node, level));
+                return;
+            }
+            float[] scratch = new float[dimension];
+            int current = ep.node();
+            float currentScore = similarity(vector, current, scratch);
+            for (int l = ep.level(); l > level; l--) {
+                long best = greedy(vector, current, currentScore, l, scratch);
+                current = (int) (best >>> 32);
+                currentScore = Float.intBitsToFloat((int) best);
+            }
+            for (int l = Math.min(level, ep.level()); l >= 0; l--) {
+                TopK candidates = searchLayer(vector, current, currentScore, params.efConstruction(), l, null, scratch);
+                float[] scores = new float[candidates.size()];
+                int[] ids = candidates.drainDescending(scores);
+                int[] selected = selectNeighbors(ids, scores, params.m());
+                created.neighbors.set(l, selected);
+                for (int neighbor : selected) {
+                    link(neighbor, node, l);
+                }
+                current = ids[0];
+                currentScore = scores[0];
+            }
+            if (level > ep.level()) {
+                entry.set(new EntryPoint(node, level));
+            }
+        } finally {
+            insertLock.unlock();
+        }
+    }
+
+    private int randomLevel() {
+        double r = 1.0 - ThreadLocalRandom.current().nextDouble();
+        return Math.min(MAX_LEVEL, (int) (-Math.log(r) * levelMultiplier));
+    }
+
+    private void ensureCapacity(int node) {
+        Node[] current = nodes;
+        if (node >= current.length) {
+            // 先拷贝再发布 (volatile 写)，检索线程要么看到旧数组要么看到完整的新数组
+            nodes = Arrays.copyOf(current, Math.max(node + 1, current.length * 2));
+        }
+    }
+
+    private int maxConnections(int level) {
+        return level == 0 ? params.m() * 2 : params.m();
+    }
+
+    /**
+     * 给 target 加一条指向 node 的边；超出上限时用同样的启发式裁剪
+     */
+    private void link(int target, int node, int level) {
+        Node targetNode = nodeAt(target);
+        int[] current = targetNode.neighbors.get(level);
+        if (current.length < maxConnections(level)) {
+            int[] extended = Arrays.copyOf(current, current.length + 1);
+            extended[current.length] = node;
+            targetNode.neighbors.set(level, extended);
+            return;
+        }
+        float[] base = new float[dimension];
+        reader.read(target, base);
+        float[] scratch = new float[dimension];
+        TopK ranked = new TopK(current.length + 1);
+        for (int neighbor : current) {
+            ranked.offer(neighbor, similarity(base, neighbor, scratch));
+        }
+        ranked.offer(node, similarity(base, node, scratch));
+        float[] scores = new float[ranked.size()];
+        int[] ids = ranked.drainDescending(scores);
+        targetNode.neighbors.set(level, selectNeighbors(ids, scores, maxConnections(level)));
+    }
+
+    /**
+     * 启发式选邻居：候选 c 只有在 "离基准点比离任何已选邻居都近" 时才入选，
+     * 让邻居分布在不同方向上 (图更好走)；不够数再用被跳过的补齐。
+     */
+    private int[] selectNeighbors(int[] ids, float[] scores, int limit) {
+        if (ids.length <= limit) return ids;
+        int[] selected = new int[limit];
+        float[][] selectedVectors = new float[limit][];
+        int count = 0;
+        int[] skipped = new int[ids.length];
+        int skippedCount = 0;
+        for (int i = 0; i < ids.length && count < limit; i++) {
+            float[] candidate = new float[dimension];
+            reader.read(ids[i], candidate);
+            boolean diverse = true;
+            for (int j = 0; j < count; j++) {
+                if (VectorMath.dot(candidate, selectedVectors[j], dimension, simd) > scores[i]) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selectedVectors[count] = candidate;
+                selected[count++] = ids[i];
+            } else {
+                skipped[skippedCount++] = ids[i];
+            }
+        }
+        for (int i = 0; i < skippedCount && count < limit; i++) {
+            selected[count++] = skipped[i];
+        }
+        return count == limit ? selected : Arrays.copyOf(selected, count);
+    }
+
+    // ======================================================
+    // 2. 检索
+    // ======================================================
+
+    /**
+     * @param query  归一化后的查询向量
+     * @param accept 哪些节点可以进结果 (墓碑、元数据过滤)；不接受的节点仍然会被走过
+     */
+    public Hits search(float[] query, int k, int ef, IntPredicate accept) {
+        EntryPoint ep = entry.get();
+        if (ep == null) return new Hits(new int[0], new float[0]);
+        float[] scratch = new float[dimension];
+        int current = ep.node();
+        float currentScore = similarity(query, current, scratch);
+        for (int l = ep.level(); l > 0; l--) {
+            long best = greedy(query, current, currentScore, l, scratch);
+            current = (int) (best >>> 32);
+            currentScore = Float.intBitsToFloat((int) best);
+        }
+        TopK results = searchLayer(query, current, currentScore, Math.max(ef, k), 0, accept, scratch);
+        float[] scores = new float[results.size()];
+        int[] ids = results.drainDescending(scores);
+        int n = Math.min(k, ids.length);
+        return new Hits(Arrays.copyOf(ids, n), Arrays.copyOf(scores, n));
+    }
+
+    /** 上层贪心下降：返回 (节点 << 32 | 分数位) */
+    private long greedy(float[] query, int start, float startScore, int level, float[] scratch) {
+        int current = start;
+        float currentScore = startScore;
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbor : nodeAt(current).neighbors.get(level)) {
+                float score = similarity(query, neighbor, scratch);
+                if (score > currentScore) {
+                    current = neighbor;
+                    currentScore = score;
+                    improved = true;
+                }
+            }
+        }
+        return ((long) current << 32) | (Float.floatToRawIntBits(currentScore) & 0xFFFFFFFFL);
+    }
+
+    private TopK searchLayer(float[] query, int start, float startScore, int ef, int level,
+                             IntPredicate accept, float[] scratch) {
+        BitSet visited = new BitSet(nodes.length);
+        CandidateQueue candidates = new CandidateQueue();
+        TopK results = new TopK(ef);
+        visited.set(start);
+        candidates.push(start, startScore);
+        if (accept == null || accept.test(start)) {
+            results.offer(start, startScore);
+        }
+        while (candidates.size() > 0) {
+            float score = candidates.topScore();
+            // 最好的候选都比结果集里最差的还差：再走下去也不会更好
+            if (score < results.threshold()) break;
+            int current = candidates.pop();
+            Node node = nodeAt(current);
+            if (node == null || node.level < level) continue;
+            for (int neighbor : node.neighbors.get(level)) {
+                if (visited.get(neighbor)) continue;
+                visited.set(neighbor);
+                float neighborScore = similarity(query, neighbor, scratch);
+                if (neighborScore > results.threshold()) {
+                    candidates.push(neighbor, neighborScore);
+                    if (accept == null || accept.test(neighbor)) {
+                        results.offer(neighbor, neighborScore);
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    private float similarity(float[] query, int node, float[] scratch) {
+        reader.read(node, scratch);
+        return VectorMath.dot(query, scratch, dimension, simd);
+    }
+
+    /** 候选队列：原始类型大顶堆 (分数高的先出) */
+    private static final class CandidateQueue {
+        private int[] ids = new int[64];
+        private float[] scores = new float[64];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        float topScore() {
+            return scores[0];
+        }
+
+        void push(int id, float score) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (scores[parent] >= score) break;
+                ids[i] = ids[parent];
+                scores[i] = scores[parent];
+                i = parent;
+            }
+            ids[i] = id;
+            scores[i] = score;
+        }
+
+        int pop() {
+            int top = ids[0];
+            size--;
+            int lastId = ids[size];
+            float lastScore = scores[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) break;
+                if (child + 1 < size && scores[child + 1] > scores[child]) child++;
+                if (lastScore >= scores[child]) break;
+                ids[i] = ids[child];
+                scores[i] = scores[child];
+                i = child;
+            }
+            ids[i] = lastId;
+            scores[i] = lastScore;
+            return top;
+        }
+    }
+
+    // ======================================================
+    // 3. 持久化 (只存图结构，向量在向量文件里)
+    // ======================================================
+    public void save(Path file) throws IOException {
+        insertLock.lock();
+        try {
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Node[] snapshot = nodes;
+            EntryPoint ep = entry.get();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(params.m());
+                out.writeInt(params.efConstruction());
+                out.writeInt(dimension);
+                out.writeInt(snapshot.length);
+                out.writeInt(ep == null ? -1 : ep.node());
+                out.writeInt(ep == null ? -1 : ep.level());
+                for (Node node : snapshot) {
+                    if (node == null) {
+                        out.writeInt(-1);
+                        continue;
+                    }
+                    out.writeInt(node.level);
+                    for (int l = 0; l <= node.level; l++) {
+                        int[] neighbors = node.neighbors.get(l);
+                        out.writeInt(neighbors.length);
+                        for (int neighbor : neighbors) {
+                            out.writeInt(neighbor);
+                        }
+                    }
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            insertLock.unlock();
+        }
+    }
+
+    /**
+     * 读取图文件；文件不存在或参数 (M、efConstruction、维度) 对不上时返回 null (由上层重建)
+     */
+    public static HnswIndex load(Path file, Params params, int dimension, VectorReader reader, boolean simd) throws IOException {
+        if (!Files.exists(file)) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || in.readInt() != params.m() || in.readInt() != params.efConstruction() || in.readInt() != dimension) {
+                return null;
+            }
+            HnswIndex index = new HnswIndex(params, dimension, reader, simd);
+            int length = in.readInt();
+            int entryNode = in.readInt();
+            int entryLevel = in.readInt();
+            Node[] loaded = new Node[Math.max(length, 1024)];
+            int count = 0;
+            for (int i = 0; i < length; i++) {
+                int level = in.readInt();
+                if (level < 0) continue;
+                Node node = new Node(level);
+                for (int l = 0; l <= level; l++) {
+                    int[] neighbors = new int[in.readInt()];
+                    for (int j = 0; j < neighbors.length; j++) {
+                        neighbors[j] = in.readInt();
+                    }
+                    node.neighbors.set(l, neighbors);
+                }
+                loaded[i] = node;
+                count++;
+            }
+            index.nodes = loaded;
+            index.size.set(count);
+            if (entryNode >= 0) {
+                index.entry.set(new EntryPoint(entryNode, entryLevel));
+            }
+            return index;
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        EntryPoint ep = entry.get();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("m", params.m());
+        result.put("efConstruction", params.efConstruction());
+        result.put("efSearch", params.efSearch());
+        result.put("nodes", size.get());
+        result.put("maxLevel", ep == null ? -1 : ep.level());
+        return result;
+    }
+}
@@ -0,0 +1,180 @@
+package com.pingyu.codehubbackend.rag.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * 智码 - 混合检索 (BM25 + 向量，倒数排名融合)
+ * 问题：纯向量检索对 "@CodeHubSecured"、"Result&lt;T&gt;"、"LocalDateTime" 这种精确标识符不敏感，
+ *       语义相近的切片经常排在真正提到这个标识符的切片前面；而且每次检索都要先调一次 Embedding。
+ * 做法：包一层真正的向量库 (delegate)，写入 / 删除同步维护一份进程内 BM25 倒排索引 ({@link Bm25Index})。
+ * 1. 混合检索：向量和 BM25 各取 topK × candidateFactor 个候选，按倒数排名融合 (RRF)：
+ *    score = Σ 1 / (rrfK + rank)，只看名次不看分数，两边的分数尺度不用对齐；
+ * 2. 纯关键词快速通道：查询里精确标识符占了 lexicalOnlyRatio 以上的字符、且这些标识符都在索引里出现过时，
+ *    只走 BM25，不调用 Embedding；BM25 一个都没命中时仍然退回混合检索；
+ * 3. 对外还是一个 VectorStore，直接交给 QuestionAnswerAdvisor 用。
+ * 说明：similarityThreshold 只作用于向量一侧 (BM25 分数没有统一的尺度)；
+ * 启动时如果 delegate 是 {@link OffHeapVectorStore} (含落盘的 mapped)，从库里已有的文档重建 BM25 索引。
+ */
+public class HybridVectorStore implements VectorStore, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(HybridVectorStore.class);
+
+    /** 初始同步时每批灌进 BM25 的文档数 */
+    private static final int SYNC_BATCH = 1000;
+
+    /**
+     * @param rrfK             RRF 平滑常数 (越大名次之间的差距越小，常用 60)
+     * @param candidateFactor  两路各取 topK 的多少倍候选参与融合
+     * @param lexicalOnlyRatio 精确标识符占查询字符的比例达到多少时只走 BM25 (大于 1 表示关闭快速通道)
+     */
+    public record Options(int rrfK, int candidateFactor, double lexicalOnlyRatio) {
+    }
+
+    private final VectorStore delegate;
+    private final Options options;
+    private final Bm25Index lexical = new Bm25Index();
+
+    private final LongAdder hybridSearches = new LongAdder();
+    private final LongAdder lexicalOnlySearches = new LongAdder();
+
+    public HybridVectorStore(VectorStore delegate, Options options) {
+        this.delegate = delegate;
+        this.options = options;
+        if (delegate instanceof OffHeapVectorStore offHeap) {
+            long start = System.nanoTime();
+            List<Document> batch = new ArrayList<>(SYNC_BATCH);
+            offHeap.forEachDocument(document -> {
+                batch.add(document);
+                if (batch.size() == SYNC_BATCH) {
+                    lexical.add(batch);
+                    batch.clear();
+                }
+            });
+            lexical.add(batch);
+            log.info("🔤 [Hybrid] BM25 索引同步完成: {} 个文档, 耗时 {} ms", lexical.size(), (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    public VectorStore getDelegate() {
+        return delegate;
+    }
+
+    // ======================================================
+    // 1. 写入 / 删除：先写向量库，成功后再同步 BM25
+    // ======================================================
+    @Override
+    public void add(List<Document> documents) {
+        delegate.add(documents);
+        lexical.add(documents);
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        delegate.delete(idList);
+        lexical.delete(idList);
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        delegate.delete(filterExpression);
+        lexical.delete(MetadataFilter.compile(filterExpression));
+    }
+
+    // ======================================================
+    // 2. 检索：快速通道 / 混合检索
+    // ======================================================
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        String query = request.getQuery();
+        Predicate<Map<String, Object>> filter = MetadataFilter.compile(request.getFilterExpression());
+        if (lexicalOnly(query)) {
+            List<Document> hits = lexical.search(query, request.getTopK(), filter);
+            if (!hits.isEmpty()) {
+                lexicalOnlySearches.increment();
+                return hits;
+            }
+        }
+        hybridSearches.increment();
+        int candidates = request.getTopK() * Math.max(1, options.candidateFactor());
+        List<Document> vector = delegate.similaritySearch(SearchRequest.from(request).topK(candidates).build());
+        List<Document> keyword = lexical.search(query, candidates, filter);
+        return fuse(vector, keyword, request.getTopK());
+    }
+
+    /** 查询是不是以精确标识符为主 (按字符数算，空白不计)，并且这些标识符索引里都有 */
+    boolean lexicalOnly(String query) {
+        if (query == null || options.lexicalOnlyRatio() > 1) return false;
+        List<String> identifiers = Bm25Index.identifiers(query);
+        if (identifiers.isEmpty()) return false;
+        int exact = identifiers.stream().mapToInt(String::length).sum();
+        long total = query.chars().filter(c -> !Character.isWhitespace(c)).count();
+        if (exact < total * options.lexicalOnlyRatio()) return false;
+        return identifiers.stream().allMatch(identifier -> lexical.documentFrequency(identifier) > 0);
+    }
+
+    /**
+     * 倒数排名融合：同一个文档在两路里的 1 / (rrfK + 名次) 相加，名次从 1 开始
+     * 两路都有的文档保留向量一侧的副本 (元数据里带 distance)
+     */
+    private List<Document> fuse(List<Document> vector, List<Document> keyword, int topK) {
+        Map<String, Document> documents = new LinkedHashMap<>();
+        Map<String, Double> scores = new LinkedHashMap<>();
+        for (List<Document> ranking : List.of(vector, keyword)) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                Document document = ranking.get(rank);
+                documents.putIfAbsent(document.getId(), document);
+                scores.merge(document.getId(), 1.0 / (options.rrfK() + rank + 1), Double::sum);
+            }
+        }
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue(Comparator.reverseOrder()))
+                .limit(topK)
+                .map(entry -> {
+                    Document document = documents.get(entry.getKey());
+                    Map<String, Object> metadata = new LinkedHashMap<>(document.getMetadata());
+                    metadata.put("rrf_score", entry.getValue());
+                    return Document.builder().id(document.getId()).text(document.getText())
+                            .metadata(metadata).score(entry.getValue()).build();
+                })
+                .toList();
+    }
+
+    /**
+     * 混合检索状态 (给运维接口用)：BM25 索引规模、两种检索路径的次数，外加底层向量库的状态
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("type", "hybrid");
+        result.put("rrfK", options.rrfK());
+        result.put("candidateFactor", options.candidateFactor());
+        result.put("lexicalOnlyRatio", options.lexicalOnlyRatio());
+        result.put("hybridSearches", hybridSearches.sum());
+        result.put("lexicalOnlySearches", lexicalOnlySearches.sum());
+        result.put("bm25", lexical.snapshot());
+        result.put("vector", delegate instanceof OffHeapVectorStore offHeap ? offHeap.snapshot()
+                : Map.of("type", delegate.getClass().getSimpleName()));
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (delegate instanceof Closeable closeable) {
+            closeable.close();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.pingyu.codehubbackend.rag.store;
+
+import java.util.Arrays;
+
+/**
+ * int8 标量量化：每个向量按自己的最大绝对值缩放到 [-127, 127]
+ * 不需要训练，新向量来了直接编码；打分 = (query · code) × scale，点积走 {@link VectorMath#dotInt8}。
+ */
+final class Int8Quantizer extends VectorQuantizer {
+
+    private float[] scales = new float[0];
+
+    Int8Quantizer(int dimension, boolean simd) {
+        super(dimension, dimension, simd);
+    }
+
+    @Override
+    boolean ready() {
+        return true;
+    }
+
+    @Override
+    void ensureCapacity(int slot) {
+        super.ensureCapacity(slot);
+        if (slot >= scales.length) {
+            scales = Arrays.copyOf(scales, Math.max(slot + 1, scales.length * 2));
+        }
+    }
+
+    @Override
+    void encode(int slot, float[] vector) {
+        ensureCapacity(slot);
+        float maxAbs = 0f;
+        for (int i = 0; i < dimension; i++) {
+            maxAbs = Math.max(maxAbs, Math.abs(vector[i]));
+        }
+        float scale = maxAbs == 0f ? 1f : maxAbs / 127f;
+        byte[] page = page(slot);
+        int offset = offset(slot);
+        for (int i = 0; i < dimension; i++) {
+            page[offset + i] = (byte) Math.round(vector[i] / scale);
+        }
+        scales[slot] = scale;
+    }
+
+    @Override
+    Scorer scorer(float[] query) {
+        return slot -> VectorMath.dotInt8(query, page(slot), offset(slot), dimension, simd) * scales[slot];
+    }
+
+    @Override
+    long extraBytes() {
+        return (long) scales.length * Float.BYTES;
+    }
+}
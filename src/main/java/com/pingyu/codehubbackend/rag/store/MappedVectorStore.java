@@ -0,0 +1,170 @@
+package com.pingyu.codehubbackend.rag.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.embedding.EmbeddingModel;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 智码 - 持久化向量库 (内存映射)
+ * 问题：SimpleVectorStore 是纯内存的，重启后所有 Embedding 都要重新花钱算一遍。
+ * 做法：
+ * 1. 向量 (归一化后) 写进定长槽位文件 vectors.bin，启动时直接 mmap，不把向量拷到堆上；
+ * 2. ID / 正文 / 元数据写进追加日志 documents.log，启动时回放 (只有文本在堆上)；
+ * 3. 新增文档追加写入，删除只记一条 DELETE 并回收槽位，日志里垃圾太多时启动时压缩一次；
+ * 4. 开了 HNSW 时图结构在关闭时存到 hnsw.graph，启动时加载后只补插图里缺的槽位 (异常退出也不用重新 Embedding)；
+ * 5. 开了量化时常驻内存的只有压缩码，原始向量留在映射文件里只给精排读；PQ 码本和压缩码在关闭时存到 pq.codes。
+ * 检索逻辑继承自 {@link OffHeapVectorStore}，相似度语义和 SimpleVectorStore 一致 (余弦相似度，score + metadata.distance)。
+ */
+public class MappedVectorStore extends OffHeapVectorStore implements PersistentVectorStore {
+
+    private static final Logger log = LoggerFactory.getLogger(MappedVectorStore.class);
+
+    static final String VECTORS_FILE = "vectors.bin";
+    static final String DOCUMENTS_FILE = "documents.log";
+    static final String GRAPH_FILE = "hnsw.graph";
+    static final String CODES_FILE = "pq.codes";
+    /** 日志记录数超过存活文档的这个倍数时压缩 */
+    private static final int COMPACT_RATIO = 2;
+    private static final int COMPACT_MIN_RECORDS = 1000;
+
+    private final Path directory;
+    private final DocumentLog documentLog;
+    private final long loadMillis;
+
+    public MappedVectorStore(EmbeddingModel embeddingModel, Path directory, Options options) {
+        super(embeddingModel, options);
+        this.directory = directory.toAbsolutePath().normalize();
+        this.documentLog = new DocumentLog(this.directory.resolve(DOCUMENTS_FILE));
+        long start = System.currentTimeMillis();
+        try {
+            vectors = VectorSegments.open(this.directory.resolve(VECTORS_FILE));
+            documentLog.open(new DocumentLog.Replay() {
+                @Override
+                public void add(int slot, String id, String text, Map<String, Object> metadata) {
+                    put(slot, new StoredDocument(id, text, metadata));
+                }
+
+                @Override
+                public void delete(String id) {
+                    remove(id);
+                }
+            });
+            if (vectors != null && options.hnsw() != null) {
+                attachIndex(loadGraph());
+            }
+            if (vectors != null && options.quantization() != null) {
+                attachQuantizer(loadCodes());
+            }
+            rebuildFreeSlots();
+            if (documentLog.records() > (long) COMPACT_RATIO * slotById.size() + COMPACT_MIN_RECORDS) {
+                compact();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("打开向量库失败: " + this.directory, e);
+        }
+        this.loadMillis = System.currentTimeMillis() - start;
+        log.info("💾 [MappedVectorStore] 已加载 {} 个文档 (映射 {} MB), 耗时 {}ms: {}",
+                slotById.size(), vectors == null ? 0 : vectors.offHeapBytes() / (1024 * 1024), loadMillis, this.directory);
+    }
+
+    // ======================================================
+    // 落盘：向量写映射文件，其余写追加日志
+    // ======================================================
+    @Override
+    VectorSegments createSegments(int dimension) throws IOException {
+        return VectorSegments.create(directory.resolve(VECTORS_FILE), dimension);
+    }
+
+    @Override
+    void onAdded(int slot, StoredDocument doc) throws IOException {
+        documentLog.appendAdd(slot, doc.id(), doc.text(), doc.metadata());
+    }
+
+    @Override
+    void onDeleted(String id) throws IOException {
+        documentLog.appendDelete(id);
+    }
+
+    @Override
+    void onBatchWritten() throws IOException {
+        documentLog.flush();
+    }
+
+    /**
+     * 读取 HNSW 图，读完就删：图的节点就是槽位号，异常退出后槽位可能已经被别的文档复用，
+     * 旧图会把新文档当成 "已在图里" 跳过补插，召回悄悄下降；只有正常关闭时重新写出的图才可信
+     */
+    private HnswIndex loadGraph() throws IOException {
+        Path file = directory.resolve(GRAPH_FILE);
+        HnswIndex loaded = HnswIndex.load(file, options.hnsw(), vectors.dimension(),
+                (slot, dst) -> vectors.read(slot, dst), options.simd());
+        Files.deleteIfExists(file);
+        return loaded;
+    }
+
+    /**
+     * 读取 PQ 码本和压缩码，读完就删：压缩码和槽位一一对应，异常退出时文件里的可能已经过期，
+     * 只有正常关闭时重新写出的才可信 (int8 不需要训练，启动时直接重新编码)
+     */
+    private VectorQuantizer loadCodes() throws IOException {
+        if (options.quantization().type() != VectorQuantizer.Type.PQ) return null;
+        Path file = directory.resolve(CODES_FILE);
+        VectorQuantizer loaded = ProductQuantizer.load(file, vectors.dimension(), options.quantization().pqSubDimension(), options.simd());
+        Files.deleteIfExists(file);
+        return loaded;
+    }
+
+    private void compact() throws IOException {
+        long before = documentLog.records();
+        List<DocumentLog.Entry> live = new ArrayList<>(slotById.size());
+        for (int slot = 0; slot < slots.size(); slot++) {
+            StoredDocument doc = slots.get(slot);
+            if (doc != null) {
+                live.add(new DocumentLog.Entry(slot, doc.id(), doc.text(), doc.metadata()));
+            }
+        }
+        documentLog.compact(live);
+        log.info("🧹 [MappedVectorStore] 文档日志压缩: {} -> {} 条记录", before, live.size());
+    }
+
+    @Override
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = super.snapshot();
+        result.put("type", "mapped");
+        result.put("directory", directory.toString());
+        result.put("logRecords", documentLog.records());
+        result.put("loadMillis", loadMillis);
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            documentLog.close();
+            HnswIndex current = index;
+            if (current != null) {
+                current.save(directory.resolve(GRAPH_FILE));
+            }
+            if (quantizer instanceof ProductQuantizer pq) {
+                pq.save(directory.resolve(CODES_FILE));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        super.close();
+    }
+}
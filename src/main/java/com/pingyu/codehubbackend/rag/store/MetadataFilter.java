@@ -0,0 +1,35 @@
+package com.pingyu.codehubbackend.rag.store;
+
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.converter.SimpleVectorStoreFilterExpressionConverter;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * 元数据过滤 (和 SimpleVectorStore 同一套语义)
+ * filterExpression -> SpEL，对每个文档的 metadata 求值。
+ */
+final class MetadataFilter {
+
+    private static final SimpleVectorStoreFilterExpressionConverter CONVERTER = new SimpleVectorStoreFilterExpressionConverter();
+    private static final SpelExpressionParser PARSER = new SpelExpressionParser();
+
+    private MetadataFilter() {
+    }
+
+    static Predicate<Map<String, Object>> compile(Filter.Expression expression) {
+        if (expression == null) {
+            return metadata -> true;
+        }
+        Expression spel = PARSER.parseExpression(CONVERTER.convertExpression(expression));
+        return metadata -> {
+            StandardEvaluationContext context = new StandardEvaluationContext();
+            context.setVariable("metadata", metadata);
+            return Boolean.TRUE.equals(spel.getValue(context, Boolean.class));
+        };
+    }
+}
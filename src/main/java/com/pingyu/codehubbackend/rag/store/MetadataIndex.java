@@ -0,0 +1,264 @@
+package com.pingyu.codehubbackend.rag.store;
+
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 元数据倒排索引 (key -> value -> 槽位集合)
+ * 带 filterExpression 的检索先把过滤条件解析成候选槽位集合，相似度只在候选上算，
+ * 过滤越苛刻越快 (代价和命中数成正比，而不是和语料总量成正比)。
+ * 1. 解析结果是「超集」：候选上仍然会跑一遍 {@link MetadataFilter} 的精确判断，所以语义和 SimpleVectorStore 完全一致；
+ *    解析不了的条件 (NOT、!=、NIN、非标量值) 返回 null，表示不缩小范围；
+ *    SpEL 里 null 比任何值都小，没有这个 key 的文档满足 LT / LTE，所以另外记一份全部槽位，范围条件把它们补进候选；
+ * 2. 只索引标量值 (字符串、布尔、数字)，数字统一成 Long / Double，和 SpEL 比较时的数值提升一致；
+ *    其他类型的值记在该 key 的 unindexed 里，任何条件都把它们算进候选；
+ * 3. 倒排表小的时候是有序 int[]，大了转成 BitSet (类似 Roaring 的思路，省得每个低频值都占一整张位图)；
+ * 4. 本类不做并发控制，由上层向量库的读写锁保证。
+ */
+final class MetadataIndex {
+
+    /** 倒排表超过这个长度转成 BitSet (4096 个 int = 16KB，和 13 万个槽位的位图一样大) */
+    private static final int ARRAY_LIMIT = 4096;
+
+    private static final class KeyPostings {
+        final Map<Object, Postings> values = new HashMap<>();
+        final Postings unindexed = new Postings();
+    }
+
+    private final Map<String, KeyPostings> keys = new HashMap<>();
+    /** 所有已索引的槽位 (LT / LTE 要补上没有这个 key 的文档) */
+    private final BitSet allSlots = new BitSet();
+
+    // ======================================================
+    // 1. 维护 (写锁内调用)
+    // ======================================================
+    void add(int slot, Map<String, Object> metadata) {
+        allSlots.set(slot);
+        metadata.forEach((key, value) -> {
+            KeyPostings postings = keys.computeIfAbsent(key, k -> new KeyPostings());
+            Object normalized = normalize(value);
+            (normalized == null ? postings.unindexed : postings.values.computeIfAbsent(normalized, v -> new Postings())).add(slot);
+        });
+    }
+
+    void remove(int slot, Map<String, Object> metadata) {
+        allSlots.clear(slot);
+        metadata.forEach((key, value) -> {
+            KeyPostings postings = keys.get(key);
+            if (postings == null) return;
+            Object normalized = normalize(value);
+            if (normalized == null) {
+                postings.unindexed.remove(slot);
+            } else {
+                Postings slots = postings.values.get(normalized);
+                if (slots != null) {
+                    slots.remove(slot);
+                    if (slots.isEmpty()) {
+                        postings.values.remove(normalized);
+                    }
+                }
+            }
+            if (postings.values.isEmpty() && postings.unindexed.isEmpty()) {
+                keys.remove(key);
+            }
+        });
+    }
+
+    // ======================================================
+    // 2. 过滤条件 -> 候选槽位 (null 表示不缩小范围)
+    // ======================================================
+    BitSet resolve(Filter.Expression expression) {
+        if (expression == null) return null;
+        return switch (expression.type()) {
+            case AND -> {
+                BitSet left = resolveOperand(expression.left());
+                BitSet right = resolveOperand(expression.right());
+                if (left == null) yield right;
+                if (right != null) left.and(right);
+                yield left;
+            }
+            case OR -> {
+                BitSet left = resolveOperand(expression.left());
+                BitSet right = resolveOperand(expression.right());
+                if (left == null || right == null) yield null;
+                left.or(right);
+                yield left;
+            }
+            case EQ -> matchValues(expression, Collections.singletonList(value(expression)));
+            case IN -> value(expression) instanceof Collection<?> values ? matchValues(expression, values) : null;
+            case GT, GTE, LT, LTE -> matchRange(expression);
+            default -> null;
+        };
+    }
+
+    private BitSet resolveOperand(Filter.Operand operand) {
+        if (operand instanceof Filter.Expression expression) return resolve(expression);
+        if (operand instanceof Filter.Group group) return resolve(group.content());
+        return null;
+    }
+
+    private BitSet matchValues(Filter.Expression expression, Collection<?> values) {
+        if (!(expression.left() instanceof Filter.Key key)) return null;
+        KeyPostings postings = keys.get(unquote(key.key()));
+        BitSet result = new BitSet();
+        if (postings == null) return result;
+        for (Object value : values) {
+            Object normalized = normalize(value);
+            if (normalized == null) return null;
+            Postings slots = postings.values.get(normalized);
+            if (slots != null) {
+                slots.orInto(result);
+            }
+        }
+        postings.unindexed.orInto(result);
+        return result;
+    }
+
+    /**
+     * 范围条件：遍历这个 key 的所有取值 (代价和取值个数成正比)，只处理数字对数字、字符串对字符串
+     * LT / LTE 时没有这个 key 的槽位 (SpEL 里是 null &lt; bound) 也算候选
+     */
+    private BitSet matchRange(Filter.Expression expression) {
+        if (!(expression.left() instanceof Filter.Key key)) return null;
+        Object bound = normalize(value(expression));
+        if (!(bound instanceof Number) && !(bound instanceof String)) return null;
+        KeyPostings postings = keys.get(unquote(key.key()));
+        boolean lower = expression.type() == Filter.ExpressionType.LT || expression.type() == Filter.ExpressionType.LTE;
+        BitSet result = new BitSet();
+        if (postings == null) {
+            if (lower) result.or(allSlots);
+            return result;
+        }
+        if (lower) {
+            // 先放全部槽位，再去掉有这个 key 的 (它们按取值逐个判断)
+            BitSet withKey = new BitSet();
+            postings.values.values().forEach(slots -> slots.orInto(withKey));
+            result.or(allSlots);
+            result.andNot(withKey);
+        }
+        postings.values.forEach((value, slots) -> {
+            int cmp;
+            if (bound instanceof Number number && value instanceof Number candidate) {
+                cmp = Double.compare(candidate.doubleValue(), number.doubleValue());
+            } else if (bound instanceof String string && value instanceof String candidate) {
+                cmp = candidate.compareTo(string);
+            } else {
+                return;
+            }
+            boolean match = switch (expression.type()) {
+                case GT -> cmp > 0;
+                case GTE -> cmp >= 0;
+                case LT -> cmp < 0;
+                default -> cmp <= 0;
+            };
+            if (match) {
+                slots.orInto(result);
+            }
+        });
+        postings.unindexed.orInto(result);
+        return result;
+    }
+
+    private static Object value(Filter.Expression expression) {
+        return expression.right() instanceof Filter.Value value ? value.value() : null;
+    }
+
+    /** 文本语法里 key 可以带引号 ('file name' == 'x') */
+    private static String unquote(String key) {
+        if (key.length() >= 2 && (key.startsWith("'") && key.endsWith("'") || key.startsWith("\"") && key.endsWith("\""))) {
+            return key.substring(1, key.length() - 1);
+        }
+        return key;
+    }
+
+    /**
+     * 可索引的值统一成 String / Boolean / Long / Double，其他返回 null
+     */
+    static Object normalize(Object value) {
+        if (value instanceof String || value instanceof Boolean) return value;
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof Float || value instanceof Double) {
+            double d = ((Number) value).doubleValue();
+            return d == Math.rint(d) && Math.abs(d) < 0x1p53 ? (Object) (long) d : (Object) d;
+        }
+        return null;
+    }
+
+    Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        Map<String, Integer> distinctValues = new LinkedHashMap<>();
+        keys.forEach((key, postings) -> distinctValues.put(key, postings.values.size()));
+        result.put("keys", keys.size());
+        result.put("distinctValues", distinctValues);
+        return result;
+    }
+
+    /**
+     * 一个取值对应的槽位集合：小的时候是有序 int[]，超过 ARRAY_LIMIT 转成 BitSet
+     */
+    static final class Postings {
+
+        private int[] slots = new int[2];
+        private int size;
+        private BitSet bits;
+
+        void add(int slot) {
+            if (bits != null) {
+                bits.set(slot);
+                return;
+            }
+            int pos = Arrays.binarySearch(slots, 0, size, slot);
+            if (pos >= 0) return;
+            pos = -pos - 1;
+            if (size == ARRAY_LIMIT) {
+                bits = new BitSet();
+                for (int i = 0; i < size; i++) {
+                    bits.set(slots[i]);
+                }
+                bits.set(slot);
+                slots = null;
+                return;
+            }
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, Math.min(ARRAY_LIMIT, size * 2));
+            }
+            System.arraycopy(slots, pos, slots, pos + 1, size - pos);
+            slots[pos] = slot;
+            size++;
+        }
+
+        void remove(int slot) {
+            if (bits != null) {
+                bits.clear(slot);
+                return;
+            }
+            int pos = Arrays.binarySearch(slots, 0, size, slot);
+            if (pos < 0) return;
+            System.arraycopy(slots, pos + 1, slots, pos, size - pos - 1);
+            size--;
+        }
+
+        boolean isEmpty() {
+            return bits != null ? bits.isEmpty() : size == 0;
+        }
+
+        void orInto(BitSet target) {
+            if (bits != null) {
+                target.or(bits);
+                return;
+            }
+            for (int i = 0; i < size; i++) {
+                target.set(slots[i]);
+            }
+        }
+    }
+}
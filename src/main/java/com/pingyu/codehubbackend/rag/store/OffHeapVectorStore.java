@@ -0,0 +1,674 @@
+package com.pingyu.codehubbackend.rag.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * 智码 - 堆外暴力检索向量库
+ * 问题：SimpleVectorStore 每个向量都是堆上的对象，检索时逐个标量算余弦，十万级切片时延迟和 GC 压力都很大。
+ * 做法：
+ * 1. 向量归一化后连续存放在堆外 ({@link VectorSegments})，检索只需要点积；
+ * 2. 点积走 Vector API，不可用时退回标量 ({@link VectorMath})；
+ * 3. Top-K 用原始类型小顶堆 ({@link TopK})，扫描过程不分配对象；
+ * 4. 槽位数超过 parallelThreshold 时按区间切分，多核并行扫描后合并。
+ * 可选 HNSW 索引 ({@link HnswIndex})：检索只走图上的一小部分节点，语料越大越划算；
+ * 图的插入在写锁之外进行，检索和插入可以同时跑。
+ * 可选向量量化 ({@link VectorQuantizer})：暴力检索先在 int8 / PQ 压缩码上粗排，只对候选读原始向量精排。
+ * 注意纯堆外时原始向量本身就常驻内存，量化只是加速粗排、不省内存；要省内存得配合 {@link MappedVectorStore}。
+ * 元数据倒排索引 ({@link MetadataIndex})：带 filterExpression 时先把过滤条件解析成候选槽位，只在候选上算相似度。
+ * 子类 {@link MappedVectorStore} 在此基础上加了落盘。
+ */
+public class OffHeapVectorStore implements VectorStore, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(OffHeapVectorStore.class);
+
+    /** 墓碑 (已删除但还在图里的节点) 超过这个比例时后台重建 HNSW */
+    private static final double REBUILD_RATIO = 0.3;
+    private static final int REBUILD_MIN_TOMBSTONES = 1000;
+    /** 过滤后的候选少于槽位数的这个比例时，直接在候选上精确扫描，不走 HNSW */
+    private static final double CANDIDATE_SCAN_RATIO = 0.1;
+
+    /**
+     * @param simd              点积是否走 Vector API
+     * @param parallelThreshold 暴力检索时超过多少槽位开始并行
+     * @param hnsw              HNSW 参数，null 表示暴力检索 (flat)
+     * @param quantization      量化参数，null 表示不量化 (只对暴力检索生效，HNSW 仍然用原始向量)
+     */
+    public record Options(boolean simd, int parallelThreshold, HnswIndex.Params hnsw, VectorQuantizer.Params quantization) {
+
+        public static Options flat(boolean simd, int parallelThreshold) {
+            return new Options(simd, parallelThreshold, null, null);
+        }
+    }
+
+    private final EmbeddingModel embeddingModel;
+    final Options options;
+    final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    VectorSegments vectors;
+    final Map<String, Integer> slotById = new HashMap<>();
+    final List<StoredDocument> slots = new ArrayList<>();
+    final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+    final MetadataIndex metadataIndex = new MetadataIndex();
+    volatile HnswIndex index;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    volatile VectorQuantizer quantizer;
+    private final AtomicBoolean training = new AtomicBoolean();
+
+    record StoredDocument(String id, String text, Map<String, Object> metadata) {}
+
+    public OffHeapVectorStore(EmbeddingModel embeddingModel, Options options) {
+        this.embeddingModel = embeddingModel;
+        this.options = options;
+    }
+
+    // ======================================================
+    // 1. 写入
+    // ======================================================
+    @Override
+    public void add(List<Document> documents) {
+        List<Document> valid = documents.stream().filter(doc -> doc.getText() != null && !doc.getText().isBlank()).toList();
+        if (valid.isEmpty()) return;
+        // Embedding 是远程调用，放在锁外
+        List<float[]> embeddings = embeddingModel.embed(valid.stream().map(Document::getText).toList());
+
+        List<Integer> written = new ArrayList<>(valid.size());
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < valid.size(); i++) {
+                Document doc = valid.get(i);
+                float[] vector = normalize(embeddings.get(i));
+                if (vectors == null) {
+                    vectors = createSegments(vector.length);
+                    if (options.hnsw() != null) {
+                        index = newIndex();
+                    }
+                    if (options.quantization() != null) {
+                        quantizer = VectorQuantizer.create(options.quantization(), vector.length, options.simd());
+                    }
+                }
+                Integer existing = slotById.get(doc.getId());
+                int slot;
+                if (existing != null && reusable(existing)) {
+                    slot = existing;
+                } else {
+                    // 已经在图里的节点不能原地换向量 (边是按旧向量连的)：旧的打墓碑，新向量换个槽位
+                    if (existing != null) {
+                        remove(doc.getId());
+                    }
+                    slot = nextFreeSlot();
+                }
+                // 先写向量再记元数据：能查到的槽位一定已经有向量
+                vectors.write(slot, vector);
+                VectorQuantizer codes = quantizer;
+                if (codes != null && codes.ready()) {
+                    codes.encode(slot, vector);
+                }
+                StoredDocument stored = new StoredDocument(doc.getId(), doc.getText(), new LinkedHashMap<>(doc.getMetadata()));
+                put(slot, stored);
+                onAdded(slot, stored);
+                written.add(slot);
+            }
+            onBatchWritten();
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入向量库失败", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        indexSlots(written);
+        maybeTrainQuantizer();
+    }
+
+    /**
+     * 把新槽位插进 HNSW：每个槽位单独拿读锁，插图期间检索照常进行
+     */
+    private void indexSlots(List<Integer> written) {
+        if (options.hnsw() == null) return;
+        float[] buffer = null;
+        for (int slot : written) {
+            lock.readLock().lock();
+            try {
+                HnswIndex current = index;
+                if (current.contains(slot) || slot >= slots.size() || slots.get(slot) == null) continue;
+                if (buffer == null) {
+                    buffer = new float[vectors.dimension()];
+                }
+                vectors.read(slot, buffer);
+                current.insert(slot, buffer);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        lock.writeLock().lock();
+        try {
+            boolean changed = false;
+            for (String id : idList) {
+                if (remove(id)) {
+                    onDeleted(id);
+                    changed = true;
+                }
+            }
+            if (changed) {
+                onBatchWritten();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("删除向量失败", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        maybeRebuildIndex();
+    }
+
+    public void delete(Filter.Expression filterExpression) {
+        Predicate<Map<String, Object>> filter = MetadataFilter.compile(filterExpression);
+        List<String> ids = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            BitSet candidates = metadataIndex.resolve(filterExpression);
+            for (int slot = nextCandidate(candidates, 0); slot >= 0 && slot < slots.size(); slot = nextCandidate(candidates, slot + 1)) {
+                StoredDocument doc = slots.get(slot);
+                if (doc != null && filter.test(doc.metadata())) {
+                    ids.add(doc.id());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        delete(ids);
+    }
+
+    // ======================================================
+    // 2. 检索
+    // ======================================================
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        float[] query = embeddingModel.embed(request.getQuery());
+        return search(query, request.getTopK(), (float) request.getSimilarityThreshold(), request.getFilterExpression());
+    }
+
+    /**
+     * 用现成的 (未归一化也行) 查询向量检索，不调用 Embedding (基准测试、混合检索复用)
+     */
+    public List<Document> search(float[] query, int topK, float threshold, Filter.Expression filterExpression) {
+        Predicate<Map<String, Object>> filter = filterExpression == null ? null : MetadataFilter.compile(filterExpression);
+        lock.readLock().lock();
+        try {
+            if (vectors == null) return List.of();
+            if (query.length != vectors.dimension()) {
+                throw new IllegalStateException("查询向量维度 " + query.length + " 与向量库维度 " + vectors.dimension() + " 不一致 (换了 Embedding 模型？)");
+            }
+            float[] normalized = normalize(query);
+            // 过滤条件先走倒排索引缩小范围 (null 表示缩小不了，扫全部槽位)
+            BitSet candidates = metadataIndex.resolve(filterExpression);
+            HnswIndex current = index;
+            if (current != null && (candidates == null || candidates.cardinality() > slots.size() * CANDIDATE_SCAN_RATIO)) {
+                List<Document> results = searchIndex(current, normalized, topK, threshold, filter);
+                // 过滤条件很苛刻时图上可能凑不满 topK，退回精确扫描
+                if (filter == null || results.size() >= topK) {
+                    return results;
+                }
+            }
+            VectorQuantizer codes = quantizer;
+            if (codes != null && codes.ready()) {
+                return searchQuantized(codes, normalized, topK, threshold, filter, candidates);
+            }
+            return toDocuments(scanAll(topK, threshold, filter, candidates, () -> exactScorer(normalized)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Document> searchIndex(HnswIndex current, float[] query, int topK, float threshold,
+                                       Predicate<Map<String, Object>> filter) {
+        HnswIndex.Hits hits = current.search(query, topK, Math.max(options.hnsw().efSearch(), topK), slot -> {
+            StoredDocument doc = slot < slots.size() ? slots.get(slot) : null;
+            return doc != null && (filter == null || filter.test(doc.metadata()));
+        });
+        List<Document> results = new ArrayList<>(hits.nodes().length);
+        for (int i = 0; i < hits.nodes().length && hits.scores()[i] >= threshold; i++) {
+            results.add(toDocument(slots.get(hits.nodes()[i]), hits.scores()[i]));
+        }
+        return results;
+    }
+
+    /**
+     * 量化检索：压缩码粗排出 topK × rerank 个候选，再读原始向量精确打分 (相似度阈值只对精确分数生效)
+     */
+    private List<Document> searchQuantized(VectorQuantizer codes, float[] query, int topK, float threshold,
+                                           Predicate<Map<String, Object>> filter, BitSet candidates) {
+        VectorQuantizer.Scorer coarse = codes.scorer(query);
+        int shortlistSize = (int) Math.min(Integer.MAX_VALUE, (long) topK * Math.max(1, options.quantization().rerank()));
+        TopK shortlist = scanAll(shortlistSize, Float.NEGATIVE_INFINITY, filter, candidates, () -> coarse);
+        int[] ranked = shortlist.drainDescending(new float[shortlist.size()]);
+        VectorQuantizer.Scorer exact = exactScorer(query);
+        TopK top = new TopK(topK);
+        for (int slot : ranked) {
+            float score = exact.score(slot);
+            if (score >= threshold && score > top.threshold()) {
+                top.offer(slot, score);
+            }
+        }
+        return toDocuments(top);
+    }
+
+    /**
+     * 扫描全部槽位 (candidates 不为 null 时只扫候选)；超过 parallelThreshold 时按区间并行，每个分片从 scorers 拿一个自己的打分器
+     */
+    private TopK scanAll(int k, float threshold, Predicate<Map<String, Object>> filter, BitSet candidates,
+                         Supplier<VectorQuantizer.Scorer> scorers) {
+        int total = slots.size();
+        if ((candidates == null ? total : candidates.cardinality()) < options.parallelThreshold()) {
+            return scan(0, total, k, threshold, filter, candidates, scorers.get());
+        }
+        int chunks = ForkJoinPool.getCommonPoolParallelism() * 4;
+        int chunkSize = (total + chunks - 1) / chunks;
+        return IntStream.range(0, chunks).parallel()
+                .mapToObj(chunk -> scan(chunk * chunkSize, Math.min(total, (chunk + 1) * chunkSize),
+                        k, threshold, filter, candidates, scorers.get()))
+                .reduce((left, right) -> {
+                    left.merge(right);
+                    return left;
+                })
+                .orElseGet(() -> new TopK(k));
+    }
+
+    private TopK scan(int from, int to, int k, float threshold, Predicate<Map<String, Object>> filter, BitSet candidates,
+                      VectorQuantizer.Scorer scorer) {
+        TopK top = new TopK(k);
+        for (int slot = nextCandidate(candidates, from); slot >= 0 && slot < to; slot = nextCandidate(candidates, slot + 1)) {
+            StoredDocument doc = slots.get(slot);
+            if (doc == null || (filter != null && !filter.test(doc.metadata()))) continue;
+            float score = scorer.score(slot);
+            if (score >= threshold && score > top.threshold()) {
+                top.offer(slot, score);
+            }
+        }
+        return top;
+    }
+
+    /** 下一个要扫描的槽位 (没有候选集合时就是 from 本身，没有了返回 -1) */
+    private static int nextCandidate(BitSet candidates, int from) {
+        return candidates == null ? from : candidates.nextSetBit(from);
+    }
+
+    /**
+     * 原始向量打分器：自带一块复用的缓冲区，堆外向量批量拷进来再点积 (不是线程安全的，每个分片一个)
+     */
+    private VectorQuantizer.Scorer exactScorer(float[] query) {
+        int dimension = vectors.dimension();
+        float[] scratch = new float[dimension];
+        return slot -> {
+            vectors.read(slot, scratch);
+            return VectorMath.dot(scratch, query, dimension, options.simd());
+        };
+    }
+
+    private List<Document> toDocuments(TopK top) {
+        float[] scores = new float[top.size()];
+        int[] ranked = top.drainDescending(scores);
+        List<Document> results = new ArrayList<>(ranked.length);
+        for (int i = 0; i < ranked.length; i++) {
+            results.add(toDocument(slots.get(ranked[i]), scores[i]));
+        }
+        return results;
+    }
+
+    private static Document toDocument(StoredDocument doc, float score) {
+        Map<String, Object> metadata = new LinkedHashMap<>(doc.metadata());
+        metadata.put("distance", 1.0f - score);
+        return Document.builder().id(doc.id()).text(doc.text()).metadata(metadata).score((double) score).build();
+    }
+
+    // ======================================================
+    // 3. 子类扩展点 (落盘，均在写锁内调用)
+    // ======================================================
+    VectorSegments createSegments(int dimension) throws IOException {
+        return VectorSegments.offHeap(dimension);
+    }
+
+    void onAdded(int slot, StoredDocument doc) throws IOException {
+    }
+
+    void onDeleted(String id) throws IOException {
+    }
+
+    /** 一批增删结束 */
+    void onBatchWritten() throws IOException {
+    }
+
+    // ======================================================
+    // 4. HNSW 索引维护
+    // ======================================================
+    HnswIndex newIndex() {
+        return new HnswIndex(options.hnsw(), vectors.dimension(), (slot, dst) -> vectors.read(slot, dst), options.simd());
+    }
+
+    /**
+     * 启动时挂上索引 (落盘的图，或 null 表示新建)，再把图里缺的存活槽位补进去；只在构造期间调用
+     */
+    void attachIndex(HnswIndex loaded) {
+        if (options.hnsw() == null || vectors == null) return;
+        long start = System.currentTimeMillis();
+        index = loaded != null ? loaded : newIndex();
+        float[] buffer = new float[vectors.dimension()];
+        int inserted = 0;
+        for (int slot = 0; slot < slots.size(); slot++) {
+            if (slots.get(slot) != null && !index.contains(slot)) {
+                vectors.read(slot, buffer);
+                index.insert(slot, buffer);
+                inserted++;
+            }
+        }
+        log.info("🕸️ [OffHeapVectorStore] HNSW 就绪: {} 个节点 ({}，补插 {} 个), 耗时 {}ms",
+                index.size(), loaded != null ? "从磁盘加载" : "重新建图", inserted, System.currentTimeMillis() - start);
+    }
+
+    private void maybeRebuildIndex() {
+        HnswIndex current = index;
+        if (current == null) return;
+        int tombstones = current.size() - size();
+        if (tombstones > Math.max(REBUILD_MIN_TOMBSTONES, current.size() * REBUILD_RATIO) && rebuilding.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("hnsw-rebuild").start(() -> {
+                try {
+                    rebuildIndex();
+                } catch (Exception e) {
+                    log.error("❌ [OffHeapVectorStore] HNSW 重建失败", e);
+                } finally {
+                    rebuilding.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * 只用存活槽位重建一张新图，期间旧图照常服务；最后在写锁内补上重建期间新增的槽位并切换
+     */
+    private void rebuildIndex() {
+        long start = System.currentTimeMillis();
+        List<Integer> live = new ArrayList<>();
+        HnswIndex fresh;
+        lock.readLock().lock();
+        try {
+            fresh = newIndex();
+            for (int slot = 0; slot < slots.size(); slot++) {
+                if (slots.get(slot) != null) live.add(slot);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        float[] buffer = new float[vectors.dimension()];
+        for (int slot : live) {
+            lock.readLock().lock();
+            try {
+                if (slots.get(slot) != null) {
+                    vectors.read(slot, buffer);
+                    fresh.insert(slot, buffer);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            for (int slot = 0; slot < slots.size(); slot++) {
+                if (slots.get(slot) != null && !fresh.contains(slot)) {
+                    vectors.read(slot, buffer);
+                    fresh.insert(slot, buffer);
+                }
+            }
+            index = fresh;
+            rebuildFreeSlots();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("🕸️ [OffHeapVectorStore] HNSW 重建完成: {} 个节点, 耗时 {}ms", fresh.size(), System.currentTimeMillis() - start);
+    }
+
+    // ======================================================
+    // 5. 量化
+    // ======================================================
+    /**
+     * 启动时挂上量化器 (落盘的 PQ 码本 + 压缩码，或 null 表示新建)，再编码还没有压缩码的存活槽位；只在构造期间调用
+     */
+    void attachQuantizer(VectorQuantizer loaded) {
+        if (options.quantization() == null || vectors == null) return;
+        long start = System.currentTimeMillis();
+        VectorQuantizer codes = loaded != null ? loaded : VectorQuantizer.create(options.quantization(), vectors.dimension(), options.simd());
+        // 构造期间没有并发，够数就直接同步训练
+        if (codes instanceof ProductQuantizer pq && !pq.ready() && slotById.size() >= ProductQuantizer.MIN_TRAINING_VECTORS) {
+            pq.install(pq.train(sampleVectors()));
+        }
+        int encoded = 0;
+        if (codes.ready()) {
+            encoded = Math.max(0, slots.size() - codes.encodedSlots());
+            codes.encodeAll(codes.encodedSlots(), slots.size(), slot -> slots.get(slot) != null, vectors::read);
+        }
+        quantizer = codes;
+        log.info("🗜️ [OffHeapVectorStore] 量化就绪: {} ({}，编码 {} 个槽位), 耗时 {}ms", options.quantization().type(),
+                loaded != null ? "从磁盘加载" : codes.ready() ? "重新编码" : "等待训练", encoded, System.currentTimeMillis() - start);
+    }
+
+    private void maybeTrainQuantizer() {
+        if (!(quantizer instanceof ProductQuantizer pq) || pq.ready()
+                || size() < ProductQuantizer.MIN_TRAINING_VECTORS || !training.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.ofVirtual().name("pq-train").start(() -> {
+            try {
+                trainQuantizer(pq);
+            } catch (Exception e) {
+                log.error("❌ [OffHeapVectorStore] PQ 码本训练失败", e);
+            } finally {
+                training.set(false);
+            }
+        });
+    }
+
+    /**
+     * 采样 + k-means 在锁外进行 (期间检索照常走原始向量)，最后在写锁内装上码本并编码所有存活槽位
+     */
+    private void trainQuantizer(ProductQuantizer pq) {
+        long start = System.currentTimeMillis();
+        float[][] sample;
+        lock.readLock().lock();
+        try {
+            sample = sampleVectors();
+        } finally {
+            lock.readLock().unlock();
+        }
+        float[][] codebooks = pq.train(sample);
+        lock.writeLock().lock();
+        try {
+            pq.install(codebooks);
+            pq.encodeAll(0, slots.size(), slot -> slots.get(slot) != null, vectors::read);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("🗜️ [OffHeapVectorStore] PQ 码本训练完成: {} 个样本, {} 字节/向量, 耗时 {}ms",
+                sample.length, pq.codeBytes, System.currentTimeMillis() - start);
+    }
+
+    /** 从存活槽位里随机抽样 (最多 MAX_TRAINING_VECTORS 个)，拷到堆上给 k-means 用 */
+    private float[][] sampleVectors() {
+        int[] live = IntStream.range(0, slots.size()).filter(slot -> slots.get(slot) != null).toArray();
+        int count = Math.min(live.length, ProductQuantizer.MAX_TRAINING_VECTORS);
+        SplittableRandom random = new SplittableRandom(42);
+        float[][] sample = new float[count][];
+        for (int i = 0; i < count; i++) {
+            // 部分洗牌：前 count 个就是无放回抽样
+            int pick = i + random.nextInt(live.length - i);
+            int slot = live[pick];
+            live[pick] = live[i];
+            live[i] = slot;
+            sample[i] = new float[vectors.dimension()];
+            vectors.read(slot, sample[i]);
+        }
+        return sample;
+    }
+
+    // ======================================================
+    // 6. 内部状态
+    // ======================================================
+    void put(int slot, StoredDocument doc) {
+        Integer previous = slotById.put(doc.id(), slot);
+        if (previous != null && previous != slot) {
+            unindex(previous, slots.set(previous, null));
+        }
+        while (slots.size() <= slot) {
+            slots.add(null);
+        }
+        unindex(slot, slots.set(slot, doc));
+        metadataIndex.add(slot, doc.metadata());
+    }
+
+    boolean remove(String id) {
+        Integer slot = slotById.remove(id);
+        if (slot == null) return false;
+        unindex(slot, slots.set(slot, null));
+        if (reusable(slot)) {
+            freeSlots.push(slot);
+        }
+        return true;
+    }
+
+    private void unindex(int slot, StoredDocument replaced) {
+        if (replaced != null) {
+            metadataIndex.remove(slot, replaced.metadata());
+        }
+    }
+
+    /** 槽位能否复用：还挂在 HNSW 图上的 (墓碑) 不能 */
+    private boolean reusable(int slot) {
+        HnswIndex current = index;
+        return current == null || !current.contains(slot);
+    }
+
+    private int nextFreeSlot() {
+        Integer free = freeSlots.poll();
+        return free != null ? free : slots.size();
+    }
+
+    void rebuildFreeSlots() {
+        freeSlots.clear();
+        for (int slot = 0; slot < slots.size(); slot++) {
+            if (slots.get(slot) == null && reusable(slot)) {
+                freeSlots.push(slot);
+            }
+        }
+    }
+
+    static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        if (norm == 0) return vector;
+        float scale = (float) (1.0 / Math.sqrt(norm));
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+    public boolean contains(String id) {
+        lock.readLock().lock();
+        try {
+            return slotById.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 遍历库里的所有文档 (不带向量)，给外挂的索引做初始同步 (例如 {@link HybridVectorStore} 的 BM25 索引)
+     */
+    public void forEachDocument(Consumer<Document> consumer) {
+        lock.readLock().lock();
+        try {
+            for (StoredDocument doc : slots) {
+                if (doc != null) {
+                    consumer.accept(Document.builder().id(doc.id()).text(doc.text()).metadata(new LinkedHashMap<>(doc.metadata())).build());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 向量库状态 (给运维接口用)
+     */
+    public Map<String, Object> snapshot() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("type", "offheap");
+            result.put("documents", slotById.size());
+            result.put("slots", slots.size());
+            result.put("freeSlots", freeSlots.size());
+            result.put("dimension", vectors == null ? 0 : vectors.dimension());
+            result.put("offHeapBytes", vectors == null ? 0 : vectors.offHeapBytes());
+            result.put("simd", options.simd() && VectorMath.simdAvailable());
+            result.put("parallelThreshold", options.parallelThreshold());
+            HnswIndex current = index;
+            result.put("index", current != null ? current.snapshot() : options.hnsw() == null ? "flat" : "hnsw");
+            result.put("metadataIndex", metadataIndex.snapshot());
+            VectorQuantizer codes = quantizer;
+            result.put("quantization", codes != null ? codes.snapshot(options.quantization())
+                    : options.quantization() == null ? "none" : options.quantization().type().name().toLowerCase());
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (vectors != null) {
+                vectors.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
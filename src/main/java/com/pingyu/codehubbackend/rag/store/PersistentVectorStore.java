@@ -0,0 +1,17 @@
+package com.pingyu.codehubbackend.rag.store;
+
+import org.springframework.ai.vectorstore.VectorStore;
+
+import java.nio.file.Path;
+
+/**
+ * 落盘的向量库：重启后内容还在，入库服务据此跳过没变的文件 (不再重复调用 Embedding)
+ */
+public interface PersistentVectorStore extends VectorStore {
+
+    /** 数据目录 (入库清单等附属文件也放在这里) */
+    Path getDirectory();
+
+    /** 库里是否还有这个文档 */
+    boolean contains(String id);
+}
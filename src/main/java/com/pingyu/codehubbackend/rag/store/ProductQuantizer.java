@@ -0,0 +1,236 @@
+package com.pingyu.codehubbackend.rag.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * 乘积量化 (PQ)
+ * 1. 向量切成 dimension / subDimension 个子空间，每个子空间用 k-means 聚成 256 个中心 (码本)，
+ *    一个向量编码成每个子空间最近中心的下标，每个子空间 1 字节；
+ * 2. 打分用非对称距离 (ADC)：查询时先算出查询子向量和每个中心的点积表，
+ *    每个槽位的分数就是按码查表再求和，不用解码；
+ * 3. 码本要先用样本训练，训练之前 {@link #ready()} 为 false (上层在存活文档够多时后台训练一次)。
+ */
+final class ProductQuantizer extends VectorQuantizer {
+
+    private static final int MAGIC = 0x43485051; // "CHPQ"
+    private static final int VERSION = 1;
+    static final int CENTROIDS = 256;
+    /** 存活文档达到这个数才训练 (每个中心平均十几个样本) */
+    static final int MIN_TRAINING_VECTORS = 4096;
+    /** 训练最多取这么多样本 */
+    static final int MAX_TRAINING_VECTORS = 10000;
+    private static final int ITERATIONS = 10;
+
+    private final int subDimension;
+    private final int subspaces;
+    /** 子空间 s 覆盖 [bounds[s], bounds[s + 1]) (维度除不尽时最后几个子空间略短) */
+    private final int[] bounds;
+    /** codebooks[s][c * 子空间维数 + j]，null 表示还没训练 */
+    private volatile float[][] codebooks;
+
+    ProductQuantizer(int dimension, int subDimension, boolean simd) {
+        this(dimension, subDimension, Math.max(1, dimension / Math.max(1, subDimension)), simd);
+    }
+
+    private ProductQuantizer(int dimension, int subDimension, int subspaces, boolean simd) {
+        super(dimension, subspaces, simd);
+        this.subDimension = subDimension;
+        this.subspaces = subspaces;
+        this.bounds = new int[subspaces + 1];
+        for (int s = 0; s <= subspaces; s++) {
+            bounds[s] = (int) ((long) s * dimension / subspaces);
+        }
+    }
+
+    @Override
+    boolean ready() {
+        return codebooks != null;
+    }
+
+    // ======================================================
+    // 1. 训练 (不改状态，上层拿到码本后在写锁内 install 再批量编码)
+    // ======================================================
+    float[][] train(float[][] sample) {
+        return IntStream.range(0, subspaces).parallel()
+                .mapToObj(s -> kmeans(sample, bounds[s], bounds[s + 1], 31L * s + 7))
+                .toArray(float[][]::new);
+    }
+
+    void install(float[][] trained) {
+        this.codebooks = trained;
+    }
+
+    private static float[] kmeans(float[][] sample, int from, int to, long seed) {
+        int d = to - from;
+        int n = sample.length;
+        SplittableRandom random = new SplittableRandom(seed);
+        float[] centroids = new float[CENTROIDS * d];
+        for (int c = 0; c < CENTROIDS; c++) {
+            System.arraycopy(sample[random.nextInt(n)], from, centroids, c * d, d);
+        }
+        int[] assignment = new int[n];
+        float[] sums = new float[CENTROIDS * d];
+        int[] counts = new int[CENTROIDS];
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            int changed = 0;
+            for (int i = 0; i < n; i++) {
+                int nearest = nearest(sample[i], from, centroids, d);
+                if (iteration == 0 || nearest != assignment[i]) {
+                    assignment[i] = nearest;
+                    changed++;
+                }
+            }
+            if (changed == 0) break;
+            Arrays.fill(sums, 0f);
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < n; i++) {
+                int base = assignment[i] * d;
+                for (int j = 0; j < d; j++) {
+                    sums[base + j] += sample[i][from + j];
+                }
+                counts[assignment[i]]++;
+            }
+            for (int c = 0; c < CENTROIDS; c++) {
+                if (counts[c] == 0) {
+                    // 空簇：随便拉一个样本过来，避免码字浪费
+                    System.arraycopy(sample[random.nextInt(n)], from, centroids, c * d, d);
+                    continue;
+                }
+                for (int j = 0; j < d; j++) {
+                    centroids[c * d + j] = sums[c * d + j] / counts[c];
+                }
+            }
+        }
+        return centroids;
+    }
+
+    private static int nearest(float[] vector, int from, float[] centroids, int d) {
+        int best = 0;
+        float bestDistance = Float.MAX_VALUE;
+        for (int c = 0; c < CENTROIDS; c++) {
+            float distance = 0f;
+            int base = c * d;
+            for (int j = 0; j < d; j++) {
+                float diff = vector[from + j] - centroids[base + j];
+                distance += diff * diff;
+            }
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    // ======================================================
+    // 2. 编码 / 打分
+    // ======================================================
+    @Override
+    void encode(int slot, float[] vector) {
+        ensureCapacity(slot);
+        float[][] books = codebooks;
+        byte[] page = page(slot);
+        int offset = offset(slot);
+        for (int s = 0; s < subspaces; s++) {
+            page[offset + s] = (byte) nearest(vector, bounds[s], books[s], bounds[s + 1] - bounds[s]);
+        }
+    }
+
+    @Override
+    Scorer scorer(float[] query) {
+        float[][] books = codebooks;
+        // 点积表：table[s * 256 + c] = query 的第 s 段 · 第 s 个码本的第 c 个中心
+        float[] table = new float[subspaces * CENTROIDS];
+        for (int s = 0; s < subspaces; s++) {
+            int from = bounds[s];
+            int d = bounds[s + 1] - from;
+            for (int c = 0; c < CENTROIDS; c++) {
+                float dot = 0f;
+                for (int j = 0; j < d; j++) {
+                    dot += query[from + j] * books[s][c * d + j];
+                }
+                table[s * CENTROIDS + c] = dot;
+            }
+        }
+        return slot -> {
+            byte[] page = page(slot);
+            int offset = offset(slot);
+            float score = 0f;
+            for (int s = 0; s < subspaces; s++) {
+                score += table[s * CENTROIDS + (page[offset + s] & 0xFF)];
+            }
+            return score;
+        };
+    }
+
+    @Override
+    long extraBytes() {
+        return codebooks == null ? 0 : (long) CENTROIDS * dimension * Float.BYTES;
+    }
+
+    // ======================================================
+    // 3. 持久化 (码本 + 压缩码)
+    // ======================================================
+    void save(Path file) throws IOException {
+        float[][] books = codebooks;
+        if (books == null) return;
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(dimension);
+            out.writeInt(subDimension);
+            for (float[] book : books) {
+                for (float value : book) {
+                    out.writeFloat(value);
+                }
+            }
+            int count = encodedSlots();
+            out.writeInt(count);
+            for (int slot = 0; slot < count; slot++) {
+                out.write(page(slot), offset(slot), codeBytes);
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 读取码本和压缩码；文件不存在或维度、子空间维数对不上时返回 null
+     */
+    static ProductQuantizer load(Path file, int dimension, int subDimension, boolean simd) throws IOException {
+        if (!Files.exists(file)) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || in.readInt() != dimension || in.readInt() != subDimension) {
+                return null;
+            }
+            ProductQuantizer quantizer = new ProductQuantizer(dimension, subDimension, simd);
+            float[][] books = new float[quantizer.subspaces][];
+            for (int s = 0; s < quantizer.subspaces; s++) {
+                books[s] = new float[CENTROIDS * (quantizer.bounds[s + 1] - quantizer.bounds[s])];
+                for (int i = 0; i < books[s].length; i++) {
+                    books[s][i] = in.readFloat();
+                }
+            }
+            quantizer.install(books);
+            int count = in.readInt();
+            if (count > 0) {
+                quantizer.ensureCapacity(count - 1);
+            }
+            for (int slot = 0; slot < count; slot++) {
+                in.readFully(quantizer.page(slot), quantizer.offset(slot), quantizer.codeBytes);
+            }
+            return quantizer;
+        }
+    }
+}
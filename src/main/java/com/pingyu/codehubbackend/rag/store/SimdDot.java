@@ -0,0 +1,62 @@
+package com.pingyu.codehubbackend.rag.store;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API 点积 (只能经由 {@link VectorMath} 调用，它负责判断模块是否可用)
+ */
+final class SimdDot {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+    /** 和 float 同样 lane 数的 byte 形状 (int8 解码用)；最小只有 64 位，lane 数不足 8 时不支持 */
+    private static final VectorSpecies<Byte> BYTE_SPECIES = SPECIES.length() >= 8
+            ? VectorSpecies.of(byte.class, VectorShape.forBitSize(SPECIES.length() * Byte.SIZE)) : null;
+
+    private SimdDot() {
+    }
+
+    static int lanes() {
+        return SPECIES.length();
+    }
+
+    static float dot(float[] a, float[] b, int length) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, i);
+            FloatVector vb = FloatVector.fromArray(SPECIES, b, i);
+            acc = va.fma(vb, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    static boolean int8Supported() {
+        return BYTE_SPECIES != null;
+    }
+
+    /**
+     * query · codes[offset, offset + length)：int8 码按 lane 扩成 float 再 FMA
+     */
+    static float dotInt8(float[] query, byte[] codes, int offset, int length) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            FloatVector vc = (FloatVector) ByteVector.fromArray(BYTE_SPECIES, codes, offset + i)
+                    .convertShape(VectorOperators.B2F, SPECIES, 0);
+            acc = FloatVector.fromArray(SPECIES, query, i).fma(vc, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += query[i] * codes[offset + i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,93 @@
+package com.pingyu.codehubbackend.rag.store;
+
+/**
+ * 定长 Top-K (原始类型小顶堆)
+ * 检索时每个候选都要进一次堆，用 int[]/float[] 代替 PriorityQueue&lt;对象&gt;，扫描全程不分配对象。
+ */
+final class TopK {
+
+    private final int k;
+    private final int[] ids;
+    private final float[] scores;
+    private int size;
+
+    TopK(int k) {
+        this.k = Math.max(1, k);
+        this.ids = new int[this.k];
+        this.scores = new float[this.k];
+    }
+
+    /** 当前入堆门槛 (堆没满时为负无穷) */
+    float threshold() {
+        return size < k ? Float.NEGATIVE_INFINITY : scores[0];
+    }
+
+    void offer(int id, float score) {
+        if (size < k) {
+            ids[size] = id;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (score > scores[0]) {
+            ids[0] = id;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    /** 合并另一个分片的结果 (并行扫描用) */
+    void merge(TopK other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.ids[i], other.scores[i]);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 按分数从高到低取出 (会清空堆)：返回 id，分数写进 scoresOut
+     */
+    int[] drainDescending(float[] scoresOut) {
+        int n = size;
+        int[] result = new int[n];
+        for (int i = n - 1; i >= 0; i--) {
+            result[i] = ids[0];
+            scoresOut[i] = scores[0];
+            size--;
+            ids[0] = ids[size];
+            scores[0] = scores[size];
+            siftDown(0);
+        }
+        return result;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (scores[parent] <= scores[i]) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) break;
+            int smallest = left + 1 < size && scores[left + 1] < scores[left] ? left + 1 : left;
+            if (scores[i] <= scores[smallest]) break;
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        float score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+}
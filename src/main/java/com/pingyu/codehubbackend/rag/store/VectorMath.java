@@ -0,0 +1,84 @@
+package com.pingyu.codehubbackend.rag.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 向量点积 (检索的热点循环)
+ * JVM 带了 --add-modules jdk.incubator.vector 时走 SIMD ({@link SimdDot})，否则退回展开 4 路的标量循环。
+ * SimdDot 只在探测成功后才会被加载，没有这个模块时不会 NoClassDefFoundError。
+ */
+public final class VectorMath {
+
+    private static final Logger log = LoggerFactory.getLogger(VectorMath.class);
+
+    private static final boolean SIMD_AVAILABLE = detectSimd();
+
+    private VectorMath() {
+    }
+
+    private static boolean detectSimd() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            log.info("🧮 [VectorMath] 未启用 jdk.incubator.vector，使用标量点积");
+            return false;
+        }
+        try {
+            SimdDot.dot(new float[16], new float[16], 16);
+            log.info("🧮 [VectorMath] 使用 Vector API 点积 (每次 {} 个 float)", SimdDot.lanes());
+            return true;
+        } catch (Throwable e) {
+            log.warn("⚠️ [VectorMath] Vector API 不可用，使用标量点积: {}", e.toString());
+            return false;
+        }
+    }
+
+    public static boolean simdAvailable() {
+        return SIMD_AVAILABLE;
+    }
+
+    /**
+     * a·b (长度取 length)；simd=false 或不可用时走标量
+     */
+    public static float dot(float[] a, float[] b, int length, boolean simd) {
+        return simd && SIMD_AVAILABLE ? SimdDot.dot(a, b, length) : dotScalar(a, b, length);
+    }
+
+    static float dotScalar(float[] a, float[] b, int length) {
+        // 4 个独立累加器，打断加法的依赖链
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int i = 0;
+        for (int bound = length & ~3; i < bound; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += a[i] * b[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * query · codes[offset, offset + length) (int8 量化码)
+     */
+    public static float dotInt8(float[] query, byte[] codes, int offset, int length, boolean simd) {
+        return simd && SIMD_AVAILABLE && SimdDot.int8Supported()
+                ? SimdDot.dotInt8(query, codes, offset, length) : dotInt8Scalar(query, codes, offset, length);
+    }
+
+    static float dotInt8Scalar(float[] query, byte[] codes, int offset, int length) {
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int i = 0;
+        for (int bound = length & ~3; i < bound; i += 4) {
+            s0 += query[i] * codes[offset + i];
+            s1 += query[i + 1] * codes[offset + i + 1];
+            s2 += query[i + 2] * codes[offset + i + 2];
+            s3 += query[i + 3] * codes[offset + i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += query[i] * codes[offset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+}
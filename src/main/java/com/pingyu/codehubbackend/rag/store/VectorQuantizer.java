@@ -0,0 +1,129 @@
+package com.pingyu.codehubbackend.rag.store;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * 向量量化 (压缩码 + 精排)
+ * 1536 维 float 每个切片要 6KB，单机能放的切片数就卡在这里。
+ * 量化后检索分两步：先在压缩码上给所有槽位粗排，取 topK × rerank 个候选，
+ * 再读原始向量 (映射文件 / 堆外) 精确打分 —— 原始向量只有候选会被访问，常驻内存的只有压缩码。
+ * 1. {@link Int8Quantizer}：每维 1 字节 + 每个向量一个缩放系数，约 4 倍压缩，不需要训练；
+ * 2. {@link ProductQuantizer}：切成子空间各自聚类成 256 个中心，每个子空间 1 字节，压缩比由子空间维数决定 (4 维 = 16 倍)，需要先训练码本。
+ * 压缩码按槽位号分页存在堆上，并发由上层向量库的读写锁保证 (写锁内编码，读锁内打分)。
+ */
+public abstract class VectorQuantizer {
+
+    public enum Type { INT8, PQ }
+
+    /**
+     * @param type           量化方式
+     * @param pqSubDimension PQ 每个子空间的维数 (码长 = 维度 / pqSubDimension 字节)
+     * @param rerank         粗排候选数 = topK × rerank，越大召回越高、精排读的原始向量越多
+     */
+    public record Params(Type type, int pqSubDimension, int rerank) {}
+
+    /** 单个槽位的粗排分数 (查询向量的预处理在创建时做完，可被多个扫描线程共享) */
+    @FunctionalInterface
+    interface Scorer {
+        float score(int slot);
+    }
+
+    private static final int PAGE_SLOTS = 4096;
+
+    final int dimension;
+    final int codeBytes;
+    final boolean simd;
+    private byte[][] pages = new byte[0][];
+    /** 编码过的最大槽位 + 1 */
+    private int encodedSlots;
+
+    VectorQuantizer(int dimension, int codeBytes, boolean simd) {
+        this.dimension = dimension;
+        this.codeBytes = codeBytes;
+        this.simd = simd;
+    }
+
+    static VectorQuantizer create(Params params, int dimension, boolean simd) {
+        return switch (params.type()) {
+            case INT8 -> new Int8Quantizer(dimension, simd);
+            case PQ -> new ProductQuantizer(dimension, params.pqSubDimension(), simd);
+        };
+    }
+
+    /** 能否编码 / 打分 (PQ 训练完码本之前为 false，检索走原始向量) */
+    abstract boolean ready();
+
+    /** 编码一个归一化向量 (写锁内调用) */
+    abstract void encode(int slot, float[] vector);
+
+    abstract Scorer scorer(float[] query);
+
+    /** 除压缩码以外的堆占用 (缩放系数、码本) */
+    abstract long extraBytes();
+
+    /**
+     * 批量编码 [from, to) 中的存活槽位，按区间并行 (写锁内调用，先一次性扩好页，编码时不再扩容)
+     */
+    void encodeAll(int from, int to, IntPredicate live, HnswIndex.VectorReader reader) {
+        if (from >= to) return;
+        ensureCapacity(to - 1);
+        int chunks = Math.max(1, (to - from) / PAGE_SLOTS + 1);
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            float[] buffer = new float[dimension];
+            int end = Math.min(to, from + (chunk + 1) * PAGE_SLOTS);
+            for (int slot = from + chunk * PAGE_SLOTS; slot < end; slot++) {
+                if (live.test(slot)) {
+                    reader.read(slot, buffer);
+                    encode(slot, buffer);
+                }
+            }
+        });
+    }
+
+    // ======================================================
+    // 压缩码分页存储
+    // ======================================================
+    void ensureCapacity(int slot) {
+        int page = slot / PAGE_SLOTS;
+        if (page >= pages.length) {
+            int oldLength = pages.length;
+            pages = Arrays.copyOf(pages, Math.max(page + 1, oldLength * 2));
+            for (int i = oldLength; i < pages.length; i++) {
+                pages[i] = new byte[PAGE_SLOTS * codeBytes];
+            }
+        }
+        encodedSlots = Math.max(encodedSlots, slot + 1);
+    }
+
+    final byte[] page(int slot) {
+        return pages[slot / PAGE_SLOTS];
+    }
+
+    final int offset(int slot) {
+        return (slot % PAGE_SLOTS) * codeBytes;
+    }
+
+    int encodedSlots() {
+        return encodedSlots;
+    }
+
+    /** 常驻堆上的字节数 */
+    long heapBytes() {
+        return (long) pages.length * PAGE_SLOTS * codeBytes + extraBytes();
+    }
+
+    Map<String, Object> snapshot(Params params) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("type", params.type().name().toLowerCase());
+        result.put("ready", ready());
+        result.put("bytesPerVector", codeBytes);
+        result.put("compression", String.format("%.1fx", (double) dimension * Float.BYTES / codeBytes));
+        result.put("heapBytes", heapBytes());
+        result.put("rerank", params.rerank());
+        return result;
+    }
+}
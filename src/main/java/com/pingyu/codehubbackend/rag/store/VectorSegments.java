@@ -0,0 +1,169 @@
+package com.pingyu.codehubbackend.rag.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 定长向量槽位 (堆外存储)
+ * 两种后端：{@link #create}/{@link #open} 是内存映射文件，{@link #offHeap} 是纯内存的 DirectByteBuffer。
+ * 文件格式 (小端)：
+ * <pre>
+ * [0, 64)  头部: magic "CHVS" | version | dimension | slotsPerSegment | 保留
+ * [64, ..) 槽位: 每个槽位 dimension 个 float，按段 (segment) 分块映射
+ * </pre>
+ * 1. 向量只存在映射区里 (页缓存)，不拷贝到堆上，重启时只需要 map 一下；
+ * 2. 单个 MappedByteBuffer 最大 2GB，所以按段映射，写到新段时再扩展文件；
+ * 3. 本类不做并发控制，由上层向量库的读写锁保证 (并发读是安全的：只用绝对位置的 get)。
+ */
+public class VectorSegments implements Closeable {
+
+    static final int MAGIC = 0x43485653; // "CHVS"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+    /** 每段的目标大小 (1536 维时约 1 万个向量一段) */
+    private static final long SEGMENT_TARGET_BYTES = 64L * 1024 * 1024;
+
+    /** 纯堆外模式下为 null */
+    private final FileChannel channel;
+    private final int dimension;
+    private final int slotsPerSegment;
+    private final long segmentBytes;
+
+    private final List<MappedByteBuffer> mapped = new ArrayList<>();
+    /** 每段一个 FloatBuffer 视图，段内向量连续存放 */
+    private final List<FloatBuffer> segments = new ArrayList<>();
+
+    private VectorSegments(FileChannel channel, int dimension, int slotsPerSegment) {
+        this.channel = channel;
+        this.dimension = dimension;
+        this.slotsPerSegment = slotsPerSegment;
+        this.segmentBytes = (long) slotsPerSegment * dimension * Float.BYTES;
+    }
+
+    /**
+     * 打开已有的向量文件 (不存在时返回 null，等第一次写入知道维度后再 {@link #create})
+     */
+    public static VectorSegments open(Path file) throws IOException {
+        if (!Files.exists(file) || Files.size(file) < HEADER_BYTES) {
+            return null;
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException("不是向量文件 (magic 不匹配): " + file);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("不支持的向量文件版本 " + version + ": " + file);
+            }
+            VectorSegments segments = new VectorSegments(channel, header.getInt(), header.getInt());
+            long dataBytes = channel.size() - HEADER_BYTES;
+            long count = (dataBytes + segments.segmentBytes - 1) / segments.segmentBytes;
+            for (int i = 0; i < count; i++) {
+                segments.mapSegment(i);
+            }
+            return segments;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 新建向量文件并写入头部
+     */
+    public static VectorSegments create(Path file, int dimension) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        int slotsPerSegment = (int) Math.max(1024, SEGMENT_TARGET_BYTES / ((long) dimension * Float.BYTES));
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(dimension).putInt(slotsPerSegment);
+        header.rewind();
+        channel.write(header, 0);
+        return new VectorSegments(channel, dimension, slotsPerSegment);
+    }
+
+    /**
+     * 纯堆外 (不落盘) 的向量槽位：DirectByteBuffer 分段分配，GC 不扫描也不搬动
+     */
+    public static VectorSegments offHeap(int dimension) {
+        int slotsPerSegment = (int) Math.max(1024, SEGMENT_TARGET_BYTES / ((long) dimension * Float.BYTES));
+        return new VectorSegments(null, dimension, slotsPerSegment);
+    }
+
+    private void mapSegment(int index) throws IOException {
+        if (channel == null) {
+            // 本机字节序，bulk get 时就是一次内存拷贝
+            segments.add(ByteBuffer.allocateDirect((int) segmentBytes).order(ByteOrder.nativeOrder()).asFloatBuffer());
+            return;
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE,
+                HEADER_BYTES + index * segmentBytes, segmentBytes);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        mapped.add(buffer);
+        segments.add(buffer.asFloatBuffer());
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /** 已映射的槽位容量 */
+    public int capacity() {
+        return segments.size() * slotsPerSegment;
+    }
+
+    /**
+     * 写入一个槽位 (超出容量时自动映射新段)
+     */
+    public void write(int slot, float[] vector) throws IOException {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("向量维度不匹配: 期望 " + dimension + ", 实际 " + vector.length);
+        }
+        while (slot >= capacity()) {
+            mapSegment(segments.size());
+        }
+        segments.get(slot / slotsPerSegment).put((slot % slotsPerSegment) * dimension, vector);
+    }
+
+    /**
+     * 读出一个槽位到 dst (dst.length == dimension)；批量拷贝，检索时配合 {@link VectorMath} 使用
+     */
+    public void read(int slot, float[] dst) {
+        segments.get(slot / slotsPerSegment).get((slot % slotsPerSegment) * dimension, dst);
+    }
+
+    /** 已占用的堆外字节数 (映射区或 DirectByteBuffer) */
+    public long offHeapBytes() {
+        return segments.size() * segmentBytes;
+    }
+
+    /**
+     * 把脏页刷到磁盘
+     */
+    public void force() {
+        mapped.forEach(MappedByteBuffer::force);
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
@@ -1,19 +1,13 @@
 package com.pingyu.codehubbackend.runner;
 
+import com.pingyu.codehubbackend.rag.KnowledgeBaseIngestionService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.document.Document;
-import org.springframework.ai.reader.TextReader;
-import org.springframework.ai.transformer.splitter.TokenTextSplitter;
-import org.springframework.ai.vectorstore.VectorStore;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
-import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Component;
 
-import java.util.List;
-import java.util.stream.Collectors;
+import java.time.Duration;
 
 /**
  * 智码 - RAG 最佳实践测试：Prompt 增强与引用溯源
@@ -27,36 +21,20 @@ public class AdvancedRagTestRunner implements CommandLineRunner {
     private ChatClient chatClient;
 
     @jakarta.annotation.Resource
-    private VectorStore vectorStore;
-
-    @Value("classpath:codehub-manual.md")
-    private Resource manualResource;
+    private KnowledgeBaseIngestionService knowledgeBaseIngestionService;
 
     @Override
     public void run(String... args) throws Exception {
         log.info("====== 🛡️ 启动 RAG 最佳实践测试 (Prompt Engineering) ======");
 
-        // --- 1. 增强型 ETL (Enriched ETL) ---
-        // 目标：把文件名“烙印”在文本内容里，让 AI 不想看都不行
-        TextReader textReader = new TextReader(manualResource);
-        textReader.getCustomMetadata().put("charset", "UTF-8");
-        List<Document> rawDocs = textReader.read();
-        String filename = manualResource.getFilename();
-
-        // 💡 关键动作：内容增强 (Content Enrichment)
-        List<Document> enrichedDocs = rawDocs.stream().map(doc -> {
-            // 把 "Source: xxx" 加到正文最前面
-            String newContent = "=== 来源文件: " + filename + " ===\n" + doc.getText();
-            // 记得要把修改后的内容写回去，同时保留 metadata
-            return new Document(newContent, doc.getMetadata());
-        }).toList();
-
-        // 切割并入库
-        TokenTextSplitter splitter = new TokenTextSplitter();
-        List<Document> splitDocs = splitter.apply(enrichedDocs);
-        vectorStore.add(splitDocs);
-
-        log.info(">>> 知识库加载完成，已将文件名 '{}' 注入到文档正文中。", filename);
+        // --- 1. 等待知识库入库 ---
+        // 切片元数据里自带 filename / section (KnowledgeBaseIngestionService 入库时写入)，
+        // 不再往正文里烙文件名重新入库 (落盘的向量库会越跑越多重复切片)
+        if (!knowledgeBaseIngestionService.awaitInitialIngestion(Duration.ofMinutes(2))) {
+            log.error("❌ 知识库未就绪，请确认 codehub.rag.ingestion.enabled=true 且 dirs 指向文档目录");
+            return;
+        }
+        log.info(">>> 知识库加载完成，当前存有 {} 个切片。", knowledgeBaseIngestionService.snapshot().get("chunks"));
 
 
         // --- 2. 提问验证 (Citation Verification) ---
@@ -0,0 +1,49 @@
+package com.pingyu.codehubbackend.runner;
+
+import com.pingyu.codehubbackend.rag.etl.IngestionPipeline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 智码 - 批量入库测试 (流水线版 ETL)
+ * 作用：把整个目录 / 压缩包一次性灌进向量库，对比 EtlTestRunner 的单文件单线程做法
+ * 用法：启动参数里给路径 (多个用空格隔开)，不给就用 codehub.rag.etl.sources
+ */
+//@Component
+public class BulkIngestionRunner implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkIngestionRunner.class);
+
+    @jakarta.annotation.Resource
+    private IngestionPipeline ingestionPipeline;
+
+    @Value("${codehub.rag.etl.sources:src/main/resources}")
+    private String[] sources;
+
+    @Override
+    public void run(String... args) throws Exception {
+        List<Path> paths = Arrays.stream(args.length > 0 ? args : sources)
+                .map(path -> Paths.get(path.trim()))
+                .toList();
+        log.info("====== 🚚 正在测试批量入库流水线: {} ======", paths);
+
+        try {
+            IngestionPipeline.Report report = ingestionPipeline.ingest(paths);
+            log.info(">>> 文件 {} 个 (失败 {}), 切片 {} 个 / {} 批 (失败 {}), 耗时 {}ms, 吞吐 {} 切片/s",
+                    report.files(), report.failedFiles(), report.chunks(), report.batches(), report.failedChunks(),
+                    report.millis(), String.format("%.1f", report.chunksPerSecond()));
+            report.failures().forEach(failure -> log.warn(">>> 失败明细: {}", failure));
+            log.info("====== 批量入库测试结束 ======");
+        } catch (Exception e) {
+            log.error("====== 批量入库测试失败 ======", e);
+        }
+    }
+}
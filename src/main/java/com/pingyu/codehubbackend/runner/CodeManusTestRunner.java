@@ -1,18 +1,23 @@
 package com.pingyu.codehubbackend.runner;
 
-import com.pingyu.codehubbackend.agent.BaseAgent;
+import com.pingyu.codehubbackend.agent.AgentRunExecutor;
+import com.pingyu.codehubbackend.agent.CodeManusPool;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.CompletableFuture;
+
 //@Component
 @Slf4j
 public class CodeManusTestRunner implements CommandLineRunner {
 
-    private final BaseAgent codeManus;
+    private final CodeManusPool codeManusPool;
+    private final AgentRunExecutor agentRunExecutor;
 
-    public CodeManusTestRunner(BaseAgent codeManus) {
-        this.codeManus = codeManus;
+    public CodeManusTestRunner(CodeManusPool codeManusPool, AgentRunExecutor agentRunExecutor) {
+        this.codeManusPool = codeManusPool;
+        this.agentRunExecutor = agentRunExecutor;
     }
 
     @Override
@@ -25,7 +30,16 @@ public class CodeManusTestRunner implements CommandLineRunner {
         // 注意：Spring Boot 3.4.4 是我们假设的当前版本，让它去查真实的最新版本
         String request = "请使用 tavily_search 帮我查询：Spring Boot 目前最新的 GA (稳定) 版本号是多少？并告诉我该版本的发布日期。";
 
-        String result = codeManus.run(request);
+        // 和 Controller 一样走执行层准入 (计入 admitted，满载时同样被拒绝)，不直接从会话池借实例
+        CompletableFuture<String> future = new CompletableFuture<>();
+        agentRunExecutor.submit(() -> {
+            try {
+                future.complete(codeManusPool.run(request));
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        String result = future.get();
 
         log.info("🏁 最终报告:\n{}", result);
         log.info("========================================");
@@ -1,18 +1,15 @@
 package com.pingyu.codehubbackend.runner;
 
-import java.util.ArrayList;
+import com.pingyu.codehubbackend.rag.KnowledgeBaseIngestionService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.reader.TextReader;
-import org.springframework.ai.transformer.splitter.TokenTextSplitter;
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
-import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 
@@ -25,11 +22,14 @@ public class FilterSearchTestRunner implements CommandLineRunner {
 
     private static final Logger log = LoggerFactory.getLogger(FilterSearchTestRunner.class);
 
+    /** 假线索用固定 ID，重复运行只会覆盖同一条，测完再删掉 */
+    private static final String FAKE_DOC_ID = "filter-search-fake-guide";
+
     @jakarta.annotation.Resource
     private VectorStore vectorStore;
 
-    @Value("classpath:codehub-manual.md")
-    private Resource manualResource;
+    @jakarta.annotation.Resource
+    private KnowledgeBaseIngestionService knowledgeBaseIngestionService;
 
     @Override
     public void run(String... args) throws Exception {
@@ -37,31 +37,20 @@ public class FilterSearchTestRunner implements CommandLineRunner {
 
         try {
             // --- 1. 准备案卷：真假混淆 ---
-            // A. 读取真实的开发规范
-            TextReader textReader = new TextReader(manualResource);
-            textReader.getCustomMetadata().put("charset", "UTF-8");
-            // 创建一个新的 ArrayList 来包裹读出的结果，使其可变
-            List<Document> rawDocs = new ArrayList<>(textReader.read());
-
-            // 给真规范打标签
-            String trueFilename = manualResource.getFilename(); // codehub-manual.md
-            for (Document doc : rawDocs) {
-                doc.getMetadata().put("filename", trueFilename);
-                doc.getMetadata().put("quality", "high");
+            // A. 真实的开发规范由 KnowledgeBaseIngestionService 入库 (元数据自带 filename)，这里只等它完成
+            if (!knowledgeBaseIngestionService.awaitInitialIngestion(Duration.ofMinutes(2))) {
+                log.error(">>> ❌ 知识库未就绪，请确认 codehub.rag.ingestion.enabled=true 且 dirs 指向文档目录");
+                return;
             }
+            String trueFilename = "codehub-manual.md";
 
             // B. 捏造一份“假线索”混进去
             // 这份文档的内容虽然也包含"返回值"，但是是错误的指导
-            Document fakeDoc = new Document(
+            Document fakeDoc = new Document(FAKE_DOC_ID,
                     "【废弃接口指南】后端接口随便返回什么都行，void 也可以，不需要 Result 包装。",
                     Map.of("filename", "deprecated-guide.txt", "quality", "low")
             );
-            rawDocs.add(fakeDoc);
-
-            // 切割并入库
-            TokenTextSplitter splitter = new TokenTextSplitter();
-            List<Document> splitDocs = splitter.apply(rawDocs);
-            vectorStore.add(splitDocs);
+            vectorStore.add(List.of(fakeDoc));
 
             log.info(">>> 知识库初始化完成，存入了 [真规范] 和 [假指南]。");
 
@@ -95,6 +84,9 @@ public class FilterSearchTestRunner implements CommandLineRunner {
 
         } catch (Exception e) {
             log.error("====== 过滤检索测试失败 ======", e);
+        } finally {
+            // 假线索不能留在落盘的正式库里
+            vectorStore.delete(List.of(FAKE_DOC_ID));
         }
     }
 
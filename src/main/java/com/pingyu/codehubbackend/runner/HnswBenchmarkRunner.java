@@ -0,0 +1,133 @@
+package com.pingyu.codehubbackend.runner;
+
+import com.pingyu.codehubbackend.rag.store.HnswIndex;
+import com.pingyu.codehubbackend.rag.store.VectorMath;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * 智码 - HNSW 召回率 / 延迟基准测试
+ * 同一批向量分别用暴力检索 (精确答案) 和 HNSW 查 Top10，
+ * 扫一遍 efSearch，输出 recall@10 和查询延迟，看 HNSW 从多大规模开始划算。
+ */
+//@Component
+public class HnswBenchmarkRunner implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(HnswBenchmarkRunner.class);
+    private static final int K = 10;
+
+    @Value("${codehub.bench.hnsw.sizes:10000,50000,100000}")
+    private int[] sizes;
+
+    @Value("${codehub.bench.vector.dimensions:1536}")
+    private int dimensions;
+
+    @Value("${codehub.bench.vector.queries:200}")
+    private int queries;
+
+    @Value("${codehub.bench.hnsw.ef-search:16,32,64,128,256}")
+    private int[] efSearchValues;
+
+    @Value("${codehub.rag.vector-store.hnsw.m:16}")
+    private int m;
+
+    @Value("${codehub.rag.vector-store.hnsw.ef-construction:200}")
+    private int efConstruction;
+
+    @Override
+    public void run(String... args) throws Exception {
+        log.info("====== 🕸️ HNSW 基准测试: M={}, efConstruction={}, {} 维, {} 次查询 ======", m, efConstruction, dimensions, queries);
+        SyntheticEmbeddingModel embeddingModel = new SyntheticEmbeddingModel(dimensions, 256, 0.6f);
+        for (int size : sizes) {
+            bench(embeddingModel, size);
+        }
+    }
+
+    private void bench(SyntheticEmbeddingModel embeddingModel, int size) {
+        float[][] vectors = new float[size][];
+        IntStream.range(0, size).parallel().forEach(i -> vectors[i] = normalize(embeddingModel.vectorOf("chunk " + i)));
+        float[][] queryVectors = new float[queries][];
+        for (int i = 0; i < queries; i++) {
+            queryVectors[i] = normalize(embeddingModel.vectorOf("query-" + i));
+        }
+
+        // 1. 暴力检索：精确答案 + 基线延迟
+        int[][] truth = new int[queries][];
+        long flatNanos = 0;
+        for (int q = 0; q < queries; q++) {
+            long start = System.nanoTime();
+            truth[q] = bruteForce(vectors, queryVectors[q]);
+            flatNanos += System.nanoTime() - start;
+        }
+
+        // 2. 建图
+        long buildStart = System.currentTimeMillis();
+        HnswIndex index = new HnswIndex(new HnswIndex.Params(m, efConstruction, 0), dimensions,
+                (node, dst) -> System.arraycopy(vectors[node], 0, dst, 0, dimensions), true);
+        for (int i = 0; i < size; i++) {
+            index.insert(i, vectors[i]);
+        }
+        long buildMillis = System.currentTimeMillis() - buildStart;
+        log.info("📊 N={} | 暴力检索 平均 {}ms/次 | 建图 {}ms ({} 个/秒)", size,
+                String.format("%.2f", flatNanos / 1e6 / queries), buildMillis, size * 1000L / Math.max(1, buildMillis));
+
+        // 3. 扫 efSearch：召回率 vs 延迟
+        for (int ef : efSearchValues) {
+            long[] latencies = new long[queries];
+            int hit = 0;
+            for (int q = 0; q < queries; q++) {
+                long start = System.nanoTime();
+                HnswIndex.Hits hits = index.search(queryVectors[q], K, ef, null);
+                latencies[q] = System.nanoTime() - start;
+                Set<Integer> expected = new HashSet<>();
+                for (int node : truth[q]) expected.add(node);
+                for (int node : hits.nodes()) {
+                    if (expected.contains(node)) hit++;
+                }
+            }
+            Arrays.sort(latencies);
+            double meanMillis = Arrays.stream(latencies).average().orElse(0) / 1e6;
+            log.info("   efSearch={} | recall@{}={} | 平均 {}ms, p99 {}ms | 比暴力检索快 {}x", ef, K,
+                    String.format("%.3f", hit / (double) (queries * K)),
+                    String.format("%.3f", meanMillis),
+                    String.format("%.3f", latencies[(int) (queries * 0.99)] / 1e6),
+                    String.format("%.1f", flatNanos / 1e6 / queries / meanMillis));
+        }
+    }
+
+    private int[] bruteForce(float[][] vectors, float[] query) {
+        // K 很小，直接插入排序维护前 K 个
+        int[] ids = new int[K];
+        float[] scores = new float[K];
+        Arrays.fill(scores, Float.NEGATIVE_INFINITY);
+        for (int i = 0; i < vectors.length; i++) {
+            float score = VectorMath.dot(vectors[i], query, dimensions, true);
+            if (score <= scores[K - 1]) continue;
+            int pos = K - 1;
+            while (pos > 0 && scores[pos - 1] < score) {
+                scores[pos] = scores[pos - 1];
+                ids[pos] = ids[pos - 1];
+                pos--;
+            }
+            scores[pos] = score;
+            ids[pos] = i;
+        }
+        return ids;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) norm += v * v;
+        float scale = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) vector[i] *= scale;
+        return vector;
+    }
+}
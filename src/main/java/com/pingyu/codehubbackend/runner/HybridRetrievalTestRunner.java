@@ -0,0 +1,75 @@
+package com.pingyu.codehubbackend.runner;
+
+import com.pingyu.codehubbackend.rag.splitter.MarkdownSectionSplitter;
+import com.pingyu.codehubbackend.rag.store.HybridVectorStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.SimpleVectorStore;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 智码 - 混合检索测试 (纯向量 vs BM25 + 向量 RRF 融合)
+ * 用 codehub-manual.md 单独建一个小库 (不动正式的向量库)，对同一批查询打印两种检索的 Top-3 小节和耗时：
+ * 1. 带精确标识符的查询 (@CodeHubSecured、Result<T>、LocalDateTime) 应该走纯关键词快速通道，不调用 Embedding；
+ * 2. 自然语言查询走混合检索，看融合后的排序是否合理。
+ */
+//@Component
+public class HybridRetrievalTestRunner implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(HybridRetrievalTestRunner.class);
+
+    private static final List<String> QUERIES = List.of(
+            "@CodeHubSecured",
+            "Result<T> 怎么用",
+            "LocalDateTime",
+            "接口需要鉴权怎么办",
+            "日期字段应该用什么类型");
+
+    @jakarta.annotation.Resource
+    private EmbeddingModel embeddingModel;
+
+    @Value("classpath:codehub-manual.md")
+    private Resource manualResource;
+
+    @Override
+    public void run(String... args) throws Exception {
+        log.info("====== 🔀 正在测试混合检索 ======");
+        try {
+            Document manual = new Document(manualResource.getContentAsString(StandardCharsets.UTF_8), Map.of("filename", "codehub-manual.md"));
+            List<Document> chunks = new MarkdownSectionSplitter(100).apply(List.of(manual));
+            VectorStore vectorOnly = SimpleVectorStore.builder(embeddingModel).build();
+            HybridVectorStore hybrid = new HybridVectorStore(vectorOnly, new HybridVectorStore.Options(60, 4, 0.5));
+            hybrid.add(chunks);
+            log.info(">>> 入库 {} 个切片", chunks.size());
+
+            for (String query : QUERIES) {
+                SearchRequest request = SearchRequest.builder().query(query).topK(3).build();
+                report(query, "纯向量", vectorOnly, request);
+                report(query, "混合", hybrid, request);
+            }
+            log.info(">>> 检索路径统计: {}", hybrid.snapshot());
+            log.info("====== 混合检索测试结束 ======");
+        } catch (Exception e) {
+            log.error("====== 混合检索测试失败 ======", e);
+        }
+    }
+
+    private void report(String query, String name, VectorStore store, SearchRequest request) {
+        long start = System.nanoTime();
+        List<Document> results = store.similaritySearch(request);
+        long micros = (System.nanoTime() - start) / 1000;
+        log.info("🔍 [{}] {} | {} µs | {}", name, query, micros,
+                results.stream().map(doc -> doc.getMetadata().get("section") + String.format(" (%.3f)", doc.getScore())).toList());
+    }
+}
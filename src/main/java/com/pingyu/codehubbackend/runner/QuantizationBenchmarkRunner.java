@@ -0,0 +1,119 @@
+package com.pingyu.codehubbackend.runner;
+
+import com.pingyu.codehubbackend.rag.store.OffHeapVectorStore;
+import com.pingyu.codehubbackend.rag.store.VectorQuantizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 智码 - 向量量化基准测试 (内存 vs 召回)
+ * 同一批向量分别用原始向量 (精确答案)、int8、PQ 检索 Top10，扫一遍 rerank，
+ * 输出每个向量常驻内存的字节数、recall@10 和查询延迟。
+ * 常驻字节数按 mapped 部署算：量化后原始向量只留在映射文件里给精排读，常驻的只有压缩码 (含码本、缩放系数的均摊)。
+ */
+//@Component
+public class QuantizationBenchmarkRunner implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(QuantizationBenchmarkRunner.class);
+    private static final int K = 10;
+
+    @Value("${codehub.bench.quantization.size:50000}")
+    private int size;
+
+    @Value("${codehub.bench.vector.dimensions:1536}")
+    private int dimensions;
+
+    @Value("${codehub.bench.vector.queries:200}")
+    private int queries;
+
+    @Value("${codehub.bench.quantization.rerank:1,4,10}")
+    private int[] rerankValues;
+
+    @Value("${codehub.rag.vector-store.quantization.pq-sub-dimension:4}")
+    private int pqSubDimension;
+
+    @Override
+    public void run(String... args) throws Exception {
+        log.info("====== 🗜️ 量化基准测试: {} 个向量 x {} 维, {} 次查询 ======", size, dimensions, queries);
+        SyntheticEmbeddingModel embeddingModel = new SyntheticEmbeddingModel(dimensions, 256, 0.6f);
+        float[][] queryVectors = new float[queries][];
+        for (int i = 0; i < queries; i++) {
+            queryVectors[i] = embeddingModel.vectorOf("query-" + i);
+        }
+
+        List<List<String>> truth = bench("原始向量 float32", embeddingModel, null, queryVectors, null);
+        for (int rerank : rerankValues) {
+            bench("int8 rerank=" + rerank, embeddingModel,
+                    new VectorQuantizer.Params(VectorQuantizer.Type.INT8, pqSubDimension, rerank), queryVectors, truth);
+        }
+        for (int rerank : rerankValues) {
+            bench("PQ" + pqSubDimension + " rerank=" + rerank, embeddingModel,
+                    new VectorQuantizer.Params(VectorQuantizer.Type.PQ, pqSubDimension, rerank), queryVectors, truth);
+        }
+    }
+
+    /**
+     * 灌数据 (PQ 要等后台训练完) + 查询，返回每个查询的 Top10 ID
+     */
+    private List<List<String>> bench(String name, SyntheticEmbeddingModel embeddingModel, VectorQuantizer.Params quantization,
+                                     float[][] queryVectors, List<List<String>> truth) throws Exception {
+        try (OffHeapVectorStore store = new OffHeapVectorStore(embeddingModel,
+                new OffHeapVectorStore.Options(true, 0, null, quantization))) {
+            for (int from = 0; from < size; from += 1000) {
+                List<Document> batch = new ArrayList<>(1000);
+                for (int i = from; i < Math.min(size, from + 1000); i++) {
+                    batch.add(new Document("doc-" + i, "chunk " + i, Map.of()));
+                }
+                store.add(batch);
+            }
+            long waitStart = System.currentTimeMillis();
+            while (store.snapshot().get("quantization") instanceof Map<?, ?> snapshot && !Boolean.TRUE.equals(snapshot.get("ready"))) {
+                Thread.sleep(200);
+            }
+            long trainMillis = System.currentTimeMillis() - waitStart;
+
+            // 预热 JIT
+            for (int q = 0; q < Math.min(20, queryVectors.length); q++) {
+                store.search(queryVectors[q], K, 0f, null);
+            }
+            long[] latencies = new long[queryVectors.length];
+            List<List<String>> results = new ArrayList<>(queryVectors.length);
+            for (int q = 0; q < queryVectors.length; q++) {
+                long start = System.nanoTime();
+                List<Document> hits = store.search(queryVectors[q], K, 0f, null);
+                latencies[q] = System.nanoTime() - start;
+                results.add(hits.stream().map(Document::getId).toList());
+            }
+            Arrays.sort(latencies);
+
+            int hit = 0;
+            if (truth != null) {
+                for (int q = 0; q < results.size(); q++) {
+                    Set<String> expected = new HashSet<>(truth.get(q));
+                    hit += (int) results.get(q).stream().filter(expected::contains).count();
+                }
+            }
+            long bytesPerVector = (long) dimensions * Float.BYTES;
+            if (store.snapshot().get("quantization") instanceof Map<?, ?> snapshot && snapshot.get("heapBytes") instanceof Long heapBytes) {
+                bytesPerVector = heapBytes / size;
+            }
+            log.info("📊 {} | 常驻 {} 字节/向量 | 查询 p50 {}ms, p99 {}ms{}{}", name, bytesPerVector,
+                    String.format("%.2f", latencies[latencies.length / 2] / 1e6),
+                    String.format("%.2f", latencies[(int) (latencies.length * 0.99)] / 1e6),
+                    truth == null ? "" : " | recall@" + K + "=" + String.format("%.3f", hit / (double) (results.size() * K)),
+                    trainMillis > 500 ? " | 等待训练 " + trainMillis + "ms" : "");
+            return results;
+        }
+    }
+}
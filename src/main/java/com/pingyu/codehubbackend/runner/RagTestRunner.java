@@ -1,18 +1,13 @@
 package com.pingyu.codehubbackend.runner;
 
+import com.pingyu.codehubbackend.rag.KnowledgeBaseIngestionService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.document.Document;
-import org.springframework.ai.reader.TextReader;
-import org.springframework.ai.transformer.splitter.TokenTextSplitter;
-import org.springframework.ai.vectorstore.VectorStore;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
-import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Component;
 
-import java.util.List;
+import java.time.Duration;
 
 import static org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor.CHAT_MEMORY_CONVERSATION_ID_KEY;
 
@@ -25,30 +20,19 @@ public class RagTestRunner implements CommandLineRunner {
     private ChatClient chatClient;
 
     @jakarta.annotation.Resource
-    private VectorStore vectorStore;
-
-    @Value("classpath:codehub-manual.md")
-    private Resource manualResource;
+    private KnowledgeBaseIngestionService knowledgeBaseIngestionService;
 
     @Override
     public void run(String... args) throws Exception {
         log.info("====== 🚀 启动 RAG 全流程实战测试 (RAG Action) ======");
 
         // --- 1. 知识预热 (Pre-load Knowledge) ---
-        // 因为 SimpleVectorStore 是内存的，重启就没了，所以我们在测试前先灌入数据
-        try {
-            TextReader textReader = new TextReader(manualResource);
-            textReader.getCustomMetadata().put("charset", "UTF-8");
-            List<Document> documents = textReader.read();
-            TokenTextSplitter splitter = new TokenTextSplitter();
-            List<Document> splitDocs = splitter.apply(documents);
-
-            vectorStore.add(splitDocs);
-            log.info("📚 知识库加载完毕！当前存有 {} 个切片。", splitDocs.size());
-        } catch (Exception e) {
-            log.error("❌ 知识库加载失败，后续测试可能不准", e);
+        // 知识库由 KnowledgeBaseIngestionService 启动后自动入库 (并监听文件变更)，这里只等它完成
+        if (!knowledgeBaseIngestionService.awaitInitialIngestion(Duration.ofMinutes(2))) {
+            log.error("❌ 知识库加载失败，请确认 codehub.rag.ingestion.enabled=true 且 dirs 指向文档目录");
             return;
         }
+        log.info("📚 知识库加载完毕！当前存有 {} 个切片。", knowledgeBaseIngestionService.snapshot().get("chunks"));
 
         // --- 2. 模拟提问 (Ask Question) ---
         // 这个问题如果你没读过 codehub-manual.md，是绝对答不对的
@@ -0,0 +1,76 @@
+package com.pingyu.codehubbackend.runner;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * 基准测试专用的假 Embedding 模型 (不调 DashScope，不花钱)
+ * 同一段文本永远得到同一个向量；向量 = 簇中心 + 噪声，比纯随机向量更像真实语料 (语义相近的文本聚在一起)。
+ */
+class SyntheticEmbeddingModel implements EmbeddingModel {
+
+    private final int dimensions;
+    private final float[][] centroids;
+    private final float noise;
+
+    SyntheticEmbeddingModel(int dimensions, int clusters, float noise) {
+        this.dimensions = dimensions;
+        this.noise = noise;
+        this.centroids = new float[clusters][];
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < clusters; i++) {
+            centroids[i] = gaussian(random);
+        }
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<Embedding> embeddings = new ArrayList<>(request.getInstructions().size());
+        for (String text : request.getInstructions()) {
+            embeddings.add(new Embedding(vectorOf(text), embeddings.size()));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return vectorOf(document.getText());
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    float[] vectorOf(String text) {
+        SplittableRandom random = new SplittableRandom(text.hashCode());
+        float[] centroid = centroids[random.nextInt(centroids.length)];
+        float[] vector = gaussian(random);
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = centroid[i] + noise * vector[i];
+        }
+        return vector;
+    }
+
+    private float[] gaussian(SplittableRandom random) {
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i += 2) {
+            // Box-Muller
+            double u = 1.0 - random.nextDouble();
+            double v = random.nextDouble();
+            double r = Math.sqrt(-2.0 * Math.log(u));
+            vector[i] = (float) (r * Math.cos(2 * Math.PI * v));
+            if (i + 1 < dimensions) {
+                vector[i + 1] = (float) (r * Math.sin(2 * Math.PI * v));
+            }
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,138 @@
+package com.pingyu.codehubbackend.runner;
+
+import com.pingyu.codehubbackend.rag.store.OffHeapVectorStore;
+import com.pingyu.codehubbackend.rag.store.VectorMath;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.SimpleVectorStore;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 智码 - 向量检索基准测试 (SimpleVectorStore vs 堆外 SIMD 暴力检索)
+ * 用假 Embedding 模型灌入 N 个 1536 维向量，对比查询延迟、堆占用和查询期间的 GC。
+ * 另外测一组高选择性的过滤查询 (shard == x，只命中 0.1% 的切片)，看倒排索引能不能让代价和命中数成正比。
+ * 10 万级规模建议带上：-Xmx4g --add-modules jdk.incubator.vector
+ */
+//@Component
+public class VectorSearchBenchmarkRunner implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(VectorSearchBenchmarkRunner.class);
+
+    @Value("${codehub.bench.vector.size:100000}")
+    private int size;
+
+    @Value("${codehub.bench.vector.dimensions:1536}")
+    private int dimensions;
+
+    @Value("${codehub.bench.vector.queries:200}")
+    private int queries;
+
+    @Value("${codehub.bench.vector.include-simple:true}")
+    private boolean includeSimple;
+
+    @Override
+    public void run(String... args) throws Exception {
+        log.info("====== 🏁 向量检索基准测试: {} 个向量 x {} 维, {} 次查询, SIMD 可用: {} ======",
+                size, dimensions, queries, VectorMath.simdAvailable());
+        SyntheticEmbeddingModel embeddingModel = new SyntheticEmbeddingModel(dimensions, 256, 0.6f);
+
+        List<String> queryTexts = new ArrayList<>(queries);
+        for (int i = 0; i < queries; i++) {
+            queryTexts.add("query-" + i);
+        }
+
+        List<String> baseline = null;
+        if (includeSimple) {
+            baseline = bench("SimpleVectorStore", SimpleVectorStore.builder(embeddingModel).build(), queryTexts, null);
+        }
+        bench("OffHeap 标量 单线程", new OffHeapVectorStore(embeddingModel, OffHeapVectorStore.Options.flat(false, Integer.MAX_VALUE)), queryTexts, baseline);
+        bench("OffHeap SIMD 单线程", new OffHeapVectorStore(embeddingModel, OffHeapVectorStore.Options.flat(true, Integer.MAX_VALUE)), queryTexts, baseline);
+        bench("OffHeap SIMD 并行", new OffHeapVectorStore(embeddingModel, OffHeapVectorStore.Options.flat(true, 0)), queryTexts, baseline);
+    }
+
+    /**
+     * 灌数据 + 查询，返回每个查询的 Top1 ID (和基线对比结果是否一致)
+     */
+    private List<String> bench(String name, VectorStore store, List<String> queryTexts, List<String> baseline) throws Exception {
+        long ingestStart = System.currentTimeMillis();
+        for (int from = 0; from < size; from += 1000) {
+            List<Document> batch = new ArrayList<>(1000);
+            for (int i = from; i < Math.min(size, from + 1000); i++) {
+                batch.add(new Document("doc-" + i, "chunk " + i, Map.of("bucket", i % 10, "shard", i % 1000)));
+            }
+            store.add(batch);
+        }
+        long ingestMillis = System.currentTimeMillis() - ingestStart;
+        System.gc();
+        long heapUsed = usedHeap();
+
+        // 预热 JIT
+        for (int i = 0; i < Math.min(20, queryTexts.size()); i++) {
+            store.similaritySearch(SearchRequest.builder().query(queryTexts.get(i)).topK(5).build());
+        }
+
+        long gcCountBefore = gcCount();
+        long gcMillisBefore = gcMillis();
+        long[] latencies = new long[queryTexts.size()];
+        List<String> top1 = new ArrayList<>(queryTexts.size());
+        for (int i = 0; i < queryTexts.size(); i++) {
+            long start = System.nanoTime();
+            List<Document> results = store.similaritySearch(SearchRequest.builder().query(queryTexts.get(i)).topK(5).build());
+            latencies[i] = System.nanoTime() - start;
+            top1.add(results.isEmpty() ? "" : results.get(0).getId());
+        }
+        Arrays.sort(latencies);
+
+        long[] filteredLatencies = new long[queryTexts.size()];
+        for (int i = 0; i < queryTexts.size(); i++) {
+            long start = System.nanoTime();
+            store.similaritySearch(SearchRequest.builder().query(queryTexts.get(i)).topK(5).filterExpression("shard == " + (i % 1000)).build());
+            filteredLatencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(filteredLatencies);
+
+        int agree = 0;
+        if (baseline != null) {
+            for (int i = 0; i < top1.size(); i++) {
+                if (top1.get(i).equals(baseline.get(i))) agree++;
+            }
+        }
+        log.info("📊 {} | 入库 {}ms | 堆占用 {} MB | 查询 p50 {}ms, p99 {}ms | 过滤查询 p50 {}ms | 查询期间 GC {} 次 / {}ms{}",
+                name, ingestMillis, heapUsed / (1024 * 1024),
+                String.format("%.2f", latencies[latencies.length / 2] / 1e6),
+                String.format("%.2f", latencies[(int) (latencies.length * 0.99)] / 1e6),
+                String.format("%.2f", filteredLatencies[filteredLatencies.length / 2] / 1e6),
+                gcCount() - gcCountBefore, gcMillis() - gcMillisBefore,
+                baseline == null ? "" : " | Top1 与基线一致 " + agree + "/" + top1.size());
+
+        if (store instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+        return top1;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+}
@@ -0,0 +1,46 @@
+package com.pingyu.codehubbackend.tool;
+
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.time.Duration;
+
+/**
+ * 带缓存的工具外壳 (装饰器)
+ * 名字、描述、Schema 全部透传，只在 call() 前后查/写 {@link ToolResultCache}
+ */
+public class CachingToolCallback implements ToolCallback {
+
+    private final ToolCallback delegate;
+    private final ToolResultCache cache;
+    private final Duration ttl;
+
+    public CachingToolCallback(ToolCallback delegate, ToolResultCache cache, Duration ttl) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.ttl = ttl;
+    }
+
+    @Override
+    public String getName() { return delegate.getName(); }
+
+    @Override
+    public String getDescription() { return delegate.getDescription(); }
+
+    @Override
+    public ToolDefinition getToolDefinition() { return delegate.getToolDefinition(); }
+
+    @Override
+    public String call(String jsonArgs) {
+        String key = cache.cacheKey(getName(), jsonArgs);
+        String cached = cache.get(getName(), key);
+        if (cached != null) {
+            return cached;
+        }
+        // mtime 要在调用之前取，调用期间文件被改过就不缓存
+        long lastModified = cache.lastModifiedBeforeCall(getName(), jsonArgs);
+        String result = delegate.call(jsonArgs);
+        cache.put(getName(), key, jsonArgs, result, ttl, lastModified);
+        return result;
+    }
+}
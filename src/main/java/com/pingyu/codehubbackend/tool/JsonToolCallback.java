@@ -0,0 +1,58 @@
+package com.pingyu.codehubbackend.tool;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.util.function.Function;
+
+/**
+ * 进程内工具的通用外壳
+ * 与 ToolsConfig.createMcpTool 同样的结构 (名字 + 描述 + JSON Schema)，只是执行体换成了本地函数，
+ * 参数先解析成 JsonNode 再交给 body，顺带记录耗时。
+ */
+public class JsonToolCallback implements ToolCallback {
+
+    private static final Logger log = LoggerFactory.getLogger(JsonToolCallback.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String name;
+    private final String description;
+    private final String schema;
+    private final Function<JsonNode, String> body;
+
+    public JsonToolCallback(String name, String description, String schema, Function<JsonNode, String> body) {
+        this.name = name;
+        this.description = description;
+        this.schema = schema;
+        this.body = body;
+    }
+
+    @Override
+    public String getName() { return name; }
+
+    @Override
+    public String getDescription() { return description; }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return ToolDefinition.builder().name(name).description(description).inputSchema(schema).build();
+    }
+
+    @Override
+    public String call(String jsonArgs) {
+        long start = System.nanoTime();
+        JsonNode args;
+        try {
+            args = MAPPER.readTree(jsonArgs);
+        } catch (Exception e) {
+            return "Error: invalid arguments: " + e.getMessage();
+        }
+        String result = body.apply(args);
+        log.info("⚡ [JsonToolCallback] {}({}) 耗时 {}µs", name, jsonArgs, (System.nanoTime() - start) / 1000);
+        return result;
+    }
+}
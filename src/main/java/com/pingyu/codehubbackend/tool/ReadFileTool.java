@@ -1,40 +1,66 @@
 package com.pingyu.codehubbackend.tool;
 
+import com.fasterxml.jackson.annotation.JsonPropertyDescription;
+import com.pingyu.codehubbackend.tool.fs.FileWindowReader;
+import com.pingyu.codehubbackend.tool.fs.FsSandbox;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.function.Function;
 
 /**
  * 工具实现类：读取项目文件内容
  * 实现标准 Java Function 接口，输入是 Request，输出是 String
+ * 支持按字节/按行分段读取，单次返回有上限，超出部分会截断并附上文件统计 (见 {@link FileWindowReader})
  */
 public class ReadFileTool implements Function<ReadFileTool.Request, String> {
 
     private static final Logger log = LoggerFactory.getLogger(ReadFileTool.class);
 
-    // 1. 定义入参结构 (AI 会自动填充这个结构)
-    public record Request(String filePath) {}
+    private final FsSandbox sandbox;
+    private final FileWindowReader reader;
+
+    public ReadFileTool(FsSandbox sandbox, FileWindowReader reader) {
+        this.sandbox = sandbox;
+        this.reader = reader;
+    }
+
+    // 1. 定义入参结构 (AI 会自动填充这个结构，除 filePath 外都是可选的)
+    public record Request(
+            @JsonPropertyDescription("文件路径，相对项目根目录") String filePath,
+            @JsonPropertyDescription("按字节读取：起始字节偏移") Long offset,
+            @JsonPropertyDescription("按字节读取：读取的字节数") Long length,
+            @JsonPropertyDescription("按行读取：起始行号 (从 1 开始，含)") Integer startLine,
+            @JsonPropertyDescription("按行读取：结束行号 (含)") Integer endLine,
+            @JsonPropertyDescription("只读前 N 行") Integer head,
+            @JsonPropertyDescription("只读最后 N 行") Integer tail) {
+
+        public Request(String filePath) {
+            this(filePath, null, null, null, null, null, null);
+        }
+
+        FileWindowReader.Window window() {
+            return new FileWindowReader.Window(offset, length, startLine, endLine, head, tail);
+        }
+    }
 
     // 2. 实现核心逻辑
     @Override
     public String apply(Request request) {
         log.info("⚙️ [工具触发] 正在读取文件: {}", request.filePath());
         try {
-            // 为了安全，我们暂时只允许读取当前项目下的文件
-            // System.getProperty("user.dir") 获取项目根路径
-            Path path = Paths.get(System.getProperty("user.dir"), request.filePath());
+            // 为了安全，只允许读取项目根目录 (codehub.tools.fs.root) 下的文件
+            Path path = sandbox.resolve(request.filePath());
 
             if (!Files.exists(path)) {
                 return "❌ 错误：文件不存在 -> " + request.filePath();
             }
 
-            return Files.readString(path);
+            return reader.read(path, request.window());
         } catch (Exception e) {
             log.error("读取文件失败", e);
             return "❌ 读取发生异常: " + e.getMessage();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,39 @@
+package com.pingyu.codehubbackend.tool;
+
+import com.pingyu.codehubbackend.common.SingleFlight;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * 请求合并的工具外壳 (装饰器)
+ * 多个会话同时发起参数相同的调用时，只有第一个真正打到 MCP 子进程，其余等它的结果
+ */
+public class SingleFlightToolCallback implements ToolCallback {
+
+    private final ToolCallback delegate;
+    private final SingleFlight<String> singleFlight;
+    // 参数 -> 合并 Key (与缓存共用同一套规范化规则)
+    private final UnaryOperator<String> keyFunction;
+
+    public SingleFlightToolCallback(ToolCallback delegate, SingleFlight<String> singleFlight, UnaryOperator<String> keyFunction) {
+        this.delegate = delegate;
+        this.singleFlight = singleFlight;
+        this.keyFunction = keyFunction;
+    }
+
+    @Override
+    public String getName() { return delegate.getName(); }
+
+    @Override
+    public String getDescription() { return delegate.getDescription(); }
+
+    @Override
+    public ToolDefinition getToolDefinition() { return delegate.getToolDefinition(); }
+
+    @Override
+    public String call(String jsonArgs) {
+        return singleFlight.execute(keyFunction.apply(jsonArgs), () -> delegate.call(jsonArgs));
+    }
+}
@@ -0,0 +1,239 @@
+package com.pingyu.codehubbackend.tool;
+
+import cn.hutool.cache.Cache;
+import cn.hutool.cache.CacheUtil;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 智码 - 工具结果缓存
+ * 作用：同一个 read_file 路径、几乎相同的 tavily_search 查询，不论来自同一会话还是不同用户，
+ *      都只走一次 MCP 子进程，后面直接命中缓存。
+ * 规则：
+ * 1. Key = 工具名 + 规范化后的 JSON 参数 (键排序、空白折叠，搜索词忽略大小写)；
+ * 2. 每个工具单独配置 TTL (codehub.tools.cache.ttl.<工具名>)，没配置的工具不缓存；
+ * 3. 容量有上限，淘汰策略可选 LRU / LFU；
+ * 4. read_file 命中时会核对文件 mtime，文件被改过就作废重读。
+ */
+@Component
+public class ToolResultCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ToolResultCache.class);
+
+    private static final String READ_FILE_TOOL = "read_file";
+    private static final String SEARCH_TOOL = "tavily_search";
+
+    private final ObjectMapper mapper = new ObjectMapper().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    private final boolean enabled;
+    private final int maxEntryChars;
+    private final Path fileRoot;
+    private final Environment environment;
+    private final Cache<String, CachedResult> cache;
+    private final Map<String, ToolStats> stats = new ConcurrentHashMap<>();
+
+    /** 缓存条目：read_file 额外记录文件和当时的 mtime */
+    private record CachedResult(String value, Path file, long lastModified) {}
+
+    /** 单个工具的命中统计 */
+    public static class ToolStats {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder invalidations = new LongAdder();
+
+        public long getHits() { return hits.sum(); }
+        public long getMisses() { return misses.sum(); }
+        public long getInvalidations() { return invalidations.sum(); }
+
+        public double getHitRate() {
+            long total = getHits() + getMisses();
+            return total == 0 ? 0 : (double) getHits() / total;
+        }
+    }
+
+    public ToolResultCache(@Value("${codehub.tools.cache.enabled:true}") boolean enabled,
+                           @Value("${codehub.tools.cache.capacity:1024}") int capacity,
+                           @Value("${codehub.tools.cache.policy:lru}") String policy,
+                           @Value("${codehub.tools.cache.max-entry-chars:200000}") int maxEntryChars,
+                           @Value("${codehub.tools.fs.root:.}") String fileRoot,
+                           Environment environment) {
+        this.enabled = enabled;
+        this.maxEntryChars = maxEntryChars;
+        this.fileRoot = Paths.get(fileRoot).toAbsolutePath().normalize();
+        this.environment = environment;
+        this.cache = "lfu".equalsIgnoreCase(policy) ? CacheUtil.newLFUCache(capacity) : CacheUtil.newLRUCache(capacity);
+        log.info("🗃️ [ToolResultCache] 工具缓存已启用: {}, 策略: {}, 容量: {}", enabled, policy, capacity);
+    }
+
+    /**
+     * 给工具套上缓存外壳；没配置 TTL 的工具原样返回
+     */
+    public ToolCallback wrap(ToolCallback delegate) {
+        Duration ttl = environment.getProperty("codehub.tools.cache.ttl." + delegate.getName(), Duration.class);
+        if (!enabled || ttl == null || ttl.isZero() || ttl.isNegative()) {
+            return delegate;
+        }
+        log.info("🗃️ [ToolResultCache] 工具 [{}] 启用缓存，TTL: {}", delegate.getName(), ttl);
+        return new CachingToolCallback(delegate, this, ttl);
+    }
+
+    /**
+     * 查缓存 (read_file 会顺带校验 mtime)
+     * @return 命中返回结果，未命中返回 null
+     */
+    String get(String toolName, String key) {
+        ToolStats toolStats = statsOf(toolName);
+        CachedResult cached = cache.get(key);
+        if (cached != null && cached.file() != null && lastModified(cached.file()) != cached.lastModified()) {
+            // 文件被改过了，这条缓存作废
+            cache.remove(key);
+            toolStats.invalidations.increment();
+            log.info("♻️ [ToolResultCache] 文件已变更，缓存作废: {}", cached.file());
+            cached = null;
+        }
+
+        if (cached == null) {
+            toolStats.misses.increment();
+            return null;
+        }
+        toolStats.hits.increment();
+        log.info("🎯 [ToolResultCache] 命中缓存: {}", key);
+        return cached.value();
+    }
+
+    /**
+     * 调用工具之前记下文件 mtime (只对 read_file 有意义)，写缓存时再核对一次
+     */
+    long lastModifiedBeforeCall(String toolName, String argsJson) {
+        if (!READ_FILE_TOOL.equals(toolName)) return 0;
+        Path file = resolveReadFilePath(argsJson);
+        return file == null ? -1 : lastModified(file);
+    }
+
+    /**
+     * @param lastModifiedBefore 调用前的 mtime ({@link #lastModifiedBeforeCall})
+     */
+    void put(String toolName, String key, String argsJson, String value, Duration ttl, long lastModifiedBefore) {
+        // 错误结果和超大结果不缓存
+        if (value == null || value.startsWith("Error:") || value.length() > maxEntryChars) return;
+
+        Path file = null;
+        if (READ_FILE_TOOL.equals(toolName)) {
+            file = resolveReadFilePath(argsJson);
+            if (file == null || lastModifiedBefore < 0) return;
+            // 读的过程中文件被改了：结果可能是旧内容，不能挂在新 mtime 下当成新鲜的
+            if (lastModified(file) != lastModifiedBefore) {
+                log.info("♻️ [ToolResultCache] 读取期间文件有变更，本次结果不缓存: {}", file);
+                return;
+            }
+        }
+        cache.put(key, new CachedResult(value, file, lastModifiedBefore), ttl.toMillis());
+    }
+
+    /**
+     * 规范化参数，生成缓存 Key
+     */
+    public String cacheKey(String toolName, String argsJson) {
+        try {
+            JsonNode node = normalize(mapper.readTree(argsJson), SEARCH_TOOL.equals(toolName));
+            return toolName + ":" + mapper.writeValueAsString(node);
+        } catch (Exception e) {
+            // 参数不是合法 JSON，就按原文做 Key
+            return toolName + ":" + (argsJson == null ? "" : argsJson.trim());
+        }
+    }
+
+    public Map<String, ToolStats> getStats() {
+        return stats;
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    private JsonNode normalize(JsonNode node, boolean ignoreCase) {
+        if (node == null) return JsonNodeFactory.instance.nullNode();
+        if (node.isObject()) {
+            // 键排序，保证 {"a":1,"b":2} 和 {"b":2,"a":1} 是同一个 Key
+            List<String> names = new ArrayList<>();
+            Iterator<String> it = node.fieldNames();
+            it.forEachRemaining(names::add);
+            names.sort(String::compareTo);
+            ObjectNode sorted = JsonNodeFactory.instance.objectNode();
+            for (String name : names) {
+                sorted.set(name, normalize(node.get(name), ignoreCase));
+            }
+            return sorted;
+        }
+        if (node.isArray()) {
+            ArrayNode array = JsonNodeFactory.instance.arrayNode();
+            node.forEach(child -> array.add(normalize(child, ignoreCase)));
+            return array;
+        }
+        if (node.isTextual()) {
+            String text = node.asText().trim().replaceAll("\\s+", " ");
+            return JsonNodeFactory.instance.textNode(ignoreCase ? text.toLowerCase() : text);
+        }
+        return node;
+    }
+
+    private Path resolveReadFilePath(String argsJson) {
+        try {
+            JsonNode node = mapper.readTree(argsJson);
+            JsonNode path = node.has("path") ? node.get("path") : node.get("filePath");
+            if (path == null) return null;
+            return fileRoot.resolve(path.asText()).normalize();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private ToolStats statsOf(String toolName) {
+        return stats.computeIfAbsent(toolName, k -> new ToolStats());
+    }
+
+    /**
+     * 汇总指标 (给运维接口用)
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("size", size());
+        result.put("tools", stats);
+        return result;
+    }
+}
@@ -0,0 +1,89 @@
+package com.pingyu.codehubbackend.tool.fs;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 智码 - 项目目录监听 (代码类索引的增量更新入口)
+ * 用 {@link RecursiveWatcher} 监听 codehub.tools.fs.root，把每一批变更的文件通知给所有 {@link FileChangeListener}。
+ */
+@Component
+public class DirectoryWatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(DirectoryWatcher.class);
+
+    /** 文件变更回调；changed 里既有新增/修改的文件，也有已删除的 (调用方自行判断 Files.exists，删除的可能是整个目录) */
+    public interface FileChangeListener {
+        void onFilesChanged(Set<Path> changed);
+
+        /** 事件溢出 (OVERFLOW)，不知道具体变了什么，需要全量重新扫描 */
+        void onRescanRequired();
+    }
+
+    private final FsSandbox sandbox;
+    private final ObjectProvider<FileChangeListener> listeners;
+    private final boolean enabled;
+    private final Duration debounce;
+    private final Set<String> excludeDirs;
+
+    private RecursiveWatcher watcher;
+
+    public DirectoryWatcher(FsSandbox sandbox, ObjectProvider<FileChangeListener> listeners,
+                            @Value("${codehub.tools.watch.enabled:true}") boolean enabled,
+                            @Value("${codehub.tools.watch.debounce:500ms}") Duration debounce,
+                            @Value("${codehub.tools.search.exclude-dirs:.git,target,build,node_modules,.idea,.mvn,.gradle,dist}") Set<String> excludeDirs) {
+        this.sandbox = sandbox;
+        this.listeners = listeners;
+        this.enabled = enabled;
+        this.debounce = debounce;
+        this.excludeDirs = excludeDirs;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) return;
+        watcher = new RecursiveWatcher("project", List.of(sandbox.getRoot()), excludeDirs, debounce, this::dispatch, this::rescan);
+        watcher.start();
+    }
+
+    private void dispatch(Set<Path> changed) {
+        log.info("👀 [DirectoryWatcher] 检测到 {} 个文件变更", changed.size());
+        for (FileChangeListener listener : listeners.orderedStream().toList()) {
+            try {
+                listener.onFilesChanged(changed);
+            } catch (Exception e) {
+                log.warn("⚠️ [DirectoryWatcher] {} 处理变更失败: {}", listener.getClass().getSimpleName(), e.getMessage());
+            }
+        }
+    }
+
+    private void rescan() {
+        log.info("👀 [DirectoryWatcher] 事件溢出，通知所有索引全量重建");
+        for (FileChangeListener listener : listeners.orderedStream().toList()) {
+            try {
+                listener.onRescanRequired();
+            } catch (Exception e) {
+                log.warn("⚠️ [DirectoryWatcher] {} 全量重建失败: {}", listener.getClass().getSimpleName(), e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.pingyu.codehubbackend.tool.fs;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 智码 - 窗口化文件读取器 (ReadFileTool 和本地 read_file 共用)
+ * 问题：整文件 Files.readString，几 MB 的日志/生成代码会整个进堆，再整个塞进 prompt。
+ * 做法：
+ * 1. 支持字节区间 (offset/length)、行区间 (startLine/endLine)、头 N 行 (head)、尾 N 行 (tail)；
+ * 2. 流式读取：按块解码、边读边数行，读到窗口末尾就停，任何时候在堆上的只有窗口本身；
+ * 3. 硬上限 max-read-bytes：超出就截断，并在末尾附上 [内容已截断] 标记和文件统计 (大小、编码)；
+ *    不统计总行数 (那要把整个文件扫一遍)，窗口本身不超过上限，直接读进堆；
+ *    原先 "大窗口走 mmap" 的设计已去掉：任何窗口都被截在 max-read-bytes 以内，到不了原来 1MB 的映射阈值；
+ * 4. 编码探测：BOM -> 严格 UTF-8 -> GB18030 兜底，不再默认一切都是 UTF-8。
+ */
+@Component
+public class FileWindowReader {
+
+    private static final int SNIFF_BYTES = 64 * 1024;
+    private static final int CHUNK = 8 * 1024;
+    private static final Charset GB18030 = Charset.forName("GB18030");
+
+    private final long maxReadBytes;
+
+    /**
+     * 读取窗口；字段全为 null 表示整文件 (仍受上限约束)
+     * 优先级：tail > head > startLine/endLine > offset/length
+     */
+    public record Window(Long offset, Long length, Integer startLine, Integer endLine, Integer head, Integer tail) {
+        public static final Window WHOLE = new Window(null, null, null, null, null, null);
+    }
+
+    /** 探测结果：编码 + BOM 长度 (正文从 BOM 之后开始) */
+    record Detected(Charset charset, int bomLength) {}
+
+    public FileWindowReader(@Value("${codehub.tools.fs.max-read-bytes:256KB}") DataSize maxReadBytes) {
+        this.maxReadBytes = maxReadBytes.toBytes();
+    }
+
+    public String read(Path file, Window window) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Detected detected = detect(channel);
+            if (window.tail() != null) {
+                return tail(channel, detected, window.tail());
+            }
+            if (window.head() != null) {
+                return lines(channel, detected, 1, window.head());
+            }
+            if (window.startLine() != null || window.endLine() != null) {
+                int start = window.startLine() == null ? 1 : window.startLine();
+                int end = window.endLine() == null ? Integer.MAX_VALUE : window.endLine();
+                return lines(channel, detected, start, end);
+            }
+            long from = window.offset() == null ? detected.bomLength() : window.offset();
+            long remaining = Math.max(0, channel.size() - from);
+            long length = window.length() == null ? remaining : Math.min(window.length(), remaining);
+            return bytes(channel, detected, from, length);
+        }
+    }
+
+    // ======================================================
+    // 1. 字节区间：截到上限后一次 read
+    // ======================================================
+    private String bytes(FileChannel channel, Detected detected, long from, long length) throws IOException {
+        long capped = Math.min(length, maxReadBytes);
+        String text = decode(readRange(channel, from, capped), detected.charset());
+        return capped < length ? text + truncatedMarker(channel, detected, "字节 " + from + "-" + (from + capped)) : text;
+    }
+
+    /** 调用方保证 length 不超过 max-read-bytes (或探测样本大小) */
+    private ByteBuffer readRange(FileChannel channel, long from, long length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        long position = from;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) break;
+            position += read;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    // ======================================================
+    // 2. 行区间：按块解码、逐字符数行，读过 endLine 立即停止
+    //    (不用 readLine，防止一行几 MB 的压缩文件整行进堆)
+    // ======================================================
+    private String lines(FileChannel channel, Detected detected, int startLine, int endLine) throws IOException {
+        channel.position(detected.bomLength());
+        // 不关闭 reader：关闭会连带关闭 channel，由外层 try 负责
+        Reader reader = Channels.newReader(channel, lenientDecoder(detected.charset()), CHUNK);
+        StringBuilder out = new StringBuilder();
+        char[] chunk = new char[CHUNK];
+        int line = 1;
+        int read;
+        while (line <= endLine && (read = reader.read(chunk)) >= 0) {
+            for (int i = 0; i < read && line <= endLine; i++) {
+                char c = chunk[i];
+                if (line >= startLine) {
+                    if (out.length() >= maxReadBytes) {
+                        return out + truncatedMarker(channel, detected, "行 " + startLine + "-" + line);
+                    }
+                    out.append(c);
+                }
+                if (c == '\n') line++;
+            }
+        }
+        return out.toString();
+    }
+
+    // ======================================================
+    // 3. 尾 N 行：从文件末尾按块往回找换行符
+    // ======================================================
+    private String tail(FileChannel channel, Detected detected, int lines) throws IOException {
+        if (lines <= 0) return "";
+        if (isUtf16(detected.charset())) {
+            // UTF-16 的 0x0A 可能出现在任意字符里，只能正向数行
+            long total = countLines(channel, detected);
+            return lines(channel, detected, (int) Math.max(1, total - lines + 1), Integer.MAX_VALUE);
+        }
+        long size = channel.size();
+        long position = size;
+        long start = detected.bomLength();
+        int found = 0;
+        boolean skipTrailingNewline = true;
+        ByteBuffer buffer = ByteBuffer.allocate(CHUNK);
+        scan:
+        while (position > detected.bomLength()) {
+            int length = (int) Math.min(CHUNK, position - detected.bomLength());
+            position -= length;
+            buffer.clear().limit(length);
+            channel.read(buffer, position);
+            for (int i = length - 1; i >= 0; i--) {
+                if (buffer.get(i) != '\n') {
+                    skipTrailingNewline = false;
+                    continue;
+                }
+                // 文件末尾的换行不算一行的分隔
+                if (skipTrailingNewline) {
+                    skipTrailingNewline = false;
+                    continue;
+                }
+                if (++found == lines) {
+                    start = position + i + 1;
+                    break scan;
+                }
+            }
+        }
+        long length = size - start;
+        if (length <= maxReadBytes) {
+            return decode(readRange(channel, start, length), detected.charset());
+        }
+        // 尾部超过上限：保留最后 max-read-bytes，标记放在开头
+        long from = size - maxReadBytes;
+        return truncatedMarker(channel, detected, "字节 " + from + "-" + size).stripLeading() + "\n\n"
+                + decode(readRange(channel, from, maxReadBytes), detected.charset());
+    }
+
+    // ======================================================
+    // 4. 编码探测：BOM -> 严格 UTF-8 -> GB18030
+    // ======================================================
+    Detected detect(FileChannel channel) throws IOException {
+        ByteBuffer sample = readRange(channel, 0, Math.min(channel.size(), SNIFF_BYTES));
+        int b0 = sample.remaining() > 0 ? sample.get(0) & 0xFF : -1;
+        int b1 = sample.remaining() > 1 ? sample.get(1) & 0xFF : -1;
+        int b2 = sample.remaining() > 2 ? sample.get(2) & 0xFF : -1;
+        if (b0 == 0xEF && b1 == 0xBB && b2 == 0xBF) return new Detected(StandardCharsets.UTF_8, 3);
+        if (b0 == 0xFE && b1 == 0xFF) return new Detected(StandardCharsets.UTF_16BE, 2);
+        if (b0 == 0xFF && b1 == 0xFE) return new Detected(StandardCharsets.UTF_16LE, 2);
+
+        CharsetDecoder strict = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        // endOfInput=false：样本末尾被截断的半个字符不算错误
+        CoderResult result = strict.decode(sample, CharBuffer.allocate(sample.remaining()), false);
+        return new Detected(result.isError() ? GB18030 : StandardCharsets.UTF_8, 0);
+    }
+
+    // ======================================================
+    // 工具方法
+    // ======================================================
+    private String truncatedMarker(FileChannel channel, Detected detected, String returned) throws IOException {
+        return "\n\n...[内容已截断] 文件大小: " + channel.size() + " 字节, 编码: "
+                + detected.charset().name() + "; 本次返回: " + returned + " (上限 " + maxReadBytes + " 字节)。"
+                + "可用 offset/length、startLine/endLine、head/tail 参数分段读取。";
+    }
+
+    /** 流式数行，内存占用只有一个块 */
+    long countLines(FileChannel channel, Detected detected) throws IOException {
+        long size = channel.size();
+        if (size <= detected.bomLength()) return 0;
+        long count = 0;
+        int last = -1;
+        if (isUtf16(detected.charset())) {
+            channel.position(detected.bomLength());
+            Reader reader = Channels.newReader(channel, lenientDecoder(detected.charset()), CHUNK);
+            char[] chunk = new char[CHUNK];
+            int read;
+            while ((read = reader.read(chunk)) >= 0) {
+                for (int i = 0; i < read; i++) {
+                    if (chunk[i] == '\n') count++;
+                }
+                if (read > 0) last = chunk[read - 1];
+            }
+        } else {
+            ByteBuffer buffer = ByteBuffer.allocate(CHUNK);
+            long position = detected.bomLength();
+            while (position < size) {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                if (read <= 0) break;
+                for (int i = 0; i < read; i++) {
+                    if (buffer.get(i) == '\n') count++;
+                }
+                last = buffer.get(read - 1);
+                position += read;
+            }
+        }
+        // 最后一行没有换行符也算一行
+        return last == '\n' ? count : count + 1;
+    }
+
+    private String decode(ByteBuffer bytes, Charset charset) throws CharacterCodingException {
+        // 区间边界可能切在多字节字符中间，用替换字符兜底而不是报错
+        return lenientDecoder(charset).decode(bytes).toString();
+    }
+
+    private CharsetDecoder lenientDecoder(Charset charset) {
+        return charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    private boolean isUtf16(Charset charset) {
+        return charset.name().startsWith("UTF-16");
+    }
+
+    public long getMaxReadBytes() {
+        return maxReadBytes;
+    }
+}
@@ -0,0 +1,57 @@
+package com.pingyu.codehubbackend.tool.fs;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * 智码 - 文件系统沙箱
+ * 所有本地文件工具都通过这里把 AI 给的路径解析成真实路径，
+ * 规则：只能落在 codehub.tools.fs.root 之内，"../" 和指向外部的软链接一律拒绝。
+ */
+@Component
+public class FsSandbox {
+
+    private final Path root;
+    private final Path realRoot;
+
+    public FsSandbox(@Value("${codehub.tools.fs.root:.}") String root) {
+        this.root = Paths.get(root).toAbsolutePath().normalize();
+        this.realRoot = toRealPathOrSelf(this.root);
+    }
+
+    /**
+     * 解析路径 (相对 root；绝对路径也必须在 root 之内)
+     * @throws SecurityException 路径越界
+     */
+    public Path resolve(String path) {
+        if (path == null || path.isBlank()) {
+            throw new IllegalArgumentException("path 不能为空");
+        }
+        Path resolved = root.resolve(path.trim()).normalize();
+        if (!resolved.startsWith(root)) {
+            throw new SecurityException("Access denied - path outside allowed root: " + path);
+        }
+        // 已存在的文件再按真实路径核对一次，防止软链接逃逸
+        if (Files.exists(resolved) && !toRealPathOrSelf(resolved).startsWith(realRoot)) {
+            throw new SecurityException("Access denied - symlink target outside allowed root: " + path);
+        }
+        return resolved;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    private static Path toRealPathOrSelf(Path path) {
+        try {
+            return path.toRealPath();
+        } catch (IOException e) {
+            return path;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.pingyu.codehubbackend.tool.fs;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.pingyu.codehubbackend.tool.JsonToolCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 智码 - 进程内文件系统工具 (替代 filesystem MCP 子进程)
+ * 问题：原来读一个本地文件要 JSON 序列化 -> stdio 写给 node -> 等回包 -> 解析 TextContent，一次 IPC 往返。
+ * 做法：直接用 NIO 在 JVM 里完成，工具名和参数 Schema 与 MCP 版保持一致，模型无感知：
+ * 1. read_file：交给 {@link FileWindowReader}，支持分段读取，流式读出窗口放进堆 (单次返回有上限 max-read-bytes)；
+ *    没有走内存映射：窗口都被截在上限 (默认 256KB) 以内，远小于 mmap 划算的大小，映射只会多出建立映射的开销；
+ * 2. list_directory：输出 [FILE] / [DIR] 前缀的列表，格式同 MCP 版；
+ * 3. get_file_info：大小、时间戳、类型、权限。
+ * 所有路径都经过 {@link FsSandbox} 校验，只能访问 codehub.tools.fs.root 之内。
+ */
+@Component
+public class LocalFsTools {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalFsTools.class);
+
+    private static final String PATH_SCHEMA =
+            "{\"type\":\"object\",\"properties\":{\"path\":{\"type\":\"string\",\"description\":\"Relative path\"}},\"required\":[\"path\"]}";
+
+    // read_file 在 path 之外多了几个可选的分段参数，不传时行为与 MCP 版一致
+    private static final String READ_FILE_SCHEMA = """
+            {"type":"object","properties":{
+            "path":{"type":"string","description":"Relative path"},
+            "offset":{"type":"integer","description":"Byte offset to start reading from"},
+            "length":{"type":"integer","description":"Number of bytes to read"},
+            "startLine":{"type":"integer","description":"First line to read (1-based, inclusive)"},
+            "endLine":{"type":"integer","description":"Last line to read (inclusive)"},
+            "head":{"type":"integer","description":"Only read the first N lines"},
+            "tail":{"type":"integer","description":"Only read the last N lines"}},
+            "required":["path"]}""";
+
+    private final FsSandbox sandbox;
+    private final FileWindowReader reader;
+
+    public LocalFsTools(FsSandbox sandbox, FileWindowReader reader) {
+        this.sandbox = sandbox;
+        this.reader = reader;
+        log.info("📂 [LocalFsTools] 本地文件工具已就绪，根目录: {}, 单次读取上限: {} 字节", sandbox.getRoot(), reader.getMaxReadBytes());
+    }
+
+    /**
+     * 三个工具，顺序与 MCP 版一致
+     */
+    public List<ToolCallback> getToolCallbacks() {
+        return List.of(
+                new JsonToolCallback("read_file", "Reads a file from the local filesystem. Large files are truncated; use offset/length, startLine/endLine or head/tail to page through them",
+                        READ_FILE_SCHEMA, args -> withPath(args, path -> readFile(path, window(args)))),
+                new JsonToolCallback("list_directory", "Lists files and directories in the given path. Entries are prefixed with [FILE] or [DIR]",
+                        PATH_SCHEMA, args -> withPath(args, this::listDirectory)),
+                new JsonToolCallback("get_file_info", "Retrieves metadata about a file or directory: size, timestamps, type and permissions",
+                        PATH_SCHEMA, args -> withPath(args, this::getFileInfo)));
+    }
+
+    // ======================================================
+    // 1. read_file
+    // ======================================================
+    String readFile(Path path, FileWindowReader.Window window) throws IOException {
+        if (Files.isDirectory(path)) {
+            throw new IOException("Not a file: " + sandbox.getRoot().relativize(path));
+        }
+        return reader.read(path, window);
+    }
+
+    private FileWindowReader.Window window(JsonNode args) {
+        return new FileWindowReader.Window(longArg(args, "offset"), longArg(args, "length"),
+                intArg(args, "startLine"), intArg(args, "endLine"), intArg(args, "head"), intArg(args, "tail"));
+    }
+
+    private Long longArg(JsonNode args, String name) {
+        JsonNode node = args.get(name);
+        return node == null || node.isNull() ? null : node.asLong();
+    }
+
+    private Integer intArg(JsonNode args, String name) {
+        JsonNode node = args.get(name);
+        return node == null || node.isNull() ? null : node.asInt();
+    }
+
+    // ======================================================
+    // 2. list_directory
+    // ======================================================
+    String listDirectory(Path path) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+            for (Path child : stream) {
+                lines.add((Files.isDirectory(child) ? "[DIR] " : "[FILE] ") + child.getFileName());
+            }
+        }
+        lines.sort(String::compareTo);
+        return String.join("\n", lines);
+    }
+
+    // ======================================================
+    // 3. get_file_info
+    // ======================================================
+    String getFileInfo(Path path) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        String permissions;
+        try {
+            permissions = PosixFilePermissions.toString(Files.getPosixFilePermissions(path));
+        } catch (UnsupportedOperationException e) {
+            // Windows 没有 POSIX 权限
+            permissions = (Files.isReadable(path) ? "r" : "-") + (Files.isWritable(path) ? "w" : "-") + (Files.isExecutable(path) ? "x" : "-");
+        }
+        return "size: " + attrs.size() + "\n"
+                + "created: " + attrs.creationTime() + "\n"
+                + "modified: " + attrs.lastModifiedTime() + "\n"
+                + "accessed: " + attrs.lastAccessTime() + "\n"
+                + "isDirectory: " + attrs.isDirectory() + "\n"
+                + "isFile: " + attrs.isRegularFile() + "\n"
+                + "permissions: " + permissions;
+    }
+
+    @FunctionalInterface
+    interface PathOperation {
+        String apply(Path path) throws IOException;
+    }
+
+    private String withPath(JsonNode args, PathOperation operation) {
+        String path = args.has("path") ? args.get("path").asText() : args.path("filePath").asText(null);
+        try {
+            return operation.apply(sandbox.resolve(path));
+        } catch (NoSuchFileException e) {
+            return "Error: ENOENT: no such file or directory, '" + path + "'";
+        } catch (IOException | RuntimeException e) {
+            return "Error: " + e.getMessage();
+        }
+    }
+}
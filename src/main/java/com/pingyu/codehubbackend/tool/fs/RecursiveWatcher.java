@@ -0,0 +1,195 @@
+package com.pingyu.codehubbackend.tool.fs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 递归目录监听 (JDK WatchService 封装)
+ * 1. 递归注册若干根目录，跳过排除目录，新建的子目录自动补注册；
+ * 2. 事件先攒一个防抖窗口 (保存文件时编辑器往往连发好几个事件)，再把变更的文件集合一次性交给回调；
+ *    一直有事件进来 (例如根目录下有个不停写入的日志) 时，最多攒 MAX_BATCH_DEBOUNCES 个防抖窗口就强制交付；
+ * 3. 回调里既有新增/修改的文件，也有已删除的 (调用方自行判断 Files.exists)；
+ *    删除 / 移走整个目录时只会收到目录本身这一个路径，调用方要把这个前缀下的条目都清掉；
+ * 4. 事件太多被系统丢弃 (OVERFLOW，例如 git checkout 切分支) 时无法知道具体变了什么，
+ *    重新注册整棵目录树并调用 onOverflow，由调用方全量重新扫描。
+ */
+public class RecursiveWatcher implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(RecursiveWatcher.class);
+
+    /** 一批事件最多攒多少个防抖窗口 */
+    private static final int MAX_BATCH_DEBOUNCES = 10;
+
+    private final String name;
+    private final List<Path> roots;
+    private final Set<String> excludeDirs;
+    private final Duration debounce;
+    private final Consumer<Set<Path>> onChange;
+    private final Runnable onOverflow;
+
+    private final Map<WatchKey, Path> keys = new HashMap<>();
+    private volatile WatchService watchService;
+
+    public RecursiveWatcher(String name, List<Path> roots, Set<String> excludeDirs, Duration debounce,
+                            Consumer<Set<Path>> onChange, Runnable onOverflow) {
+        this.name = name;
+        this.roots = roots;
+        this.excludeDirs = excludeDirs;
+        this.debounce = debounce;
+        this.onChange = onChange;
+        this.onOverflow = onOverflow;
+    }
+
+    /**
+     * 在后台虚拟线程里开始监听
+     */
+    public void start() {
+        Thread.ofVirtual().name("watcher-" + name).start(() -> {
+            try {
+                watchService = FileSystems.getDefault().newWatchService();
+                for (Path root : roots) {
+                    if (Files.isDirectory(root)) {
+                        registerTree(root);
+                    } else {
+                        log.warn("⚠️ [RecursiveWatcher:{}] 目录不存在，跳过监听: {}", name, root);
+                    }
+                }
+                log.info("👀 [RecursiveWatcher:{}] 开始监听 {} ({} 个目录)", name, roots, keys.size());
+                loop();
+            } catch (ClosedWatchServiceException e) {
+                log.info("👀 [RecursiveWatcher:{}] 已停止", name);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("❌ [RecursiveWatcher:{}] 目录监听异常退出", name, e);
+            }
+        });
+    }
+
+    private void loop() throws InterruptedException {
+        while (true) {
+            WatchKey key = watchService.take();
+            Set<Path> changed = new LinkedHashSet<>();
+            boolean overflow = drain(key, changed);
+            // 防抖：窗口内的后续事件合并成一批，但整批最多攒到 deadline
+            long deadline = System.nanoTime() + debounce.toNanos() * MAX_BATCH_DEBOUNCES;
+            WatchKey next;
+            while ((next = watchService.poll(Math.min(debounce.toNanos(), Math.max(0, deadline - System.nanoTime())),
+                    TimeUnit.NANOSECONDS)) != null) {
+                overflow |= drain(next, changed);
+                if (System.nanoTime() >= deadline) break;
+            }
+            if (overflow) {
+                // 丢了事件，单个文件的变更已经没有意义，全量重扫 (顺带补注册期间新建的目录)
+                log.warn("⚠️ [RecursiveWatcher:{}] 事件溢出，触发全量重新扫描", name);
+                roots.stream().filter(Files::isDirectory).forEach(this::registerTree);
+                try {
+                    onOverflow.run();
+                } catch (Exception e) {
+                    log.warn("⚠️ [RecursiveWatcher:{}] 全量重新扫描失败: {}", name, e.getMessage());
+                }
+                continue;
+            }
+            if (!changed.isEmpty()) {
+                try {
+                    onChange.accept(Set.copyOf(changed));
+                } catch (Exception e) {
+                    log.warn("⚠️ [RecursiveWatcher:{}] 处理变更失败: {}", name, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 是否出现了 OVERFLOW
+     */
+    private boolean drain(WatchKey key, Set<Path> changed) {
+        Path dir = keys.get(key);
+        boolean overflow = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+                continue;
+            }
+            if (dir == null) continue;
+            Path path = dir.resolve((Path) event.context());
+            if (Files.isDirectory(path)) {
+                // 新建目录：补注册，目录里已有的文件也算变更
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && !isExcluded(path)) {
+                    registerTree(path);
+                    collectFiles(path, changed);
+                }
+                continue;
+            }
+            changed.add(path);
+        }
+        if (!key.reset()) {
+            keys.remove(key);
+        }
+        return overflow;
+    }
+
+    private void registerTree(Path start) {
+        try {
+            Files.walkFileTree(start, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    if (!roots.contains(dir) && isExcluded(dir)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                    keys.put(key, dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            log.warn("⚠️ [RecursiveWatcher:{}] 注册目录失败 {}: {}", name, start, e.getMessage());
+        }
+    }
+
+    private void collectFiles(Path dir, Set<Path> changed) {
+        try (var stream = Files.walk(dir)) {
+            stream.filter(Files::isRegularFile).forEach(changed::add);
+        } catch (IOException e) {
+            log.debug("遍历新目录失败 {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private boolean isExcluded(Path dir) {
+        return dir.getFileName() != null && excludeDirs.contains(dir.getFileName().toString());
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.pingyu.codehubbackend.tool.mcp;
+
+import io.modelcontextprotocol.client.McpSyncClient;
+import io.modelcontextprotocol.spec.McpSchema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 智码 - MCP 子进程池 (自愈版)
+ * 问题：原来每个工具只有一个 McpSyncClient (一个 node 子进程)，全 JVM 的工具调用都排队走它，进程挂了也不会重启。
+ * 做法：
+ * 1. 每个工具拉起 N 个 MCP 子进程，调用时挑当前并发最少的那个 (least-loaded)；
+ * 2. 后台定时 ping 每个子进程，ping 不通或者调用抛异常就判为不健康；
+ * 3. 不健康的子进程按指数退避自动重启 (1s, 2s, 4s ... 封顶 max-backoff)；
+ * 4. 单次调用超时由 factory 按配置构建，不再写死 10s / 60s；
+ * 5. 支持后台预热 (startAsync) 和懒启动 (首次调用时才拉起)，调用方会等预热完成而不是直接失败；
+ * 6. 每个位置各自加锁，预热时所有子进程并行拉起，一个进程重启慢不会卡住其他进程的体检。
+ */
+public class McpClientPool implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(McpClientPool.class);
+
+    private static final Duration INITIAL_BACKOFF = Duration.ofSeconds(1);
+
+    private final String name;
+    private final Supplier<McpSyncClient> clientFactory;
+    private final Duration maxBackoff;
+    private final List<Slot> slots = new ArrayList<>();
+    private final ScheduledExecutorService healthChecker;
+
+    // 启动状态：started = 已经开始拉起；ready = 第一轮拉起已结束 (成功与否都算结束)
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+    private volatile Duration startupTimeout = Duration.ofMinutes(2);
+    private volatile long startupMillis = -1;
+
+    /** 池里的一个位置 = 一个 MCP 子进程 */
+    private static class Slot {
+        final int index;
+        volatile McpSyncClient client;
+        volatile boolean healthy;
+        final AtomicInteger inFlight = new AtomicInteger();
+        /** 体检 / 重启只锁这一个位置 */
+        final ReentrantLock lock = new ReentrantLock();
+        int consecutiveFailures;
+        long nextRestartAtMillis;
+        long restarts;
+
+        Slot(int index) {
+            this.index = index;
+        }
+    }
+
+    public McpClientPool(String name, int poolSize, Supplier<McpSyncClient> clientFactory,
+                         Duration healthCheckInterval, Duration maxBackoff) {
+        this.name = name;
+        this.clientFactory = clientFactory;
+        this.maxBackoff = maxBackoff;
+        for (int i = 0; i < Math.max(1, poolSize); i++) {
+            slots.add(new Slot(i));
+        }
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "mcp-health-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = healthCheckInterval.toMillis();
+        healthChecker.scheduleWithFixedDelay(this::healthCheck, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 同步拉起所有子进程 (失败的位置交给健康检查按退避重试)
+     */
+    public void start() {
+        if (!started.compareAndSet(false, true)) {
+            awaitReady();
+            return;
+        }
+        long begin = System.currentTimeMillis();
+        log.info("🔌 [McpClientPool:{}] 正在拉起 {} 个 MCP 子进程...", name, slots.size());
+        try {
+            // 每个子进程一个虚拟线程并行拉起 (node 冷启动是秒级的，串行起 N 个就是 N 倍)
+            List<Thread> starters = new ArrayList<>();
+            for (Slot slot : slots) {
+                starters.add(Thread.ofVirtual().name("mcp-start-" + name + "-" + slot.index).start(() -> {
+                    slot.lock.lock();
+                    try {
+                        restart(slot);
+                    } finally {
+                        slot.lock.unlock();
+                    }
+                }));
+            }
+            for (Thread starter : starters) {
+                starter.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            startupMillis = System.currentTimeMillis() - begin;
+            log.info("⏱️ [McpClientPool:{}] 预热结束，耗时 {}ms，健康进程 {}/{}", name, startupMillis, getHealthyCount(), slots.size());
+            ready.complete(null);
+        }
+    }
+
+    /**
+     * 后台预热：立即返回，子进程在虚拟线程里拉起
+     */
+    public CompletableFuture<Void> startAsync() {
+        if (!started.get()) {
+            Thread.ofVirtual().name("mcp-warmup-" + name).start(this::start);
+        }
+        return ready;
+    }
+
+    public void setStartupTimeout(Duration startupTimeout) {
+        this.startupTimeout = startupTimeout;
+    }
+
+    /**
+     * 等待预热完成；懒启动模式下由第一个调用方触发预热
+     */
+    private void awaitReady() {
+        if (ready.isDone()) return;
+        startAsync();
+        try {
+            ready.get(startupTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待 MCP 服务 [" + name + "] 预热时被中断", e);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("MCP 服务 [" + name + "] 预热超时 (" + startupTimeout.toSeconds() + "s)", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("MCP 服务 [" + name + "] 预热失败", e.getCause());
+        }
+    }
+
+    /**
+     * 调用工具：挑一个最闲的健康子进程
+     */
+    public McpSchema.CallToolResult callTool(McpSchema.CallToolRequest request) {
+        awaitReady();
+        Slot slot = pickLeastLoaded();
+        // 挑中之后 client 可能被健康检查置空 (正在重启)，只读一次
+        McpSyncClient client = slot == null ? null : slot.client;
+        if (client == null) {
+            throw new IllegalStateException("MCP 服务 [" + name + "] 暂无可用进程，正在自动重启中");
+        }
+
+        slot.inFlight.incrementAndGet();
+        try {
+            return client.callTool(request);
+        } catch (RuntimeException e) {
+            log.warn("⚠️ [McpClientPool:{}] 进程 #{} 调用失败，标记为不健康: {}", name, slot.index, e.getMessage());
+            slot.healthy = false;
+            // 不等下一轮定时检查，立刻安排一次体检
+            Thread.ofVirtual().name("mcp-check-" + name + "-" + slot.index).start(() -> checkSlotQuietly(slot));
+            throw e;
+        } finally {
+            slot.inFlight.decrementAndGet();
+        }
+    }
+
+    private Slot pickLeastLoaded() {
+        Slot best = null;
+        for (Slot slot : slots) {
+            if (!slot.healthy || slot.client == null) continue;
+            if (best == null || slot.inFlight.get() < best.inFlight.get()) {
+                best = slot;
+            }
+        }
+        return best;
+    }
+
+    private void healthCheck() {
+        // 懒启动模式下还没人用过，不要替它拉起进程
+        if (!ready.isDone()) return;
+        // 各位置并行体检，某个进程 ping 超时或重启慢不拖累其他进程
+        for (Slot slot : slots) {
+            Thread.ofVirtual().name("mcp-check-" + name + "-" + slot.index).start(() -> checkSlotQuietly(slot));
+        }
+    }
+
+    private void checkSlotQuietly(Slot slot) {
+        try {
+            checkSlot(slot);
+        } catch (Exception e) {
+            log.warn("⚠️ [McpClientPool:{}] 健康检查异常: {}", name, e.getMessage());
+        }
+    }
+
+    private void checkSlot(Slot slot) {
+        // 这个位置正在被体检 / 重启，不再排队
+        if (!slot.lock.tryLock()) return;
+        try {
+            McpSyncClient client = slot.client;
+            if (client != null) {
+                try {
+                    client.ping();
+                    slot.healthy = true;
+                    return;
+                } catch (Exception e) {
+                    log.warn("💔 [McpClientPool:{}] 进程 #{} ping 失败: {}", name, slot.index, e.getMessage());
+                    slot.healthy = false;
+                }
+            }
+            if (System.currentTimeMillis() >= slot.nextRestartAtMillis) {
+                restart(slot);
+            }
+        } finally {
+            slot.lock.unlock();
+        }
+    }
+
+    /** 调用方持有 slot.lock */
+    private void restart(Slot slot) {
+        closeQuietly(slot.client);
+        slot.client = null;
+        slot.healthy = false;
+        try {
+            McpSyncClient client = clientFactory.get();
+            client.initialize();
+            slot.client = client;
+            slot.healthy = true;
+            slot.consecutiveFailures = 0;
+            slot.restarts++;
+            log.info("✅ [McpClientPool:{}] 进程 #{} 已就绪", name, slot.index);
+        } catch (Exception e) {
+            slot.consecutiveFailures++;
+            long backoff = Math.min(maxBackoff.toMillis(),
+                    INITIAL_BACKOFF.toMillis() << Math.min(20, slot.consecutiveFailures - 1));
+            slot.nextRestartAtMillis = System.currentTimeMillis() + backoff;
+            log.error("❌ [McpClientPool:{}] 进程 #{} 启动失败 (第 {} 次)，{}ms 后重试: {}",
+                    name, slot.index, slot.consecutiveFailures, backoff, e.getMessage());
+        }
+    }
+
+    private void closeQuietly(McpSyncClient client) {
+        if (client == null) return;
+        try {
+            client.close();
+        } catch (Exception e) {
+            log.debug("关闭 MCP 客户端失败: {}", e.getMessage());
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** 就绪状态：NOT_STARTED / STARTING / READY / DEGRADED (拉起结束但没有健康进程) */
+    public String getState() {
+        if (!started.get()) return "NOT_STARTED";
+        if (!ready.isDone()) return "STARTING";
+        return getHealthyCount() > 0 ? "READY" : "DEGRADED";
+    }
+
+    public int getHealthyCount() {
+        return (int) slots.stream().filter(slot -> slot.healthy).count();
+    }
+
+    /**
+     * 池状态快照 (给运维接口用)
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("name", name);
+        result.put("state", getState());
+        result.put("startupMillis", startupMillis);
+        result.put("size", slots.size());
+        result.put("healthy", getHealthyCount());
+        List<Map<String, Object>> processes = new ArrayList<>();
+        for (Slot slot : slots) {
+            Map<String, Object> process = new LinkedHashMap<>();
+            process.put("index", slot.index);
+            process.put("healthy", slot.healthy);
+            process.put("inFlight", slot.inFlight.get());
+            process.put("restarts", slot.restarts);
+            process.put("consecutiveFailures", slot.consecutiveFailures);
+            processes.add(process);
+        }
+        result.put("processes", processes);
+        return result;
+    }
+
+    @Override
+    public void close() {
+        healthChecker.shutdownNow();
+        for (Slot slot : slots) {
+            closeQuietly(slot.client);
+            slot.client = null;
+            slot.healthy = false;
+        }
+        log.info("🔌 [McpClientPool:{}] 已关闭所有 MCP 子进程", name);
+    }
+}
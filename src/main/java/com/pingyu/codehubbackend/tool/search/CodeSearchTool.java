@@ -0,0 +1,225 @@
+package com.pingyu.codehubbackend.tool.search;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.pingyu.codehubbackend.tool.JsonToolCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 智码 - 代码搜索工具 (search_code)
+ * 一次调用返回 "文件:行号: 内容" 列表，模型据此直接 read_file 目标位置，不用再盲猜路径。
+ * 流程：关键字 -> 必然出现的字面量 -> {@link TrigramIndex} 求候选文件 -> 逐行正则/字面量精确匹配。
+ */
+@Component
+public class CodeSearchTool {
+
+    private static final Logger log = LoggerFactory.getLogger(CodeSearchTool.class);
+
+    private static final int DEFAULT_MAX_RESULTS = 50;
+    private static final int MAX_RESULTS_LIMIT = 200;
+    private static final int MAX_LINE_CHARS = 200;
+    private static final Duration INDEX_WAIT = Duration.ofSeconds(30);
+
+    private static final String SCHEMA = """
+            {"type":"object","properties":{
+            "query":{"type":"string","description":"Text or regular expression to search for"},
+            "regex":{"type":"boolean","description":"Treat query as a Java regular expression (default false)"},
+            "caseSensitive":{"type":"boolean","description":"Case sensitive match (default false)"},
+            "path":{"type":"string","description":"Optional glob to limit files, e.g. src/main/**/*.java"},
+            "maxResults":{"type":"integer","description":"Maximum number of hits to return (default 50)"}},
+            "required":["query"]}""";
+
+    private final TrigramIndex index;
+
+    public CodeSearchTool(TrigramIndex index) {
+        this.index = index;
+    }
+
+    public ToolCallback getToolCallback() {
+        return new JsonToolCallback("search_code",
+                "Searches all project files for a literal string or regex and returns matching lines as path:line: text. Use it to locate code before read_file",
+                SCHEMA, this::search);
+    }
+
+    String search(JsonNode args) {
+        String query = args.path("query").asText("");
+        if (query.isEmpty()) return "Error: query 不能为空";
+        boolean regex = args.path("regex").asBoolean(false);
+        boolean caseSensitive = args.path("caseSensitive").asBoolean(false);
+        int maxResults = Math.min(MAX_RESULTS_LIMIT, Math.max(1, args.path("maxResults").asInt(DEFAULT_MAX_RESULTS)));
+        PathMatcher pathFilter = args.hasNonNull("path") && !args.get("path").asText().isBlank()
+                ? FileSystems.getDefault().getPathMatcher("glob:" + args.get("path").asText().trim())
+                : null;
+
+        Pattern pattern;
+        try {
+            int flags = caseSensitive ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+            pattern = Pattern.compile(regex ? query : Pattern.quote(query), flags);
+        } catch (PatternSyntaxException e) {
+            return "Error: 正则表达式不合法: " + e.getDescription();
+        }
+
+        TrigramIndex.Snapshot snapshot = index.awaitSnapshot(INDEX_WAIT);
+        if (snapshot == null) {
+            return "Error: 代码索引尚未就绪 (未启用或仍在构建中)，请稍后重试或改用 read_file";
+        }
+
+        long start = System.nanoTime();
+        int[] candidates = index.candidates(snapshot, regex ? requiredLiterals(query) : List.of(query));
+        List<String> hits = new ArrayList<>();
+        boolean truncated = false;
+        for (int doc : candidates) {
+            String relative = snapshot.files().get(doc);
+            if (pathFilter != null && !pathFilter.matches(Path.of(relative))) continue;
+            if (!scan(index.resolve(snapshot, doc), relative, pattern, hits, maxResults)) {
+                truncated = true;
+                break;
+            }
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        log.info("🔎 [CodeSearchTool] '{}' 候选 {}/{} 个文件, 命中 {} 处, 耗时 {}ms",
+                query, candidates.length, snapshot.liveFiles(), hits.size(), millis);
+
+        if (hits.isEmpty()) {
+            return "未找到匹配: " + query;
+        }
+        StringBuilder out = new StringBuilder()
+                .append("命中 ").append(hits.size()).append(truncated ? "+ 处 (已达上限，请缩小范围)" : " 处")
+                .append(" (候选 ").append(candidates.length).append('/').append(snapshot.liveFiles())
+                .append(" 个文件, 耗时 ").append(millis).append("ms)\n");
+        hits.forEach(hit -> out.append(hit).append('\n'));
+        return out.toString();
+    }
+
+    /**
+     * 逐行匹配一个文件
+     * @return false 表示结果数已达上限
+     */
+    private boolean scan(Path file, String relative, Pattern pattern, List<String> hits, int maxResults) {
+        // InputStreamReader 遇到非法字节会替换而不是抛异常
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            Matcher matcher = pattern.matcher("");
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (!matcher.reset(line).find()) continue;
+                if (hits.size() >= maxResults) return false;
+                String text = line.strip();
+                if (text.length() > MAX_LINE_CHARS) text = text.substring(0, MAX_LINE_CHARS) + "...";
+                hits.add(relative + ":" + lineNumber + ": " + text);
+            }
+        } catch (IOException e) {
+            // 索引之后文件被删了，跳过
+            log.debug("跳过无法读取的文件 {}: {}", relative, e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * 从正则里提取 "匹配结果中一定出现" 的字面量片段，用于 trigram 过滤
+     * 保守策略：有分支 (|) 就不过滤；被 ? * {} 修饰的字符不算；字符类、分组、转义类 (\w \d) 都当作断点；
+     * 整个分组被 ? * {0,..} 修饰时 (例如 (foo)?bar)，分组里收集到的片段全部作废。
+     */
+    static List<String> requiredLiterals(String regex) {
+        List<String> literals = new ArrayList<>();
+        if (regex.indexOf('|') >= 0) return literals;
+        StringBuilder run = new StringBuilder();
+        // 每个未闭合分组开始时 literals 的长度，分组可有可无时截回这个位置
+        Deque<Integer> groups = new ArrayDeque<>();
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i++);
+            boolean literal = false;
+            switch (c) {
+                case '\\' -> {
+                    if (i < regex.length() && !Character.isLetterOrDigit(regex.charAt(i))) {
+                        run.append(regex.charAt(i++));
+                        literal = true;
+                    } else {
+                        i++;
+                        flush(run, literals);
+                    }
+                }
+                case '[' -> {
+                    // 跳过整个字符类
+                    while (i < regex.length() && regex.charAt(i) != ']') {
+                        if (regex.charAt(i) == '\\') i++;
+                        i++;
+                    }
+                    i++;
+                    flush(run, literals);
+                }
+                case '(' -> {
+                    // (?:  (?i)  (?<name> 之类的前缀整体跳过
+                    if (i < regex.length() && regex.charAt(i) == '?') {
+                        while (i < regex.length() && regex.charAt(i) != ':' && regex.charAt(i) != ')' && regex.charAt(i) != '>') i++;
+                        i++;
+                    }
+                    flush(run, literals);
+                    groups.push(literals.size());
+                }
+                case ')' -> {
+                    flush(run, literals);
+                    if (!groups.isEmpty()) {
+                        int start = groups.pop();
+                        if (optional(regex, i)) {
+                            literals.subList(start, literals.size()).clear();
+                        }
+                    }
+                }
+                case '.', '^', '$', '?', '*', '+' -> flush(run, literals);
+                case '{' -> {
+                    while (i < regex.length() && regex.charAt(i) != '}') i++;
+                    i++;
+                    flush(run, literals);
+                }
+                default -> {
+                    run.append(c);
+                    literal = true;
+                }
+            }
+            if (literal && i < regex.length()) {
+                char next = regex.charAt(i);
+                // 后面跟着 ? * {} 说明这个字符可有可无，从片段里拿掉
+                if (next == '?' || next == '*' || next == '{') {
+                    run.setLength(run.length() - 1);
+                    flush(run, literals);
+                }
+            }
+        }
+        flush(run, literals);
+        return literals;
+    }
+
+    /** 位置 i 上的量词允许出现 0 次：? * {0 / {0, */
+    private static boolean optional(String regex, int i) {
+        if (i >= regex.length()) return false;
+        char next = regex.charAt(i);
+        return next == '?' || next == '*' || (next == '{' && i + 1 < regex.length() && regex.charAt(i + 1) == '0');
+    }
+
+    private static void flush(StringBuilder run, List<String> literals) {
+        if (run.length() >= 3) literals.add(run.toString());
+        run.setLength(0);
+    }
+}
@@ -0,0 +1,418 @@
+package com.pingyu.codehubbackend.tool.search;
+
+import com.pingyu.codehubbackend.tool.fs.DirectoryWatcher;
+import com.pingyu.codehubbackend.tool.fs.FsSandbox;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 智码 - 项目级三元组 (trigram) 倒排索引
+ * 作用：给 search_code 工具做候选文件过滤，模型不用再靠猜路径 read_file 找代码。
+ * 结构：
+ * 1. 把每个文件内容 (ASCII 转小写) 切成连续 3 字节的 trigram，打包成一个 int 作为 Key；
+ * 2. 倒排表 = trigram -> 包含它的文件编号列表，编号递增，存成 "差值 + 变长整数 (varint)" 的压缩字节数组；
+ * 3. 查询时把关键字切成 trigram，对倒排表求交集得到候选文件，再逐行精确匹配 (索引只负责缩小范围)。
+ * 构建在应用就绪后放到后台虚拟线程，不拖慢启动；构建完成前的查询会等它完成。
+ * 增量：文件变更时旧编号打删除标记，新内容追加成新编号 (编号仍然递增，倒排表可以直接在末尾续写)，
+ * 删除标记超过 1/4 再整体重建。
+ */
+@Component
+public class TrigramIndex implements DirectoryWatcher.FileChangeListener {
+
+    private static final Logger log = LoggerFactory.getLogger(TrigramIndex.class);
+
+    private static final int BINARY_SNIFF_BYTES = 8 * 1024;
+
+    private final FsSandbox sandbox;
+    private final boolean enabled;
+    private final long maxFileBytes;
+    private final Set<String> excludeDirs;
+
+    private volatile Snapshot snapshot;
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+
+    /**
+     * 不可变的索引视图；重建或增量更新时整体替换，查询方拿到的永远是一致的视图
+     * @param files    文件编号 -> 相对 root 的路径
+     * @param docIds   相对路径 -> 当前有效的文件编号
+     * @param removed  已失效 (被修改或删除) 的文件编号
+     * @param postings trigram -> 压缩后的文件编号列表
+     */
+    public record Snapshot(List<String> files, Map<String, Integer> docIds, BitSet removed,
+                           Map<Integer, byte[]> postings, long buildMillis, long indexedBytes) {
+
+        public int liveFiles() {
+            return docIds.size();
+        }
+    }
+
+    public TrigramIndex(FsSandbox sandbox,
+                        @Value("${codehub.tools.search.enabled:true}") boolean enabled,
+                        @Value("${codehub.tools.search.max-file-size:1MB}") DataSize maxFileSize,
+                        @Value("${codehub.tools.search.exclude-dirs:.git,target,build,node_modules,.idea,.mvn,.gradle,dist}") Set<String> excludeDirs) {
+        this.sandbox = sandbox;
+        this.enabled = enabled;
+        this.maxFileBytes = maxFileSize.toBytes();
+        this.excludeDirs = excludeDirs;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildInBackground() {
+        if (!enabled) return;
+        Thread.ofVirtual().name("trigram-index").start(() -> {
+            try {
+                rebuild();
+            } catch (Exception e) {
+                log.error("❌ [TrigramIndex] 索引构建失败", e);
+                ready.completeExceptionally(e);
+            }
+        });
+    }
+
+    /**
+     * 全量重建 (遍历 root，跳过排除目录、超大文件和二进制文件)
+     */
+    public synchronized void rebuild() throws IOException {
+        long start = System.currentTimeMillis();
+        List<Path> paths = collectFiles();
+        List<String> files = new ArrayList<>(paths.size());
+        Map<String, Integer> docIds = new HashMap<>();
+        Map<Integer, PostingWriter> writers = new HashMap<>();
+        long indexedBytes = 0;
+
+        for (Path path : paths) {
+            byte[] content = readIndexable(path);
+            if (content == null) continue;
+
+            int doc = files.size();
+            String relative = relativize(path);
+            files.add(relative);
+            docIds.put(relative, doc);
+            indexedBytes += content.length;
+            addTrigrams(content, doc, writers, null);
+        }
+
+        Map<Integer, byte[]> postings = new HashMap<>(writers.size() * 4 / 3 + 1);
+        writers.forEach((trigram, writer) -> postings.put(trigram, writer.toByteArray()));
+        snapshot = new Snapshot(List.copyOf(files), Map.copyOf(docIds), new BitSet(), postings,
+                System.currentTimeMillis() - start, indexedBytes);
+        ready.complete(null);
+        log.info("🔎 [TrigramIndex] 索引完成: {} 个文件, {} KB, {} 个 trigram, 耗时 {}ms",
+                files.size(), indexedBytes / 1024, postings.size(), snapshot.buildMillis());
+    }
+
+    @Override
+    public void onFilesChanged(Set<Path> changed) {
+        if (!enabled || snapshot == null) return;
+        try {
+            update(changed);
+        } catch (IOException e) {
+            log.warn("⚠️ [TrigramIndex] 增量更新失败: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void onRescanRequired() {
+        if (!enabled || snapshot == null) return;
+        try {
+            rebuild();
+        } catch (IOException e) {
+            log.warn("⚠️ [TrigramIndex] 全量重建失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 增量更新：旧编号打删除标记，变更后的内容追加为新编号
+     * 已经不存在的路径可能是被删掉 / 移走的目录，这个前缀下的文件全部打删除标记
+     */
+    public synchronized void update(Set<Path> changed) throws IOException {
+        Snapshot old = snapshot;
+        List<String> files = new ArrayList<>(old.files());
+        Map<String, Integer> docIds = new HashMap<>(old.docIds());
+        BitSet removed = (BitSet) old.removed().clone();
+        Map<Integer, PostingWriter> appends = new HashMap<>();
+        long indexedBytes = old.indexedBytes();
+
+        for (Path path : changed) {
+            if (!path.startsWith(sandbox.getRoot())) continue;
+            String relative = relativize(path);
+            Integer previous = docIds.remove(relative);
+            if (previous != null) removed.set(previous);
+            if (previous == null && !Files.exists(path)) {
+                String prefix = relative + "/";
+                docIds.entrySet().removeIf(entry -> {
+                    if (!entry.getKey().startsWith(prefix)) return false;
+                    removed.set(entry.getValue());
+                    return true;
+                });
+                continue;
+            }
+
+            byte[] content = readIndexable(path);
+            if (content == null) continue;
+            int doc = files.size();
+            files.add(relative);
+            docIds.put(relative, doc);
+            indexedBytes += content.length;
+            addTrigrams(content, doc, appends, old.postings());
+        }
+
+        if (removed.cardinality() > files.size() / 4) {
+            log.info("🔎 [TrigramIndex] 失效文件过多 ({}/{})，整体重建", removed.cardinality(), files.size());
+            rebuild();
+            return;
+        }
+        // 只有被新文件触达的 trigram 需要换成新数组，其余倒排表原样共享
+        Map<Integer, byte[]> postings = new HashMap<>(old.postings());
+        appends.forEach((trigram, writer) -> postings.put(trigram, writer.toByteArray()));
+        snapshot = new Snapshot(List.copyOf(files), Map.copyOf(docIds), removed, postings, old.buildMillis(), indexedBytes);
+        log.info("🔎 [TrigramIndex] 增量更新 {} 个文件，当前有效文件 {}", changed.size(), docIds.size());
+    }
+
+    /**
+     * 等待索引可用 (首次构建未完成时阻塞)
+     * @return 超时返回 null
+     */
+    public Snapshot awaitSnapshot(Duration timeout) {
+        if (!enabled) return null;
+        try {
+            ready.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            return null;
+        }
+        return snapshot;
+    }
+
+    /**
+     * 求候选文件：每段字面量的所有 trigram 都必须出现
+     * @param literals 查询里必然出现的字面量 (长度 < 3 的会被忽略)
+     * @return 候选文件编号 (升序)；没有可用的 trigram 时返回全部文件
+     */
+    public int[] candidates(Snapshot snapshot, List<String> literals) {
+        List<byte[]> lists = new ArrayList<>();
+        for (String literal : literals) {
+            byte[] bytes = literal.getBytes(StandardCharsets.UTF_8);
+            for (int i = 0; i + 2 < bytes.length; i++) {
+                byte[] posting = snapshot.postings().get(trigram(bytes[i], bytes[i + 1], bytes[i + 2]));
+                if (posting == null) return new int[0];
+                lists.add(posting);
+            }
+        }
+        int[] result;
+        if (lists.isEmpty()) {
+            result = new int[snapshot.files().size()];
+            Arrays.setAll(result, i -> i);
+        } else {
+            // 从最短的倒排表开始求交集，中间结果最小
+            lists.sort((a, b) -> Integer.compare(a.length, b.length));
+            result = decode(lists.get(0));
+            for (int i = 1; i < lists.size() && result.length > 0; i++) {
+                result = intersect(result, lists.get(i));
+            }
+        }
+        BitSet removed = snapshot.removed();
+        return removed.isEmpty() ? result : Arrays.stream(result).filter(doc -> !removed.get(doc)).toArray();
+    }
+
+    public Path resolve(Snapshot snapshot, int doc) {
+        return sandbox.getRoot().resolve(snapshot.files().get(doc));
+    }
+
+    public Map<String, Object> snapshotStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        Snapshot current = snapshot;
+        result.put("enabled", enabled);
+        result.put("ready", current != null);
+        if (current != null) {
+            long postingBytes = current.postings().values().stream().mapToLong(p -> p.length).sum();
+            result.put("files", current.liveFiles());
+            result.put("removedDocs", current.removed().cardinality());
+            result.put("indexedBytes", current.indexedBytes());
+            result.put("trigrams", current.postings().size());
+            result.put("postingBytes", postingBytes);
+            result.put("buildMillis", current.buildMillis());
+        }
+        return result;
+    }
+
+    // ======================================================
+    // 文件遍历
+    // ======================================================
+    private List<Path> collectFiles() throws IOException {
+        List<Path> result = new ArrayList<>();
+        Path root = sandbox.getRoot();
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.equals(root) && excludeDirs.contains(dir.getFileName().toString())) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && attrs.size() <= maxFileBytes) {
+                    result.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return result;
+    }
+
+    private String relativize(Path path) {
+        return sandbox.getRoot().relativize(path).toString().replace('\\', '/');
+    }
+
+    /**
+     * 读出可以进索引的文件内容；不存在、超大、二进制都返回 null
+     */
+    private byte[] readIndexable(Path path) {
+        try {
+            if (!Files.isRegularFile(path) || Files.size(path) > maxFileBytes) return null;
+            byte[] content = Files.readAllBytes(path);
+            return isBinary(content) ? null : content;
+        } catch (IOException e) {
+            log.debug("跳过无法读取的文件 {}: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 把一个文件的所有 trigram 写进倒排表
+     * @param existing 不为空时，新建的 writer 会接在已有倒排表后面续写
+     */
+    private static void addTrigrams(byte[] content, int doc, Map<Integer, PostingWriter> writers, Map<Integer, byte[]> existing) {
+        for (int i = 0; i + 2 < content.length; i++) {
+            int trigram = trigram(content[i], content[i + 1], content[i + 2]);
+            writers.computeIfAbsent(trigram, k -> existing == null ? new PostingWriter() : PostingWriter.resume(existing.get(k))).add(doc);
+        }
+    }
+
+    private static boolean isBinary(byte[] content) {
+        int limit = Math.min(content.length, BINARY_SNIFF_BYTES);
+        for (int i = 0; i < limit; i++) {
+            if (content[i] == 0) return true;
+        }
+        return false;
+    }
+
+    // ======================================================
+    // trigram 编码 / 倒排表压缩
+    // ======================================================
+    static int trigram(byte a, byte b, byte c) {
+        return (lower(a) << 16) | (lower(b) << 8) | lower(c);
+    }
+
+    private static int lower(byte b) {
+        int v = b & 0xFF;
+        return v >= 'A' && v <= 'Z' ? v + ('a' - 'A') : v;
+    }
+
+    /** 追加式写入：文件编号递增，存与上一个编号的差值，7 bit 一组的变长整数 */
+    static final class PostingWriter {
+        private byte[] buffer = new byte[4];
+        private int length;
+        private int last = -1;
+
+        /** 接着已有的倒排表继续写 (新编号必须大于表里的所有编号) */
+        static PostingWriter resume(byte[] posting) {
+            PostingWriter writer = new PostingWriter();
+            if (posting == null || posting.length == 0) return writer;
+            int[] docs = decode(posting);
+            writer.buffer = Arrays.copyOf(posting, posting.length + 8);
+            writer.length = posting.length;
+            writer.last = docs[docs.length - 1];
+            return writer;
+        }
+
+        void add(int doc) {
+            if (doc == last) return;
+            int delta = doc - last;
+            last = doc;
+            while (length + 5 > buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            while ((delta & ~0x7F) != 0) {
+                buffer[length++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            buffer[length++] = (byte) delta;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, length);
+        }
+    }
+
+    static int[] decode(byte[] posting) {
+        int[] docs = new int[posting.length];
+        int count = 0;
+        int doc = -1;
+        int i = 0;
+        while (i < posting.length) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = posting[i++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            doc += delta;
+            docs[count++] = doc;
+        }
+        return Arrays.copyOf(docs, count);
+    }
+
+    private static int[] intersect(int[] sorted, byte[] posting) {
+        int[] other = decode(posting);
+        int[] result = new int[Math.min(sorted.length, other.length)];
+        int count = 0;
+        for (int i = 0, j = 0; i < sorted.length && j < other.length; ) {
+            if (sorted[i] == other[j]) {
+                result[count++] = sorted[i];
+                i++;
+                j++;
+            } else if (sorted[i] < other[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+}
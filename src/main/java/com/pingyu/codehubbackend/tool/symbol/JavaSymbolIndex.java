@@ -0,0 +1,384 @@
+package com.pingyu.codehubbackend.tool.symbol;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.AnnotationDeclaration;
+import com.github.javaparser.ast.body.CallableDeclaration;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.EnumDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.RecordDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.expr.FieldAccessExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.MethodReferenceExpr;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import com.pingyu.codehubbackend.tool.fs.DirectoryWatcher;
+import com.pingyu.codehubbackend.tool.fs.FsSandbox;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 智码 - Java 符号索引 (find_symbol / find_usages 的数据源)
+ * 用 JavaParser 把项目里的 .java 文件解析成内存符号表：
+ * 1. 定义：类/接口/枚举/记录/注解、方法、构造器、字段，带全限定名、签名和行号；
+ * 2. 引用：方法调用、方法引用、new 对象、类型使用、字段访问，带所在方法和源码行。
+ * 没有做类型推断 (不引入 symbol-solver)，引用按名字匹配；调用方可以用 "类名.成员" 缩小范围。
+ * 按文件维护，文件变更时只重新解析这个文件 (由 {@link DirectoryWatcher} 通知)。
+ */
+@Component
+public class JavaSymbolIndex implements DirectoryWatcher.FileChangeListener {
+
+    private static final Logger log = LoggerFactory.getLogger(JavaSymbolIndex.class);
+    /** TypeDeclaration 是泛型类，findAll 传裸的 .class 会报 unchecked，这里转一次 */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final Class<TypeDeclaration<?>> TYPE_DECLARATION = (Class) TypeDeclaration.class;
+
+    public enum Kind { CLASS, INTERFACE, ENUM, RECORD, ANNOTATION, METHOD, CONSTRUCTOR, FIELD }
+
+    public enum RefKind { CALL, NEW, TYPE, FIELD }
+
+    /** 一个定义 */
+    public record SymbolDef(Kind kind, String name, String qualifiedName, String signature, String file, int line) {}
+
+    /** 一次引用；enclosing = 引用所在的 类.方法 */
+    public record SymbolRef(RefKind kind, String name, String enclosing, String file, int line, String text) {}
+
+    /** 单个文件的解析结果；包名和类型名用于 "类名.成员" 过滤 */
+    record FileSymbols(String packageName, Set<String> typeNames, List<SymbolDef> defs, List<SymbolRef> refs) {}
+
+    private final FsSandbox sandbox;
+    private final boolean enabled;
+    private final Set<String> excludeDirs;
+    private final JavaParser parser;
+
+    // 按文件存，按名字查 (两份 Map 在 synchronized 里一起改)
+    private final Map<String, FileSymbols> files = new ConcurrentHashMap<>();
+    private final Map<String, List<SymbolDef>> defsByName = new ConcurrentHashMap<>();
+    private final Map<String, List<SymbolRef>> refsByName = new ConcurrentHashMap<>();
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+    private volatile long buildMillis = -1;
+
+    public JavaSymbolIndex(FsSandbox sandbox,
+                           @Value("${codehub.tools.symbol.enabled:true}") boolean enabled,
+                           @Value("${codehub.tools.search.exclude-dirs:.git,target,build,node_modules,.idea,.mvn,.gradle,dist}") Set<String> excludeDirs) {
+        this.sandbox = sandbox;
+        this.enabled = enabled;
+        this.excludeDirs = excludeDirs;
+        this.parser = new JavaParser(new ParserConfiguration()
+                .setLanguageLevel(ParserConfiguration.LanguageLevel.JAVA_21)
+                .setAttributeComments(false));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildInBackground() {
+        if (!enabled) return;
+        Thread.ofVirtual().name("symbol-index").start(() -> {
+            try {
+                rebuild();
+            } catch (Exception e) {
+                log.error("❌ [JavaSymbolIndex] 符号索引构建失败", e);
+                ready.completeExceptionally(e);
+            }
+        });
+    }
+
+    public synchronized void rebuild() throws IOException {
+        long start = System.currentTimeMillis();
+        files.clear();
+        defsByName.clear();
+        refsByName.clear();
+        try (Stream<Path> stream = Files.walk(sandbox.getRoot())) {
+            List<Path> sources = stream
+                    .filter(path -> path.toString().endsWith(".java") && Files.isRegularFile(path) && !isExcluded(path))
+                    .toList();
+            for (Path source : sources) {
+                index(source);
+            }
+        }
+        buildMillis = System.currentTimeMillis() - start;
+        ready.complete(null);
+        log.info("🧭 [JavaSymbolIndex] 符号索引完成: {} 个文件, {} 个定义名, {} 个引用名, 耗时 {}ms",
+                files.size(), defsByName.size(), refsByName.size(), buildMillis);
+    }
+
+    @Override
+    public void onFilesChanged(Set<Path> changed) {
+        if (!enabled || !ready.isDone()) return;
+        int count = 0;
+        for (Path path : changed) {
+            if (!path.startsWith(sandbox.getRoot())) continue;
+            if (path.toString().endsWith(".java")) {
+                index(path);
+                count++;
+            } else if (!Files.exists(path)) {
+                // 可能是被删掉 / 移走的目录
+                count += removeUnder(path);
+            }
+        }
+        if (count > 0) {
+            log.info("🧭 [JavaSymbolIndex] 增量更新 {} 个 Java 文件", count);
+        }
+    }
+
+    @Override
+    public void onRescanRequired() {
+        if (!enabled || !ready.isDone()) return;
+        try {
+            rebuild();
+        } catch (IOException e) {
+            log.warn("⚠️ [JavaSymbolIndex] 全量重建失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 移除一个目录下所有文件的条目
+     * @return 移除的文件数
+     */
+    synchronized int removeUnder(Path dir) {
+        String prefix = relativize(dir) + "/";
+        List<String> stale = files.keySet().stream().filter(file -> file.startsWith(prefix)).toList();
+        stale.forEach(file -> index(sandbox.getRoot().resolve(file)));
+        return stale.size();
+    }
+
+    /**
+     * (重新) 索引一个文件；文件已删除或解析失败时只移除旧条目
+     */
+    synchronized void index(Path path) {
+        String relative = relativize(path);
+        FileSymbols previous = files.remove(relative);
+        if (previous != null) {
+            previous.defs().forEach(def -> removeFrom(defsByName, def.name(), def));
+            previous.refs().forEach(ref -> removeFrom(refsByName, ref.name(), ref));
+        }
+        if (!Files.isRegularFile(path)) return;
+
+        FileSymbols symbols;
+        try {
+            symbols = parse(relative, Files.readString(path, StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            log.debug("跳过无法解析的文件 {}: {}", relative, e.getMessage());
+            return;
+        }
+        if (symbols == null) return;
+        files.put(relative, symbols);
+        symbols.defs().forEach(def -> defsByName.computeIfAbsent(def.name(), k -> Collections.synchronizedList(new ArrayList<>())).add(def));
+        symbols.refs().forEach(ref -> refsByName.computeIfAbsent(ref.name(), k -> Collections.synchronizedList(new ArrayList<>())).add(ref));
+    }
+
+    // ======================================================
+    // 解析：定义 + 引用
+    // ======================================================
+    private FileSymbols parse(String file, String source) {
+        ParseResult<CompilationUnit> result = parser.parse(source);
+        if (result.getResult().isEmpty()) return null;
+        CompilationUnit unit = result.getResult().get();
+        String[] lines = source.split("\n", -1);
+
+        String packageName = unit.getPackageDeclaration().map(p -> p.getNameAsString()).orElse("");
+        Set<String> typeNames = new LinkedHashSet<>();
+        List<SymbolDef> defs = new ArrayList<>();
+        List<SymbolRef> refs = new ArrayList<>();
+
+        for (TypeDeclaration<?> type : unit.findAll(TYPE_DECLARATION)) {
+            String qualified = type.getFullyQualifiedName().orElse(type.getNameAsString());
+            typeNames.add(type.getNameAsString());
+            defs.add(new SymbolDef(kindOf(type), type.getNameAsString(), qualified, lineText(lines, line(type)), file, line(type)));
+        }
+        for (MethodDeclaration method : unit.findAll(MethodDeclaration.class)) {
+            defs.add(new SymbolDef(Kind.METHOD, method.getNameAsString(), owner(method) + "." + method.getNameAsString(),
+                    method.getDeclarationAsString(true, false, true), file, line(method)));
+        }
+        for (ConstructorDeclaration constructor : unit.findAll(ConstructorDeclaration.class)) {
+            defs.add(new SymbolDef(Kind.CONSTRUCTOR, constructor.getNameAsString(), owner(constructor) + "." + constructor.getNameAsString(),
+                    constructor.getDeclarationAsString(true, false, true), file, line(constructor)));
+        }
+        for (FieldDeclaration field : unit.findAll(FieldDeclaration.class)) {
+            field.getVariables().forEach(variable -> defs.add(new SymbolDef(Kind.FIELD, variable.getNameAsString(),
+                    owner(field) + "." + variable.getNameAsString(),
+                    field.getElementType().asString() + " " + variable.getNameAsString(), file, line(variable))));
+        }
+
+        unit.findAll(MethodCallExpr.class).forEach(call -> refs.add(ref(RefKind.CALL, call.getNameAsString(), call, file, lines)));
+        unit.findAll(MethodReferenceExpr.class).forEach(reference -> refs.add(ref(RefKind.CALL, reference.getIdentifier(), reference, file, lines)));
+        unit.findAll(ObjectCreationExpr.class).forEach(creation -> refs.add(ref(RefKind.NEW, creation.getType().getNameAsString(), creation, file, lines)));
+        unit.findAll(FieldAccessExpr.class).forEach(access -> refs.add(ref(RefKind.FIELD, access.getNameAsString(), access, file, lines)));
+        unit.findAll(ClassOrInterfaceType.class).forEach(type -> {
+            // new Foo() 已经记成 NEW，这里不重复记
+            if (!(type.getParentNode().orElse(null) instanceof ObjectCreationExpr)) {
+                refs.add(ref(RefKind.TYPE, type.getNameAsString(), type, file, lines));
+            }
+        });
+        return new FileSymbols(packageName, typeNames, List.copyOf(defs), List.copyOf(refs));
+    }
+
+    private SymbolRef ref(RefKind kind, String name, Node node, String file, String[] lines) {
+        String enclosing = ancestor(node, CallableDeclaration.class)
+                .map(callable -> owner(callable) + "." + callable.getNameAsString())
+                .orElseGet(() -> owner(node));
+        return new SymbolRef(kind, name, enclosing, file, line(node), lineText(lines, line(node)));
+    }
+
+    private static Kind kindOf(TypeDeclaration<?> type) {
+        if (type instanceof ClassOrInterfaceDeclaration declaration) {
+            return declaration.isInterface() ? Kind.INTERFACE : Kind.CLASS;
+        }
+        if (type instanceof EnumDeclaration) return Kind.ENUM;
+        if (type instanceof RecordDeclaration) return Kind.RECORD;
+        if (type instanceof AnnotationDeclaration) return Kind.ANNOTATION;
+        return Kind.CLASS;
+    }
+
+    private static String owner(Node node) {
+        return ancestor(node, TYPE_DECLARATION)
+                .map(TypeDeclaration::getNameAsString)
+                .orElse("");
+    }
+
+    /** 最近的指定类型祖先节点 (Node.findAncestor 是泛型可变参数，每次调用都会报 unchecked) */
+    private static <N> Optional<N> ancestor(Node node, Class<N> type) {
+        Node current = node.getParentNode().orElse(null);
+        while (current != null && !type.isInstance(current)) {
+            current = current.getParentNode().orElse(null);
+        }
+        return Optional.ofNullable(type.cast(current));
+    }
+
+    private static int line(Node node) {
+        return node.getBegin().map(position -> position.line).orElse(0);
+    }
+
+    private static String lineText(String[] lines, int line) {
+        if (line < 1 || line > lines.length) return "";
+        String text = lines[line - 1].strip();
+        return text.length() > 200 ? text.substring(0, 200) + "..." : text;
+    }
+
+    private static <T> void removeFrom(Map<String, List<T>> map, String key, T value) {
+        List<T> list = map.get(key);
+        if (list == null) return;
+        list.remove(value);
+        if (list.isEmpty()) map.remove(key);
+    }
+
+    private String relativize(Path path) {
+        return sandbox.getRoot().relativize(path).toString().replace('\\', '/');
+    }
+
+    private boolean isExcluded(Path path) {
+        Path relative = sandbox.getRoot().relativize(path);
+        for (Path part : relative) {
+            if (excludeDirs.contains(part.toString())) return true;
+        }
+        return false;
+    }
+
+    // ======================================================
+    // 查询
+    // ======================================================
+    /**
+     * 等待首次构建完成
+     * @return 超时或未启用返回 false
+     */
+    public boolean awaitReady(Duration timeout) {
+        if (!enabled) return false;
+        try {
+            ready.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    public List<SymbolDef> definitions(String name) {
+        return copy(defsByName.get(name));
+    }
+
+    /** 名字精确匹配不到时的模糊兜底 (忽略大小写包含) */
+    public List<SymbolDef> definitionsLike(String fragment, int limit) {
+        String lower = fragment.toLowerCase();
+        return defsByName.entrySet().stream()
+                .filter(entry -> entry.getKey().toLowerCase().contains(lower))
+                .flatMap(entry -> copy(entry.getValue()).stream())
+                .limit(limit)
+                .toList();
+    }
+
+    public List<SymbolRef> references(String name) {
+        return copy(refsByName.get(name));
+    }
+
+    // synchronizedList 遍历时要持有它自己的锁
+    private static <T> List<T> copy(List<T> list) {
+        if (list == null) return List.of();
+        synchronized (list) {
+            return List.copyOf(list);
+        }
+    }
+
+    /** 文件是否 "看得见" 某个类型：定义在这个文件、同包、或者文件里用到过这个类型名 */
+    public boolean fileMentionsType(String file, String typeName, String typePackage) {
+        FileSymbols symbols = files.get(file);
+        if (symbols == null) return false;
+        if (symbols.typeNames().contains(typeName)) return true;
+        if (symbols.packageName().equals(typePackage)) return true;
+        return symbols.refs().stream().anyMatch(ref -> ref.kind() != RefKind.CALL && ref.name().equals(typeName));
+    }
+
+    public Map<String, Object> snapshotStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("ready", ready.isDone());
+        result.put("files", files.size());
+        result.put("definitions", defsByName.values().stream().mapToInt(List::size).sum());
+        result.put("references", refsByName.values().stream().mapToInt(List::size).sum());
+        result.put("buildMillis", buildMillis);
+        return result;
+    }
+
+    /** 类型所在的包 (类型名 -> 包名)，用于 "类名.成员" 过滤 */
+    public Map<String, String> packagesOf(String typeName) {
+        Map<String, String> result = new HashMap<>();
+        for (SymbolDef def : definitions(typeName)) {
+            if (def.kind().ordinal() <= Kind.ANNOTATION.ordinal()) {
+                String qualified = def.qualifiedName();
+                int dot = qualified.lastIndexOf('.');
+                result.put(def.file(), dot < 0 ? "" : qualified.substring(0, dot));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,129 @@
+package com.pingyu.codehubbackend.tool.symbol;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.pingyu.codehubbackend.tool.JsonToolCallback;
+import com.pingyu.codehubbackend.tool.symbol.JavaSymbolIndex.SymbolDef;
+import com.pingyu.codehubbackend.tool.symbol.JavaSymbolIndex.SymbolRef;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 智码 - 符号查询工具
+ * 1. find_symbol：X 定义在哪 (支持 "类名"、"方法名"、"类名.成员")；
+ * 2. find_usages：谁在用 X (调用、new、类型使用、字段访问)，给出所在方法和源码行。
+ * 结果一行一条，只返回定位信息，正文需要时再 read_file，省 prompt token。
+ */
+@Component
+public class SymbolSearchTools {
+
+    private static final Duration INDEX_WAIT = Duration.ofSeconds(30);
+    private static final int MAX_DEFINITIONS = 30;
+    private static final int DEFAULT_MAX_USAGES = 50;
+    private static final int MAX_USAGES_LIMIT = 200;
+
+    private static final String FIND_SYMBOL_SCHEMA = """
+            {"type":"object","properties":{
+            "name":{"type":"string","description":"Class, method or field name; use Type.member to disambiguate, e.g. McpClientPool.callTool"},
+            "kind":{"type":"string","description":"Optional filter: CLASS, INTERFACE, ENUM, RECORD, ANNOTATION, METHOD, CONSTRUCTOR or FIELD"}},
+            "required":["name"]}""";
+
+    private static final String FIND_USAGES_SCHEMA = """
+            {"type":"object","properties":{
+            "name":{"type":"string","description":"Class, method or field name; use Type.member to only keep usages in files that see Type"},
+            "maxResults":{"type":"integer","description":"Maximum number of usages to return (default 50)"}},
+            "required":["name"]}""";
+
+    private final JavaSymbolIndex index;
+
+    public SymbolSearchTools(JavaSymbolIndex index) {
+        this.index = index;
+    }
+
+    public List<ToolCallback> getToolCallbacks() {
+        return List.of(
+                new JsonToolCallback("find_symbol",
+                        "Finds where a Java class, interface, method or field is defined. Returns kind, qualified name, signature and path:line",
+                        FIND_SYMBOL_SCHEMA, this::findSymbol),
+                new JsonToolCallback("find_usages",
+                        "Finds where a Java class, method or field is used (calls, instantiations, type references, field accesses). Returns path:line, enclosing method and source line",
+                        FIND_USAGES_SCHEMA, this::findUsages));
+    }
+
+    // ======================================================
+    // 1. find_symbol
+    // ======================================================
+    String findSymbol(JsonNode args) {
+        String name = args.path("name").asText("").trim();
+        if (name.isEmpty()) return "Error: name 不能为空";
+        if (!index.awaitReady(INDEX_WAIT)) return "Error: 符号索引尚未就绪 (未启用或仍在构建中)";
+        String kind = args.path("kind").asText("").trim().toUpperCase();
+
+        Target target = Target.parse(name);
+        List<SymbolDef> defs = index.definitions(target.member()).stream()
+                .filter(def -> target.type() == null || def.qualifiedName().endsWith(target.type() + "." + target.member()))
+                .filter(def -> kind.isEmpty() || def.kind().name().equals(kind))
+                .limit(MAX_DEFINITIONS)
+                .toList();
+        boolean fuzzy = false;
+        if (defs.isEmpty()) {
+            defs = index.definitionsLike(target.member(), MAX_DEFINITIONS).stream()
+                    .filter(def -> kind.isEmpty() || def.kind().name().equals(kind))
+                    .toList();
+            fuzzy = true;
+        }
+        if (defs.isEmpty()) return "未找到符号定义: " + name;
+
+        StringBuilder out = new StringBuilder(fuzzy ? "没有精确匹配，相近的定义:\n" : "");
+        for (SymbolDef def : defs) {
+            out.append('[').append(def.kind()).append("] ").append(def.qualifiedName())
+                    .append("  ").append(def.file()).append(':').append(def.line()).append('\n')
+                    .append("    ").append(def.signature()).append('\n');
+        }
+        return out.toString();
+    }
+
+    // ======================================================
+    // 2. find_usages
+    // ======================================================
+    String findUsages(JsonNode args) {
+        String name = args.path("name").asText("").trim();
+        if (name.isEmpty()) return "Error: name 不能为空";
+        if (!index.awaitReady(INDEX_WAIT)) return "Error: 符号索引尚未就绪 (未启用或仍在构建中)";
+        int maxResults = Math.min(MAX_USAGES_LIMIT, Math.max(1, args.path("maxResults").asInt(DEFAULT_MAX_USAGES)));
+
+        Target target = Target.parse(name);
+        // 没有类型推断：给了 "类名.成员" 时，只保留能看见这个类型的文件里的引用
+        Map<String, String> typePackages = target.type() == null ? Map.of() : index.packagesOf(target.type());
+        String typePackage = typePackages.values().stream().findFirst().orElse("");
+        List<SymbolRef> refs = index.references(target.member()).stream()
+                .filter(ref -> target.type() == null || index.fileMentionsType(ref.file(), target.type(), typePackage))
+                .toList();
+        if (refs.isEmpty()) return "未找到引用: " + name;
+
+        StringBuilder out = new StringBuilder()
+                .append("共 ").append(refs.size()).append(" 处引用")
+                .append(refs.size() > maxResults ? " (只显示前 " + maxResults + " 处)" : "").append(":\n");
+        refs.stream().limit(maxResults).forEach(ref -> out
+                .append(ref.file()).append(':').append(ref.line())
+                .append(" [").append(ref.kind()).append("] in ").append(ref.enclosing().isEmpty() ? "-" : ref.enclosing())
+                .append(": ").append(ref.text()).append('\n'));
+        return out.toString();
+    }
+
+    /** "McpClientPool.callTool" -> type=McpClientPool, member=callTool；单个名字时 type 为 null */
+    record Target(String type, String member) {
+        static Target parse(String name) {
+            String cleaned = name.replace("()", "").replace('#', '.');
+            int dot = cleaned.lastIndexOf('.');
+            if (dot <= 0 || dot == cleaned.length() - 1) return new Target(null, cleaned);
+            String type = cleaned.substring(0, dot);
+            // 全限定名只保留最后一段类名
+            type = type.substring(type.lastIndexOf('.') + 1);
+            return new Target(type, cleaned.substring(dot + 1));
+        }
+    }
+}
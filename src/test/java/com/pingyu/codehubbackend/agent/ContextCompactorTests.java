@@ -0,0 +1,71 @@
+package com.pingyu.codehubbackend.agent;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContextCompactorTests {
+
+    private static final String TASK = "读取 a.txt 并总结";
+    private static final String NEXT_STEP = "请决定下一步";
+    private static final String LONG_OUTPUT = "line of tool output\n".repeat(500);
+
+    @Test
+    void keepsHistoryUntouchedUnderBudget() {
+        ContextCompactor compactor = new ContextCompactor(true, 100_000, 2, 10);
+        List<Message> messages = history();
+
+        List<Message> result = compactor.compact(messages, "system", null);
+
+        assertEquals(messages.size(), result.size());
+        for (int i = 0; i < messages.size(); i++) {
+            assertSame(messages.get(i), result.get(i));
+        }
+    }
+
+    @Test
+    void trimsOldToolOutputOnlyWhenOverBudget() {
+        ContextCompactor compactor = new ContextCompactor(true, 500, 2, 10);
+
+        List<Message> result = compactor.compact(history(), "system", null);
+
+        // 裁剪后已经落进预算，不需要整轮丢弃
+        assertEquals(5, result.size());
+        assertEquals(TASK, result.get(0).getText());
+        String data = ((ToolResponseMessage) result.get(2)).getResponses().get(0).responseData();
+        assertTrue(data.contains("[已省略约"));
+        assertEquals("完成", result.get(4).getText());
+    }
+
+    @Test
+    void keepsOnlyTheLastNextStepPrompt() {
+        ContextCompactor compactor = new ContextCompactor(true, 100_000, 2, 10);
+        List<Message> messages = List.of(new UserMessage(TASK), new UserMessage(NEXT_STEP),
+                new AssistantMessage("第一步"), new UserMessage(NEXT_STEP), new AssistantMessage("第二步"));
+
+        List<Message> result = compactor.compact(messages, "system", NEXT_STEP);
+
+        assertEquals(4, result.size());
+        assertEquals(1, result.stream().filter(message -> NEXT_STEP.equals(message.getText())).count());
+        assertEquals(NEXT_STEP, result.get(2).getText());
+    }
+
+    private static List<Message> history() {
+        List<Message> messages = new ArrayList<>();
+        messages.add(new UserMessage(TASK));
+        messages.add(new AssistantMessage("读取 a.txt"));
+        messages.add(new ToolResponseMessage(List.of(new ToolResponseMessage.ToolResponse("1", "read_file", LONG_OUTPUT))));
+        messages.add(new UserMessage("继续"));
+        messages.add(new AssistantMessage("完成"));
+        return messages;
+    }
+}
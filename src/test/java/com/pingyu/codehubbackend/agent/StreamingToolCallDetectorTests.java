@@ -0,0 +1,49 @@
+package com.pingyu.codehubbackend.agent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamingToolCallDetectorTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final StreamingToolCallDetector detector = new StreamingToolCallDetector(objectMapper);
+
+    @Test
+    void detectsNestedCallSplitAcrossDeltas() {
+        assertTrue(detector.feed("先读文件 {\"name\": \"read_file\", \"argu").isEmpty());
+
+        List<StreamingToolCallDetector.DetectedCall> calls =
+                detector.feed("ments\": {\"path\": \"a.txt\", \"window\": {\"head\": 5}}} 然后总结");
+
+        assertEquals(1, calls.size());
+        assertEquals("read_file", calls.get(0).name());
+        assertEquals("{\"path\":\"a.txt\",\"window\":{\"head\":5}}", calls.get(0).arguments());
+    }
+
+    @Test
+    void ignoresBracesAndEscapedQuotesInsideStrings() throws Exception {
+        // 反斜杠正好落在两段增量的边界上
+        assertTrue(detector.feed("{\"name\": \"write_file\", \"arguments\": {\"content\": \"if (x) { return \\").isEmpty());
+
+        List<StreamingToolCallDetector.DetectedCall> calls = detector.feed("\"}\\\"; }\"}}");
+
+        assertEquals(1, calls.size());
+        assertEquals("if (x) { return \"}\"; }", objectMapper.readTree(calls.get(0).arguments()).get("content").asText());
+    }
+
+    @Test
+    void skipsPlainBracesThatAreNotToolCalls() {
+        assertTrue(detector.feed("用 {} 表示空对象，{not json} 也不是调用").isEmpty());
+
+        List<StreamingToolCallDetector.DetectedCall> calls = detector.feed("{\"name\": \"terminate\"}");
+
+        assertEquals(1, calls.size());
+        assertEquals("terminate", calls.get(0).name());
+        assertEquals("{}", calls.get(0).arguments());
+    }
+}
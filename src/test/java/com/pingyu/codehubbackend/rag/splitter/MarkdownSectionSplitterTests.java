@@ -0,0 +1,53 @@
+package com.pingyu.codehubbackend.rag.splitter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MarkdownSectionSplitterTests {
+
+    private static final String MANUAL = """
+            # 规范
+
+            ## 1. 脚本
+
+            ```bash
+            # 这是 shell 注释，不是标题
+            echo ok
+            ```
+
+            ~~~
+            ## 也不是标题
+            ~~~
+
+            ## 2. 时间格式
+
+            日期字段统一使用 LocalDateTime。
+            """;
+
+    @Test
+    void hashInsideFencedCodeIsNotAHeading() {
+        List<MarkdownSectionSplitter.Section> sections = new MarkdownSectionSplitter().parse(MANUAL);
+
+        assertEquals(List.of(List.of("规范"), List.of("规范", "1. 脚本"), List.of("规范", "2. 时间格式")),
+                sections.stream().map(MarkdownSectionSplitter.Section::path).toList());
+        assertTrue(sections.get(1).text().contains("# 这是 shell 注释"));
+        assertTrue(sections.get(1).text().contains("## 也不是标题"));
+    }
+
+    @Test
+    void chunksCarrySectionMetadata() {
+        List<Document> chunks = new MarkdownSectionSplitter(20).split(new Document(MANUAL, Map.of("filename", "manual.md")));
+
+        Document last = chunks.get(chunks.size() - 1);
+        assertEquals("规范 > 2. 时间格式", last.getMetadata().get("section"));
+        assertEquals("2. 时间格式", last.getMetadata().get("heading"));
+        assertEquals(2, last.getMetadata().get("section_level"));
+        assertEquals("manual.md", last.getMetadata().get("filename"));
+    }
+}
@@ -0,0 +1,51 @@
+package com.pingyu.codehubbackend.rag.store;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Bm25IndexTests {
+
+    @Test
+    void splitsChineseIntoBigrams() {
+        assertEquals(List.of("时间", "间格", "格式"), Bm25Index.tokenize("时间格式"));
+        assertEquals(List.of("码"), Bm25Index.tokenize("码"));
+    }
+
+    @Test
+    void keepsIdentifiersWholeAndIndexesTheirParts() {
+        List<String> terms = Bm25Index.tokenize("@CodeHubSecured LocalDateTime Result<T>");
+
+        assertTrue(terms.containsAll(List.of("@codehubsecured", "codehubsecured", "code", "hub", "secured",
+                "localdatetime", "local", "date", "time", "result<t>", "result")));
+        assertEquals(List.of("result<t>", "localdatetime"), Bm25Index.identifiers("Result<T> 和 LocalDateTime 怎么用，Token 呢"));
+    }
+
+    @Test
+    void ranksExactIdentifierAndChineseMatches() {
+        Bm25Index index = new Bm25Index();
+        index.add(List.of(
+                new Document("auth", "接口需要鉴权时加上 @CodeHubSecured 注解", Map.of()),
+                new Document("date", "日期字段统一使用 LocalDateTime，时间格式 yyyy-MM-dd HH:mm:ss", Map.of()),
+                new Document("result", "接口返回值统一用 Result<T> 包装", Map.of())));
+
+        assertEquals("auth", index.search("@CodeHubSecured", 3, metadata -> true).get(0).getId());
+        assertEquals("date", index.search("时间格式", 3, metadata -> true).get(0).getId());
+    }
+
+    @Test
+    void overwritingWithBlankTextRemovesThePreviousEntry() {
+        Bm25Index index = new Bm25Index();
+        index.add(List.of(new Document("a", "LocalDateTime", Map.of())));
+
+        index.add(List.of(new Document("a", " ", Map.of())));
+
+        assertEquals(0, index.size());
+        assertTrue(index.search("LocalDateTime", 3, metadata -> true).isEmpty());
+    }
+}
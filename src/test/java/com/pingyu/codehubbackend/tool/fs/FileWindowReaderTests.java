@@ -0,0 +1,48 @@
+package com.pingyu.codehubbackend.tool.fs;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileWindowReaderTests {
+
+    @TempDir
+    Path dir;
+
+    private final FileWindowReader reader = new FileWindowReader(DataSize.ofBytes(64));
+
+    @Test
+    void readsLineWindowsAndTail() throws Exception {
+        Path file = Files.writeString(dir.resolve("a.txt"), "one\ntwo\nthree\nfour\n");
+
+        assertEquals("one\ntwo\n", reader.read(file, new FileWindowReader.Window(null, null, null, null, 2, null)));
+        assertEquals("two\nthree\n", reader.read(file, new FileWindowReader.Window(null, null, 2, 3, null, null)));
+        assertEquals("three\nfour\n", reader.read(file, new FileWindowReader.Window(null, null, null, null, null, 2)));
+        assertEquals("wo", reader.read(file, new FileWindowReader.Window(5L, 2L, null, null, null, null)));
+    }
+
+    @Test
+    void truncatesAtCapWithStatistics() throws Exception {
+        Path file = Files.writeString(dir.resolve("big.txt"), "x".repeat(50) + "\n" + "y".repeat(50) + "\n");
+
+        String text = reader.read(file, FileWindowReader.Window.WHOLE);
+        assertTrue(text.startsWith("x".repeat(50)));
+        assertTrue(text.contains("[内容已截断]"));
+        assertTrue(text.contains("文件大小: 102 字节"));
+    }
+
+    @Test
+    void fallsBackToGb18030ForNonUtf8Files() throws Exception {
+        Path file = dir.resolve("gbk.txt");
+        Files.write(file, "智码".getBytes(Charset.forName("GB18030")));
+
+        assertEquals("智码", reader.read(file, FileWindowReader.Window.WHOLE));
+    }
+}
@@ -0,0 +1,26 @@
+package com.pingyu.codehubbackend.tool.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CodeSearchToolTests {
+
+    @Test
+    void keepsLiteralsThatEveryMatchContains() {
+        assertEquals(List.of("UserService"), CodeSearchTool.requiredLiterals("UserService"));
+        assertEquals(List.of("class ", "Impl"), CodeSearchTool.requiredLiterals("class \\w+Impl"));
+        assertEquals(List.of("foo", "bar"), CodeSearchTool.requiredLiterals("(foo)+bar"));
+    }
+
+    @Test
+    void dropsLiteralsInsideOptionalOrRepeatedGroups() {
+        assertEquals(List.of("bar"), CodeSearchTool.requiredLiterals("(foo)?bar"));
+        assertEquals(List.of("Service"), CodeSearchTool.requiredLiterals("(?:Impl)*Service"));
+        assertEquals(List.of("Service"), CodeSearchTool.requiredLiterals("(?:Abstract(Base)?)?Service"));
+        assertEquals(List.of("Service"), CodeSearchTool.requiredLiterals("(Impl){0,2}Service"));
+        assertEquals(List.of("Impl", "Service"), CodeSearchTool.requiredLiterals("(Impl){2}Service"));
+    }
+}